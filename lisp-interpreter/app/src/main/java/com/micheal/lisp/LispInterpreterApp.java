@@ -1,11 +1,243 @@
 package com.micheal.lisp;
 
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.engine.CompilingEngine;
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.engine.OptimizingEngine;
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.image.Image;
+import com.micheal.lisp.image.ImageWriter;
+import com.micheal.lisp.image.Snapshot;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.parser.ParseCache;
 import com.micheal.lisp.repl.Repl;
+import com.micheal.lisp.script.ScriptRunner;
+import com.micheal.lisp.server.LispServer;
+import com.micheal.lisp.visitor.MemoCache;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.function.Supplier;
 
 public class LispInterpreterApp {
 
+    private static final String USAGE =
+            "Usage: lisp-interpreter [--engine tree|compiled|specializing|vm|parallel] [--optimize] [--parse-cache size] [--memo size] [--metrics] [--share-subtrees] [--restore snapshot]"
+            + " [--file script.lisp [--compile image] | --image image | --server port|socket-path]";
+
     public static void main(String[] args) {
-        Repl repl = new Repl();
+        String engineName = "tree";
+        String scriptFile = null;
+        String compileTo = null;
+        String imageFile = null;
+        String snapshotFile = null;
+        String serverAddress = null;
+        int parseCacheSize = 0;
+        boolean optimize = false;
+        int memoSize = 0;
+        boolean collectMetrics = false;
+        boolean shareSubtrees = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--engine".equals(args[i]) && i + 1 < args.length) {
+                    engineName = args[++i];
+                } else if ("--file".equals(args[i]) && i + 1 < args.length) {
+                    scriptFile = args[++i];
+                } else if ("--compile".equals(args[i]) && i + 1 < args.length) {
+                    compileTo = args[++i];
+                } else if ("--image".equals(args[i]) && i + 1 < args.length) {
+                    imageFile = args[++i];
+                } else if ("--restore".equals(args[i]) && i + 1 < args.length) {
+                    snapshotFile = args[++i];
+                } else if ("--server".equals(args[i]) && i + 1 < args.length) {
+                    serverAddress = args[++i];
+                } else if ("--optimize".equals(args[i])) {
+                    optimize = true;
+                } else if ("--metrics".equals(args[i])) {
+                    collectMetrics = true;
+                } else if ("--share-subtrees".equals(args[i])) {
+                    shareSubtrees = true;
+                } else if ("--memo".equals(args[i]) && i + 1 < args.length) {
+                    memoSize = Integer.parseInt(args[++i]);
+                } else if ("--parse-cache".equals(args[i]) && i + 1 < args.length) {
+                    parseCacheSize = Integer.parseInt(args[++i]);
+                } else {
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.err.println(USAGE);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+
+        if (compileTo != null && scriptFile == null) {
+            System.err.println("--compile needs a --file to compile");
+            return;
+        }
+        if (memoSize > 0 && !"tree".equals(engineName)) {
+            System.err.println("--memo only works with the tree engine");
+            return;
+        }
+
+        // operator counts and evaluation times come from the tree engine, global cache counts
+        // from the compiled engines and parse times from every engine
+        Metrics metrics = collectMetrics ? new Metrics() : null;
+        MemoCache memoCache = memoSize > 0 ? new MemoCache(memoSize) : null;
+        NodeFactory nodeFactory = new NodeFactory(shareSubtrees);
+        Engine engine;
+        try {
+            engine = createEngine(engineName, optimize, nodeFactory, memoCache, metrics, snapshotFile);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        } catch (UncheckedIOException e) {
+            System.err.println("Cannot restore snapshot: " + e.getCause().getMessage());
+            return;
+        }
+
+        LispParser parser = new LispParser(nodeFactory, metrics);
+        if (compileTo != null) {
+            System.exit(compileScript(parser, Path.of(scriptFile), Path.of(compileTo), optimize));
+        }
+        if (scriptFile != null) {
+            System.exit(runScript(engine, parser, Path.of(scriptFile), metrics));
+        }
+        if (imageFile != null) {
+            System.exit(runImage(engine, nodeFactory, Path.of(imageFile), metrics));
+        }
+
+        ParseCache<Node> parseCache = parseCacheSize > 0
+                ? ParseCache.forParser(parser, parseCacheSize)
+                : null;
+
+        if (serverAddress != null) {
+            // every session gets an engine like the REPL's, with its own memo cache since
+            // those belong to one thread. the metrics are shared and printed when the server stops
+            String name = engineName;
+            boolean fold = optimize;
+            int memo = memoSize;
+            String snapshot = snapshotFile;
+            Supplier<Engine> engines = () -> createEngine(name, fold, nodeFactory,
+                    memo > 0 ? new MemoCache(memo) : null, metrics, snapshot);
+            System.exit(runServer(engines, parser, serverAddress, parseCache, metrics));
+        }
+
+        Repl repl = new Repl(engine, parser, parseCache, memoCache, metrics);
         repl.start();
     }
+
+    // snapshot is null or the file restored into the new engine's environment, a file that
+    // can't be read comes out as an UncheckedIOException
+    private static Engine createEngine(String engineName, boolean optimize, NodeFactory nodeFactory, MemoCache memoCache,
+                                       Metrics metrics, String snapshot) {
+        Engine engine;
+        if ("tree".equals(engineName)) {
+            engine = new TreeWalkingEngine(new GlobalEnvironment(), memoCache, metrics);
+        } else if ("compiled".equals(engineName) || "specializing".equals(engineName)) {
+            engine = new CompilingEngine(new GlobalEnvironment(), "specializing".equals(engineName), metrics);
+        } else {
+            engine = Engine.forName(engineName);
+        }
+        if (optimize) {
+            engine = new OptimizingEngine(engine, nodeFactory);
+        }
+        if (snapshot != null) {
+            try {
+                Snapshot.restore(Path.of(snapshot), engine.getEnvironment());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return engine;
+    }
+
+    private static int runScript(Engine engine, LispParser parser, Path script, Metrics metrics) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16));
+        PrintWriter err = new PrintWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), true);
+        try {
+            int failures = new ScriptRunner(engine, parser).run(script, out, err);
+            if (metrics != null) {
+                out.flush();
+                err.println(metrics);
+            }
+            return failures == 0 ? 0 : 1;
+        } catch (IOException e) {
+            err.println("Cannot read script: " + e.getMessage());
+            return 1;
+        } finally {
+            out.flush();
+        }
+    }
+
+    // --optimize folds the forms before they are written, so the run does not have to
+    private static int compileScript(LispParser parser, Path script, Path image, boolean optimize) {
+        try {
+            int forms = ImageWriter.compile(parser, script, image, optimize);
+            System.out.println("Compiled " + forms + " forms to " + image);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Cannot compile script: " + e.getMessage());
+            return 1;
+        } catch (LispException e) {
+            System.err.println("Parse error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static int runImage(Engine engine, NodeFactory nodeFactory, Path path, Metrics metrics) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16));
+        PrintWriter err = new PrintWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), true);
+        try {
+            int failures = new ScriptRunner(engine).run(Image.open(path, nodeFactory), out, err);
+            if (metrics != null) {
+                out.flush();
+                err.println(metrics);
+            }
+            return failures == 0 ? 0 : 1;
+        } catch (IOException e) {
+            err.println("Cannot read image: " + e.getMessage());
+            return 1;
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static int runServer(Supplier<Engine> engines, LispParser parser, String address, ParseCache<Node> parseCache,
+                                 Metrics metrics) {
+        LispServer server = new LispServer(LispServer.parseAddress(address), engines,
+                Runtime.getRuntime().availableProcessors(), parser, parseCache);
+        if (metrics != null) {
+            // the server only stops when the process is killed
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(metrics)));
+        }
+        try {
+            server.start();
+            System.out.println("Lisp server listening on " + server.getLocalAddress());
+            server.awaitTermination();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Cannot start server: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+package com.micheal.lisp.ast;
+
+import com.micheal.lisp.visitor.Visitor;
+
+// a boolean literal. the parser never produces one, optimization passes use it
+// to replace comparisons whose result is already known
+
+public class BooleanNode implements Node {
+
+    private final boolean value;
+
+    public BooleanNode(boolean value) {
+        this.value = value;
+    }
+
+    public boolean getValue() {
+        return value;
+    }
+
+    @Override
+    public Object accept(Visitor visitor) {
+        return visitor.visit(this);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof BooleanNode && value == ((BooleanNode) other).value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Boolean.hashCode(value);
+    }
+}
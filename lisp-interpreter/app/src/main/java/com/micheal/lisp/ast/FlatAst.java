@@ -0,0 +1,223 @@
+package com.micheal.lisp.ast;
+
+import com.micheal.lisp.environment.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// a whole expression in three primitive arrays instead of one object per node, for very
+// large generated programs. nodes are numbered in preorder, the root is node 0, and a
+// node's subtree is the range [node, node + size). the children of a list start at
+// node + 1 and each one is followed by the next at child + size(child).
+// per node that is 9 bytes in three contiguous arrays, where a ListNode tree spends an
+// object header, a field and a list slot per node and scatters them over the heap
+
+public final class FlatAst {
+
+    public static final byte LIST = 0;
+    // an int literal, the value is stored inline
+    public static final byte INT = 1;
+    // a Long or BigInteger literal, the value is an index into the number pool
+    public static final byte NUMBER = 2;
+    // the value is an index into the symbol pool
+    public static final byte SYMBOL = 3;
+    // the value is 1 for true and 0 for false
+    public static final byte BOOLEAN = 4;
+
+    private final byte[] kinds;
+    // the literal or pool index, or the number of children of a list
+    private final int[] values;
+    private final int[] sizes;
+    private final Symbol[] symbols;
+    private final Number[] numbers;
+
+    private FlatAst(byte[] kinds, int[] values, int[] sizes, Symbol[] symbols, Number[] numbers) {
+        this.kinds = kinds;
+        this.values = values;
+        this.sizes = sizes;
+        this.symbols = symbols;
+        this.numbers = numbers;
+    }
+
+    // flattens a tree, mostly for tests and for programs that were built as nodes
+    public static FlatAst of(Node root) {
+        Builder builder = new Builder();
+        add(builder, root);
+        return builder.build();
+    }
+
+    private static void add(Builder builder, Node node) {
+        if (node instanceof NumberNode) {
+            builder.addNumber(((NumberNode) node).getValue());
+        } else if (node instanceof SymbolNode) {
+            builder.addSymbol(((SymbolNode) node).getSymbol());
+        } else if (node instanceof BooleanNode) {
+            builder.addBoolean(((BooleanNode) node).getValue());
+        } else {
+            builder.startList();
+            for (Node element : ((ListNode) node).getElements()) {
+                add(builder, element);
+            }
+            builder.endList();
+        }
+    }
+
+    public int getNodeCount() {
+        return kinds.length;
+    }
+
+    public byte kind(int node) {
+        return kinds[node];
+    }
+
+    // value of an INT node
+    public int intValue(int node) {
+        return values[node];
+    }
+
+    // value of an INT or NUMBER node
+    public Number number(int node) {
+        return kinds[node] == INT ? Integer.valueOf(values[node]) : numbers[values[node]];
+    }
+
+    public Symbol symbol(int node) {
+        return symbols[values[node]];
+    }
+
+    // index of a SYMBOL node's symbol in the pool, the same symbol always has the same index
+    public int symbolIndex(int node) {
+        return values[node];
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public Symbol getSymbol(int index) {
+        return symbols[index];
+    }
+
+    public boolean booleanValue(int node) {
+        return values[node] != 0;
+    }
+
+    public int childCount(int node) {
+        return values[node];
+    }
+
+    // number of nodes in the subtree, this one included
+    public int size(int node) {
+        return sizes[node];
+    }
+
+    // the node after this one's subtree, the next sibling if there is one
+    public int next(int node) {
+        return node + sizes[node];
+    }
+
+    // builds the pointer-based tree for a subtree, for code that only works on Nodes
+    public Node toNode(int node) {
+        switch (kinds[node]) {
+            case INT:
+            case NUMBER:
+                return new NumberNode(number(node));
+            case SYMBOL:
+                return new SymbolNode(symbol(node));
+            case BOOLEAN:
+                return new BooleanNode(booleanValue(node));
+            default: {
+                List<Node> elements = new ArrayList<>(values[node]);
+                for (int child = node + 1; child < next(node); child = next(child)) {
+                    elements.add(toNode(child));
+                }
+                return new ListNode(elements);
+            }
+        }
+    }
+
+    // appends nodes in preorder. a list is opened, its children are added, and it is closed,
+    // so no recursion is needed however deeply the input is nested
+    public static final class Builder {
+
+        private byte[] kinds = new byte[64];
+        private int[] values = new int[64];
+        private int[] sizes = new int[64];
+        private int count;
+        // lists that are still open, innermost last
+        private int[] open = new int[16];
+        private int depth;
+        private final List<Symbol> symbols = new ArrayList<>();
+        private final Map<Symbol, Integer> symbolIndexes = new HashMap<>();
+        private final List<Number> numbers = new ArrayList<>();
+
+        public void addNumber(Number value) {
+            if (value instanceof Integer) {
+                add(INT, (Integer) value);
+            } else {
+                numbers.add(value);
+                add(NUMBER, numbers.size() - 1);
+            }
+        }
+
+        public void addSymbol(Symbol symbol) {
+            Integer index = symbolIndexes.get(symbol);
+            if (index == null) {
+                index = symbols.size();
+                symbols.add(symbol);
+                symbolIndexes.put(symbol, index);
+            }
+            add(SYMBOL, index);
+        }
+
+        public void addBoolean(boolean value) {
+            add(BOOLEAN, value ? 1 : 0);
+        }
+
+        public void startList() {
+            int node = add(LIST, 0);
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+            }
+            open[depth++] = node;
+        }
+
+        public void endList() {
+            if (depth == 0) {
+                throw new IllegalStateException("No open list");
+            }
+            int node = open[--depth];
+            sizes[node] = count - node;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public FlatAst build() {
+            if (depth != 0 || count == 0) {
+                throw new IllegalStateException("Incomplete expression");
+            }
+            return new FlatAst(Arrays.copyOf(kinds, count), Arrays.copyOf(values, count), Arrays.copyOf(sizes, count),
+                    symbols.toArray(new Symbol[0]), numbers.toArray(new Number[0]));
+        }
+
+        private int add(byte kind, int value) {
+            if (depth > 0) {
+                values[open[depth - 1]]++;
+            }
+            if (count == kinds.length) {
+                int capacity = count * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+            kinds[count] = kind;
+            values[count] = value;
+            sizes[count] = 1;
+            return count++;
+        }
+    }
+}
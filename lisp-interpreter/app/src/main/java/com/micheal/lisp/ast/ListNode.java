@@ -7,17 +7,51 @@ import java.util.List;
 public class ListNode implements Node {
 
     private final List<Node> elements;
+    // number of nodes in this subtree, this one included
+    private final int size;
+    // structural hash, computed once from the cached hashes of the elements
+    private final int hash;
 
+    // the elements are copied into an immutable list so a tree can be cached and shared safely
     public ListNode(List<Node> elements) {
-        this.elements = elements;
+        this.elements = List.copyOf(elements);
+        int total = 1;
+        for (Node element : this.elements) {
+            total += element instanceof ListNode ? ((ListNode) element).size : 1;
+        }
+        this.size = total;
+        this.hash = this.elements.hashCode();
     }
 
     public List<Node> getElements() {
         return elements;
     }
 
+    public int getSize() {
+        return size;
+    }
+
     @Override
     public Object accept(Visitor visitor) {
         return visitor.visit(this);
     }
+
+    // structural, equal trees are equal however they were built. for hash-consed trees the
+    // elements are canonical and each one compares by identity, so this stays one level deep
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ListNode)) {
+            return false;
+        }
+        ListNode list = (ListNode) other;
+        return hash == list.hash && size == list.size && elements.equals(list.elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -2,15 +2,17 @@ package com.micheal.lisp.ast;
 
 import com.micheal.lisp.visitor.Visitor;
 
+// an integer literal, the value is an Integer, Long or BigInteger (see Numbers)
+
 public class NumberNode implements Node {
 
-    private final int value;
+    private final Number value;
 
-    public NumberNode(int value) {
+    public NumberNode(Number value) {
         this.value = value;
     }
 
-    public int getValue() {
+    public Number getValue() {
         return value;
     }
 
@@ -18,4 +20,15 @@ public class NumberNode implements Node {
     public Object accept(Visitor visitor) {
         return visitor.visit(this);
     }
+
+    // values are kept in their smallest type, so 1 and 1L never meet here
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof NumberNode && value.equals(((NumberNode) other).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
 }
@@ -1,21 +1,41 @@
 package com.micheal.lisp.ast;
 
+import com.micheal.lisp.environment.Symbol;
 import com.micheal.lisp.visitor.Visitor;
 
 public class SymbolNode implements Node {
 
-    private final String name;
+    private final Symbol symbol;
 
     public SymbolNode(String name) {
-        this.name = name;
+        this(Symbol.intern(name));
+    }
+
+    public SymbolNode(Symbol symbol) {
+        this.symbol = symbol;
     }
 
     public String getName() {
-        return name;
+        return symbol.getName();
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
     }
 
     @Override
     public Object accept(Visitor visitor) {
         return visitor.visit(this);
     }
+
+    // symbols are interned, so comparing them by identity is enough
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof SymbolNode && symbol == ((SymbolNode) other).symbol;
+    }
+
+    @Override
+    public int hashCode() {
+        return symbol.hashCode();
+    }
 }
@@ -0,0 +1,70 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.runtime.Procedure;
+import com.micheal.lisp.runtime.Values;
+
+// a lambda created by compiled code. the body was compiled with its parameters at
+// depth 0 of the frame, the frame the lambda was created in is the parent
+
+final class CompiledClosure implements Procedure {
+
+    private final Symbol[] parameters;
+    private final CompiledNode body;
+    // the body before it was compiled
+    private final Node source;
+    private final Frame frame;
+
+    CompiledClosure(Symbol[] parameters, CompiledNode body, Node source, Frame frame) {
+        this.parameters = parameters;
+        this.body = body;
+        this.source = source;
+        this.frame = frame;
+    }
+
+    @Override
+    public Symbol[] getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public Node getBody() {
+        return source;
+    }
+
+    @Override
+    public Frame getFrame() {
+        return frame;
+    }
+
+    @Override
+    public Object apply(Object[] arguments) {
+        return call(this, arguments);
+    }
+
+    // trampoline: tail calls in the body come back as TailCall and are run by this loop
+    static Object call(Procedure procedure, Object[] arguments) {
+        while (procedure instanceof CompiledClosure) {
+            CompiledClosure closure = (CompiledClosure) procedure;
+            if (arguments.length != closure.parameters.length) {
+                throw Values.procedureArgumentCountError(closure.parameters.length, arguments.length);
+            }
+
+            Object result = closure.body.execute(new Frame(closure.parameters, arguments, closure.frame));
+            if (!(result instanceof TailCall)) {
+                return result;
+            }
+            TailCall tailCall = (TailCall) result;
+            procedure = tailCall.procedure;
+            arguments = tailCall.arguments;
+        }
+        return procedure.apply(arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "#<procedure>";
+    }
+}
@@ -0,0 +1,51 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
+
+// an executable node produced by the Compiler, the operator and arity are already resolved.
+// frame holds the local variables of the enclosing lambda call, it is null at the top level
+
+@FunctionalInterface
+public interface CompiledNode {
+
+    Object execute(Frame frame);
+
+    default Object execute() {
+        return execute(null);
+    }
+
+    // used when the parent needs an int operand, nodes that always produce an int
+    // override it so nested arithmetic never boxes its intermediate results.
+    // a Long or BigInteger result is thrown as a Promotion, see executeNumber
+    default int executeInt(Frame frame, String operation) {
+        return Values.toInt(execute(frame), operation);
+    }
+
+    default Number executeNumber(Frame frame, String operation) {
+        try {
+            return executeInt(frame, operation);
+        } catch (Promotion p) {
+            return p.getValue();
+        }
+    }
+
+    // used by a specialized node while it has only seen ints from this operand, any other
+    // result is thrown as an UnexpectedResult. unlike executeInt it never fails
+    default int executeExpectingInt(Frame frame) {
+        Object value = execute(frame);
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        throw new UnexpectedResult(value);
+    }
+
+    default boolean executeExpectingBoolean(Frame frame) {
+        Object value = execute(frame);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        throw new UnexpectedResult(value);
+    }
+}
@@ -0,0 +1,518 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.ast.*;
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Procedure;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
+import com.micheal.lisp.visitor.Visitor;
+
+import java.util.List;
+
+// turns a parsed Node tree into a tree of closures so that evaluating the same
+// expression again skips the operator lookup, the arity checks and the subList copies
+
+public class Compiler implements Visitor {
+
+    private final GlobalEnvironment environment;
+    // build nodes that specialize on the value types they see, see SpecializingArithmetic
+    private final boolean specialize;
+    // optional, counts the global cache hits and misses of the compiled nodes
+    private final Metrics metrics;
+    // compile state: the lambdas around the node being compiled, and whether the node
+    // is in tail position of the innermost one
+    private Scope scope;
+    private boolean tail;
+
+    public Compiler() {
+        this(new GlobalEnvironment());
+    }
+
+    // the compiled nodes read and define globals in this environment
+    public Compiler(GlobalEnvironment environment) {
+        this(environment, false);
+    }
+
+    public Compiler(GlobalEnvironment environment, boolean specialize) {
+        this(environment, specialize, null);
+    }
+
+    public Compiler(GlobalEnvironment environment, boolean specialize, Metrics metrics) {
+        this.environment = environment;
+        this.specialize = specialize;
+        this.metrics = metrics;
+    }
+
+    public CompiledNode compile(Node node) {
+        return compile(node, false);
+    }
+
+    private CompiledNode compile(Node node, boolean tailPosition) {
+        tail = tailPosition;
+        return (CompiledNode) node.accept(this);
+    }
+
+    @Override
+    public Object visit(NumberNode node) {
+        Number value = node.getValue();
+        if (value instanceof Integer) {
+            return new IntConstant((Integer) value);
+        }
+        return (CompiledNode) frame -> value;
+    }
+
+    @Override
+    public Object visit(BooleanNode node) {
+        Boolean value = node.getValue();
+        return (CompiledNode) frame -> value;
+    }
+
+    @Override
+    public Object visit(SymbolNode node) {
+        Symbol symbol = node.getSymbol();
+        CompiledNode local = compileLocal(symbol);
+        if (local != null) {
+            return local;
+        }
+        return new GlobalLookup(environment, symbol, metrics);
+    }
+
+    // a variable of an enclosing lambda becomes a direct (depth, index) access into the frame chain
+    private CompiledNode compileLocal(Symbol symbol) {
+        int depth = 0;
+        for (Scope current = scope; current != null; current = current.parent, depth++) {
+            int index = current.indexOf(symbol);
+            if (index < 0) {
+                continue;
+            }
+            if (depth == 0) {
+                return frame -> frame.get(index);
+            }
+            if (depth == 1) {
+                return frame -> frame.getParent().get(index);
+            }
+            int parents = depth;
+            return frame -> {
+                Frame target = frame;
+                for (int i = 0; i < parents; i++) {
+                    target = target.getParent();
+                }
+                return target.get(index);
+            };
+        }
+        return null;
+    }
+
+    @Override
+    public Object visit(ListNode node) {
+        boolean tailPosition = tail;
+        tail = false;
+        List<Node> elements = node.getElements();
+
+        // errors found here are raised when the node runs, not when it is compiled,
+        // so anything evaluated before the bad node still happens in the same order
+        if (elements.isEmpty()) {
+            return fail(Values.emptyListError());
+        }
+
+        Node first = elements.get(0);
+        if (!(first instanceof SymbolNode)) {
+            return compileApplication(elements, tailPosition);
+        }
+
+        String op = ((SymbolNode) first).getName();
+
+        switch (op) {
+            case "+":
+                return compileAddition(compileOperands(elements));
+            case "-":
+                return compileSubtraction(compileOperands(elements));
+            case "*":
+                return compileMultiplication(compileOperands(elements));
+            case "/":
+                return compileDivision(compileOperands(elements));
+            case "%":
+                return compileModulo(elements);
+            case "define":
+                return compileDefine(elements);
+            case "lambda":
+                return compileLambda(elements);
+            case "if":
+                return compileIf(elements, tailPosition);
+            case ">":
+                return compileGreaterThan(elements);
+            case "<":
+                return compileLessThan(elements);
+            case "=":
+                return compileEquals(elements);
+            default:
+                return compileApplication(elements, tailPosition);
+        }
+    }
+
+    private CompiledNode[] compileOperands(List<Node> elements) {
+        CompiledNode[] operands = new CompiledNode[elements.size() - 1];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = compile(elements.get(i + 1));
+        }
+        return operands;
+    }
+
+    private CompiledNode fail(LispException error) {
+        String message = error.getMessage();
+        return frame -> {
+            throw new LispException(message);
+        };
+    }
+
+    // finishes an operator with Numbers from operand next on, once its int result has
+    // overflowed or an operand was not an int
+    private static Promotion promote(String op, Number result, CompiledNode[] operands, int next, Frame frame) {
+        for (int i = next; i < operands.length; i++) {
+            result = Numbers.apply(op, result, operands[i].executeNumber(frame, op));
+        }
+        return new Promotion(result);
+    }
+
+    private CompiledNode compileAddition(CompiledNode[] operands) {
+        if (specialize) {
+            return new SpecializingArithmetic("+", operands);
+        }
+        return (IntNode) frame -> {
+            int result = 0;
+            for (int i = 0; i < operands.length; i++) {
+                int value;
+                try {
+                    value = operands[i].executeInt(frame, "+");
+                } catch (Promotion p) {
+                    throw promote("+", Numbers.add(result, p.getValue()), operands, i + 1, frame);
+                }
+                try {
+                    result = Math.addExact(result, value);
+                } catch (ArithmeticException e) {
+                    throw promote("+", (long) result + value, operands, i + 1, frame);
+                }
+            }
+            return result;
+        };
+    }
+
+    private CompiledNode compileSubtraction(CompiledNode[] operands) {
+        if (operands.length == 0) {
+            return fail(Values.missingArgumentError("-"));
+        }
+        if (specialize) {
+            return new SpecializingArithmetic("-", operands);
+        }
+
+        // handle unary minus
+        if (operands.length == 1) {
+            CompiledNode operand = operands[0];
+            return (IntNode) frame -> {
+                int value;
+                try {
+                    value = operand.executeInt(frame, "-");
+                } catch (Promotion p) {
+                    throw new Promotion(Numbers.negate(p.getValue()));
+                }
+                if (value == Integer.MIN_VALUE) {
+                    throw new Promotion(Numbers.negate(value));
+                }
+                return -value;
+            };
+        }
+
+        return (IntNode) frame -> {
+            int result;
+            try {
+                result = operands[0].executeInt(frame, "-");
+            } catch (Promotion p) {
+                throw promote("-", p.getValue(), operands, 1, frame);
+            }
+            for (int i = 1; i < operands.length; i++) {
+                int value;
+                try {
+                    value = operands[i].executeInt(frame, "-");
+                } catch (Promotion p) {
+                    throw promote("-", Numbers.subtract(result, p.getValue()), operands, i + 1, frame);
+                }
+                try {
+                    result = Math.subtractExact(result, value);
+                } catch (ArithmeticException e) {
+                    throw promote("-", (long) result - value, operands, i + 1, frame);
+                }
+            }
+            return result;
+        };
+    }
+
+    private CompiledNode compileMultiplication(CompiledNode[] operands) {
+        if (specialize) {
+            return new SpecializingArithmetic("*", operands);
+        }
+        return (IntNode) frame -> {
+            int result = 1;
+            for (int i = 0; i < operands.length; i++) {
+                int value;
+                try {
+                    value = operands[i].executeInt(frame, "*");
+                } catch (Promotion p) {
+                    throw promote("*", Numbers.multiply(result, p.getValue()), operands, i + 1, frame);
+                }
+                try {
+                    result = Math.multiplyExact(result, value);
+                } catch (ArithmeticException e) {
+                    throw promote("*", (long) result * value, operands, i + 1, frame);
+                }
+            }
+            return result;
+        };
+    }
+
+    private CompiledNode compileDivision(CompiledNode[] operands) {
+        if (operands.length == 0) {
+            return fail(Values.missingArgumentError("/"));
+        }
+        if (specialize) {
+            return new SpecializingArithmetic("/", operands);
+        }
+
+        return (IntNode) frame -> {
+            int result;
+            try {
+                result = operands[0].executeInt(frame, "/");
+            } catch (Promotion p) {
+                throw promote("/", p.getValue(), operands, 1, frame);
+            }
+            for (int i = 1; i < operands.length; i++) {
+                int divisor;
+                try {
+                    divisor = operands[i].executeInt(frame, "/");
+                } catch (Promotion p) {
+                    throw promote("/", Numbers.divide(result, p.getValue()), operands, i + 1, frame);
+                }
+                if (divisor == 0) {
+                    throw Values.divisionByZero();
+                }
+                // the only int division that overflows
+                if (result == Integer.MIN_VALUE && divisor == -1) {
+                    throw promote("/", -(long) result, operands, i + 1, frame);
+                }
+                result /= divisor;
+            }
+            return result;
+        };
+    }
+
+    private CompiledNode compileModulo(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError("%", 2, elements.size() - 1));
+        }
+
+        CompiledNode left = compile(elements.get(1));
+        CompiledNode right = compile(elements.get(2));
+        if (specialize) {
+            return new SpecializingArithmetic("%", new CompiledNode[] {left, right});
+        }
+        return (IntNode) frame -> {
+            int a;
+            try {
+                a = left.executeInt(frame, "%");
+            } catch (Promotion p) {
+                throw new Promotion(Numbers.remainder(p.getValue(), right.executeNumber(frame, "%")));
+            }
+            int b;
+            try {
+                b = right.executeInt(frame, "%");
+            } catch (Promotion p) {
+                throw new Promotion(Numbers.remainder(a, p.getValue()));
+            }
+            if (b == 0) {
+                throw Values.moduloByZero();
+            }
+            return a % b;
+        };
+    }
+
+    private CompiledNode compileDefine(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError("define", 2, elements.size() - 1));
+        }
+
+        Node nameNode = elements.get(1);
+        if (!(nameNode instanceof SymbolNode)) {
+            return fail(Values.defineNameError());
+        }
+
+        Symbol name = ((SymbolNode) nameNode).getSymbol();
+        CompiledNode valueNode = compile(elements.get(2));
+        return frame -> {
+            Object value = valueNode.execute(frame);
+            environment.define(name, value);
+            return value;
+        };
+    }
+
+    private CompiledNode compileGreaterThan(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError(">", 2, elements.size() - 1));
+        }
+
+        CompiledNode left = compile(elements.get(1));
+        CompiledNode right = compile(elements.get(2));
+        if (specialize) {
+            return new SpecializingComparison(">", left, right);
+        }
+        return (PredicateNode) frame -> compare(left, right, frame, ">") > 0;
+    }
+
+    private CompiledNode compileLessThan(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError("<", 2, elements.size() - 1));
+        }
+
+        CompiledNode left = compile(elements.get(1));
+        CompiledNode right = compile(elements.get(2));
+        if (specialize) {
+            return new SpecializingComparison("<", left, right);
+        }
+        return (PredicateNode) frame -> compare(left, right, frame, "<") < 0;
+    }
+
+    // sign of left - right, on ints unless an operand is bigger
+    private static int compare(CompiledNode left, CompiledNode right, Frame frame, String op) {
+        int a;
+        try {
+            a = left.executeInt(frame, op);
+        } catch (Promotion p) {
+            return Numbers.compare(p.getValue(), right.executeNumber(frame, op));
+        }
+        try {
+            return Integer.compare(a, right.executeInt(frame, op));
+        } catch (Promotion p) {
+            return Numbers.compare(a, p.getValue());
+        }
+    }
+
+    private CompiledNode compileEquals(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError("=", 2, elements.size() - 1));
+        }
+
+        CompiledNode left = compile(elements.get(1));
+        CompiledNode right = compile(elements.get(2));
+        if (specialize) {
+            return new SpecializingEquals(left, right);
+        }
+        return (PredicateNode) frame -> left.execute(frame).equals(right.execute(frame));
+    }
+
+    private CompiledNode compileIf(List<Node> elements, boolean tailPosition) {
+        if (elements.size() != 4) {
+            return fail(Values.argumentCountError("if", 3, elements.size() - 1));
+        }
+
+        CompiledNode condition = compile(elements.get(1));
+        CompiledNode thenBranch = compile(elements.get(2), tailPosition);
+        CompiledNode elseBranch = compile(elements.get(3), tailPosition);
+        if (specialize) {
+            return new SpecializingIf(condition, thenBranch, elseBranch);
+        }
+        return frame -> Values.toCondition(condition.execute(frame)) ? thenBranch.execute(frame) : elseBranch.execute(frame);
+    }
+
+    private CompiledNode compileLambda(List<Node> elements) {
+        Symbol[] parameters;
+        try {
+            parameters = Values.lambdaParameters(elements);
+        } catch (LispException e) {
+            return fail(e);
+        }
+
+        Scope enclosing = scope;
+        scope = new Scope(parameters, enclosing);
+        try {
+            Node source = elements.get(2);
+            CompiledNode body = compile(source, true);
+            return frame -> new CompiledClosure(parameters, body, source, frame);
+        } finally {
+            scope = enclosing;
+        }
+    }
+
+    // (f arg ...) where f is not a builtin operator. the operator is checked before the
+    // arguments are evaluated. in tail position the call is handed back as a TailCall
+    // for CompiledClosure.call to run, so the Java stack does not grow
+    private CompiledNode compileApplication(List<Node> elements, boolean tailPosition) {
+        Node first = elements.get(0);
+        CompiledNode operator;
+        if (first instanceof SymbolNode) {
+            operator = compileNamedOperator((SymbolNode) first);
+        } else if (first instanceof ListNode) {
+            CompiledNode head = compile(first);
+            operator = frame -> {
+                Object value = head.execute(frame);
+                if (!(value instanceof Procedure)) {
+                    throw Values.notAnOperatorError();
+                }
+                return value;
+            };
+        } else {
+            return fail(Values.notAnOperatorError());
+        }
+
+        CompiledNode[] operands = compileOperands(elements);
+        if (tailPosition) {
+            return frame -> new TailCall((Procedure) operator.execute(frame), arguments(operands, frame));
+        }
+        return frame -> CompiledClosure.call((Procedure) operator.execute(frame), arguments(operands, frame));
+    }
+
+    private CompiledNode compileNamedOperator(SymbolNode node) {
+        Symbol symbol = node.getSymbol();
+        String name = node.getName();
+        CompiledNode local = compileLocal(symbol);
+        GlobalLookup global = local == null ? new GlobalLookup(environment, symbol, metrics) : null;
+        return frame -> {
+            Object value = local != null ? local.execute(frame) : global.find();
+            if (!(value instanceof Procedure)) {
+                throw Values.unknownOperatorError(name);
+            }
+            return value;
+        };
+    }
+
+    private static Object[] arguments(CompiledNode[] operands, Frame frame) {
+        Object[] arguments = new Object[operands.length];
+        for (int i = 0; i < operands.length; i++) {
+            arguments[i] = operands[i].execute(frame);
+        }
+        return arguments;
+    }
+
+    // parameters of the lambdas enclosing the code being compiled, innermost first
+    private static final class Scope {
+
+        private final Symbol[] names;
+        private final Scope parent;
+
+        Scope(Symbol[] names, Scope parent) {
+            this.names = names;
+            this.parent = parent;
+        }
+
+        int indexOf(Symbol symbol) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == symbol) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
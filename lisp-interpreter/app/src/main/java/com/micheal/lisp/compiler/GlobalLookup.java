@@ -0,0 +1,66 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.metrics.Metrics;
+
+// a global variable with an inline cache. the node keeps the value it found last with the
+// environment's version, and returns it without a lookup until a define or restore changes
+// the version. a compiled tree belongs to one Compiler and so to one environment, nothing
+// is kept on the shared tree nodes. with a Metrics every hit and miss is counted there
+
+final class GlobalLookup implements CompiledNode {
+
+    private final GlobalEnvironment environment;
+    private final Symbol symbol;
+    // optional, null when nothing is counted
+    private final Metrics metrics;
+    // read and written without locking, a thread that misses an update only looks up again
+    private Cached cached;
+
+    GlobalLookup(GlobalEnvironment environment, Symbol symbol, Metrics metrics) {
+        this.environment = environment;
+        this.symbol = symbol;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        Object value = find();
+        // lookup reports the undefined symbol
+        return value != null ? value : environment.lookup(symbol);
+    }
+
+    // the value, or null when the symbol is not defined
+    Object find() {
+        Cached current = cached;
+        long version = environment.getVersion();
+        if (current != null && current.version == version) {
+            if (metrics != null) {
+                metrics.countGlobalCacheHit();
+            }
+            return current.value;
+        }
+        if (metrics != null) {
+            metrics.countGlobalCacheMiss();
+        }
+        Object value = environment.find(symbol);
+        if (value != null) {
+            cached = new Cached(version, value);
+        }
+        return value;
+    }
+
+    // immutable, so it can be handed between threads through the plain field
+    private static final class Cached {
+
+        private final long version;
+        private final Object value;
+
+        Cached(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
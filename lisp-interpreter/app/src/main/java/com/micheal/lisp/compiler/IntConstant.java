@@ -0,0 +1,31 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+
+// a number literal, keeps both the raw and the boxed value so neither path allocates
+
+final class IntConstant implements CompiledNode {
+
+    private final int value;
+    private final Integer boxed;
+
+    IntConstant(int value) {
+        this.value = value;
+        this.boxed = value;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        return boxed;
+    }
+
+    @Override
+    public int executeInt(Frame frame, String operation) {
+        return value;
+    }
+
+    @Override
+    public int executeExpectingInt(Frame frame) {
+        return value;
+    }
+}
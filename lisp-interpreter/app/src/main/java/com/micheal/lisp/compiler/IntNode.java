@@ -0,0 +1,36 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.runtime.Promotion;
+
+// a compiled arithmetic node. its result is an int unless executeInt throws a Promotion,
+// only execute() boxes it
+
+@FunctionalInterface
+interface IntNode extends CompiledNode {
+
+    int executeInt(Frame frame);
+
+    @Override
+    default Object execute(Frame frame) {
+        try {
+            return executeInt(frame);
+        } catch (Promotion p) {
+            return p.getValue();
+        }
+    }
+
+    @Override
+    default int executeInt(Frame frame, String operation) {
+        return executeInt(frame);
+    }
+
+    @Override
+    default int executeExpectingInt(Frame frame) {
+        try {
+            return executeInt(frame);
+        } catch (Promotion p) {
+            throw new UnexpectedResult(p.getValue());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+
+// a compiled comparison. its result is a boolean, only execute() boxes it
+
+@FunctionalInterface
+interface PredicateNode extends CompiledNode {
+
+    boolean executeBoolean(Frame frame);
+
+    @Override
+    default Object execute(Frame frame) {
+        return executeBoolean(frame);
+    }
+
+    @Override
+    default boolean executeExpectingBoolean(Frame frame) {
+        return executeBoolean(frame);
+    }
+}
@@ -0,0 +1,178 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
+
+// an arithmetic operator of the specializing mode. it works on ints until a result or an
+// operand does not fit one, then rewrites itself to work on Numbers from then on. a site
+// that sees longs stops throwing a Promotion on every run, one that only sees ints never
+// leaves the int path. one class for every operator, so a parent asking its operands for an
+// int mostly meets the same few node types
+
+final class SpecializingArithmetic implements CompiledNode {
+
+    private static final int ADD = 0;
+    private static final int SUBTRACT = 1;
+    private static final int MULTIPLY = 2;
+    private static final int DIVIDE = 3;
+    private static final int REMAINDER = 4;
+    private static final int NEGATE = 5;
+
+    private final String op;
+    private final int kind;
+    private final CompiledNode[] operands;
+    // set once, a thread that misses it takes the int path one more time
+    private boolean generic;
+
+    SpecializingArithmetic(String op, CompiledNode[] operands) {
+        this.op = op;
+        this.operands = operands;
+        this.kind = operands.length == 1 && op.equals("-") ? NEGATE : "+-*/%".indexOf(op);
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        if (!generic) {
+            try {
+                return executeInts(frame);
+            } catch (Promotion p) {
+                return p.getValue();
+            }
+        }
+        return executeGeneric(frame);
+    }
+
+    @Override
+    public int executeInt(Frame frame, String operation) {
+        return generic ? Values.toInt(executeGeneric(frame), operation) : executeInts(frame);
+    }
+
+    @Override
+    public Number executeNumber(Frame frame, String operation) {
+        return generic ? executeGeneric(frame) : CompiledNode.super.executeNumber(frame, operation);
+    }
+
+    @Override
+    public int executeExpectingInt(Frame frame) {
+        Number result;
+        if (!generic) {
+            try {
+                return executeInts(frame);
+            } catch (Promotion p) {
+                result = p.getValue();
+            }
+        } else {
+            result = executeGeneric(frame);
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        throw new UnexpectedResult(result);
+    }
+
+    // the exact result if it is an int, otherwise the node turns generic and the result is
+    // thrown as a Promotion. kept small so the JIT inlines it into the parent
+    private int executeInts(Frame frame) {
+        if (kind == NEGATE) {
+            return negateInt(frame);
+        }
+        int result = kind == MULTIPLY ? 1 : 0;
+        int i = 0;
+        if (kind != ADD && kind != MULTIPLY) {
+            result = firstInt(frame);
+            i = 1;
+        }
+        for (; i < operands.length; i++) {
+            int value;
+            try {
+                value = operands[i].executeInt(frame, op);
+            } catch (Promotion p) {
+                throw finish(Numbers.apply(op, result, p.getValue()), i + 1, frame);
+            }
+            long wide = apply(kind, result, value);
+            if ((int) wide != wide) {
+                throw finish(wide, i + 1, frame);
+            }
+            result = (int) wide;
+        }
+        return result;
+    }
+
+    private int firstInt(Frame frame) {
+        try {
+            return operands[0].executeInt(frame, op);
+        } catch (Promotion p) {
+            throw finish(p.getValue(), 1, frame);
+        }
+    }
+
+    private int negateInt(Frame frame) {
+        long negated;
+        try {
+            negated = -(long) operands[0].executeInt(frame, op);
+        } catch (Promotion p) {
+            throw finish(Numbers.negate(p.getValue()), 1, frame);
+        }
+        if ((int) negated != negated) {
+            throw finish(negated, 1, frame);
+        }
+        return (int) negated;
+    }
+
+    // on longs, no two ints overflow them
+    private static long apply(int kind, int a, int b) {
+        switch (kind) {
+            case ADD:
+                return (long) a + b;
+            case SUBTRACT:
+                return (long) a - b;
+            case MULTIPLY:
+                return (long) a * b;
+            case DIVIDE:
+                if (b == 0) {
+                    throw Values.divisionByZero();
+                }
+                return (long) a / b;
+            default:
+                if (b == 0) {
+                    throw Values.moduloByZero();
+                }
+                return a % b;
+        }
+    }
+
+    // the rest of the operands on Numbers, after the int path stopped at next
+    private Promotion finish(Number result, int next, Frame frame) {
+        generic = true;
+        for (int i = next; i < operands.length; i++) {
+            result = Numbers.apply(op, result, operand(i, frame));
+        }
+        return new Promotion(result);
+    }
+
+    // the same operands in the same order as the int path, so it fails the same way
+    private Number executeGeneric(Frame frame) {
+        if (kind == NEGATE) {
+            return Numbers.negate(operand(0, frame));
+        }
+        int next = 0;
+        Number result;
+        if (kind == ADD) {
+            result = 0;
+        } else if (kind == MULTIPLY) {
+            result = 1;
+        } else {
+            result = operand(next++, frame);
+        }
+        for (int i = next; i < operands.length; i++) {
+            result = Numbers.apply(op, result, operand(i, frame));
+        }
+        return result;
+    }
+
+    private Number operand(int index, Frame frame) {
+        return Values.toNumber(operands[index].execute(frame), op);
+    }
+}
@@ -0,0 +1,52 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
+
+// > or < in the specializing mode. compares ints until an operand is bigger than an int,
+// then rewrites itself to compare Numbers, like SpecializingArithmetic
+
+final class SpecializingComparison implements PredicateNode {
+
+    private final String op;
+    private final CompiledNode left;
+    private final CompiledNode right;
+    private final boolean greater;
+    private boolean generic;
+
+    SpecializingComparison(String op, CompiledNode left, CompiledNode right) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+        this.greater = op.equals(">");
+    }
+
+    @Override
+    public boolean executeBoolean(Frame frame) {
+        int sign = generic ? compareNumbers(frame) : compareInts(frame);
+        return greater ? sign > 0 : sign < 0;
+    }
+
+    private int compareInts(Frame frame) {
+        int a;
+        try {
+            a = left.executeInt(frame, op);
+        } catch (Promotion p) {
+            generic = true;
+            return Numbers.compare(p.getValue(), Values.toNumber(right.execute(frame), op));
+        }
+        try {
+            return Integer.compare(a, right.executeInt(frame, op));
+        } catch (Promotion p) {
+            generic = true;
+            return Numbers.compare(a, p.getValue());
+        }
+    }
+
+    private int compareNumbers(Frame frame) {
+        Number a = Values.toNumber(left.execute(frame), op);
+        return Numbers.compare(a, Values.toNumber(right.execute(frame), op));
+    }
+}
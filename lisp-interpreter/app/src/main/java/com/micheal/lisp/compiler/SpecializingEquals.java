@@ -0,0 +1,81 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+
+// = in the specializing mode. the first run looks at the operand types and picks a version
+// for ints, for booleans or for anything. the int and boolean versions compare primitives,
+// an operand of another type rewrites the node to the generic version for good, which
+// compares with equals like the other engines
+
+final class SpecializingEquals implements PredicateNode {
+
+    private static final int UNINITIALIZED = 0;
+    private static final int INT = 1;
+    private static final int BOOLEAN = 2;
+    private static final int GENERIC = 3;
+
+    private final CompiledNode left;
+    private final CompiledNode right;
+    private int state = UNINITIALIZED;
+
+    SpecializingEquals(CompiledNode left, CompiledNode right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public boolean executeBoolean(Frame frame) {
+        switch (state) {
+            case INT:
+                return compareInts(frame);
+            case BOOLEAN:
+                return compareBooleans(frame);
+            case GENERIC:
+                return left.execute(frame).equals(right.execute(frame));
+            default: {
+                Object a = left.execute(frame);
+                Object b = right.execute(frame);
+                if (a instanceof Integer && b instanceof Integer) {
+                    state = INT;
+                } else if (a instanceof Boolean && b instanceof Boolean) {
+                    state = BOOLEAN;
+                } else {
+                    state = GENERIC;
+                }
+                return a.equals(b);
+            }
+        }
+    }
+
+    private boolean compareInts(Frame frame) {
+        int a;
+        try {
+            a = left.executeExpectingInt(frame);
+        } catch (UnexpectedResult e) {
+            state = GENERIC;
+            return e.getValue().equals(right.execute(frame));
+        }
+        try {
+            return a == right.executeExpectingInt(frame);
+        } catch (UnexpectedResult e) {
+            state = GENERIC;
+            return Integer.valueOf(a).equals(e.getValue());
+        }
+    }
+
+    private boolean compareBooleans(Frame frame) {
+        boolean a;
+        try {
+            a = left.executeExpectingBoolean(frame);
+        } catch (UnexpectedResult e) {
+            state = GENERIC;
+            return e.getValue().equals(right.execute(frame));
+        }
+        try {
+            return a == right.executeExpectingBoolean(frame);
+        } catch (UnexpectedResult e) {
+            state = GENERIC;
+            return Boolean.valueOf(a).equals(e.getValue());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.runtime.Values;
+
+// if in the specializing mode. the condition is asked for a boolean directly, so a comparison
+// never boxes its result, and a parent that wants an int gets it from the branch unboxed.
+// a condition that is not a boolean fails with the usual message
+
+final class SpecializingIf implements CompiledNode {
+
+    private final CompiledNode condition;
+    private final CompiledNode thenBranch;
+    private final CompiledNode elseBranch;
+
+    SpecializingIf(CompiledNode condition, CompiledNode thenBranch, CompiledNode elseBranch) {
+        this.condition = condition;
+        this.thenBranch = thenBranch;
+        this.elseBranch = elseBranch;
+    }
+
+    @Override
+    public Object execute(Frame frame) {
+        return test(frame) ? thenBranch.execute(frame) : elseBranch.execute(frame);
+    }
+
+    @Override
+    public int executeInt(Frame frame, String operation) {
+        return test(frame) ? thenBranch.executeInt(frame, operation) : elseBranch.executeInt(frame, operation);
+    }
+
+    @Override
+    public int executeExpectingInt(Frame frame) {
+        return test(frame) ? thenBranch.executeExpectingInt(frame) : elseBranch.executeExpectingInt(frame);
+    }
+
+    @Override
+    public boolean executeExpectingBoolean(Frame frame) {
+        return test(frame) ? thenBranch.executeExpectingBoolean(frame) : elseBranch.executeExpectingBoolean(frame);
+    }
+
+    private boolean test(Frame frame) {
+        try {
+            return condition.executeExpectingBoolean(frame);
+        } catch (UnexpectedResult e) {
+            return Values.toCondition(e.getValue());
+        }
+    }
+}
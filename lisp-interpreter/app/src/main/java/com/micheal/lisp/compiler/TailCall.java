@@ -0,0 +1,17 @@
+package com.micheal.lisp.compiler;
+
+import com.micheal.lisp.runtime.Procedure;
+
+// returned by a call in tail position instead of making the call.
+// CompiledClosure.call runs it, so a chain of tail calls never grows the Java stack
+
+final class TailCall {
+
+    final Procedure procedure;
+    final Object[] arguments;
+
+    TailCall(Procedure procedure, Object[] arguments) {
+        this.procedure = procedure;
+        this.arguments = arguments;
+    }
+}
@@ -0,0 +1,21 @@
+package com.micheal.lisp.compiler;
+
+// thrown out of CompiledNode.executeExpectingInt and executeExpectingBoolean when the result
+// has another type. it holds the result, so a specialized node can finish on its generic path
+// without running the operand again. no stack trace, like Promotion
+
+final class UnexpectedResult extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Object value;
+
+    UnexpectedResult(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+
+    Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,32 @@
+package com.micheal.lisp.engine;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.vm.BytecodeCompiler;
+import com.micheal.lisp.vm.VirtualMachine;
+
+public class BytecodeEngine implements Engine {
+
+    private final GlobalEnvironment environment;
+    private final BytecodeCompiler compiler = new BytecodeCompiler();
+    private final VirtualMachine vm;
+
+    public BytecodeEngine() {
+        this(new GlobalEnvironment());
+    }
+
+    public BytecodeEngine(GlobalEnvironment environment) {
+        this.environment = environment;
+        this.vm = new VirtualMachine(environment);
+    }
+
+    @Override
+    public Object evaluate(Node ast) {
+        return vm.run(compiler.compile(ast));
+    }
+
+    @Override
+    public GlobalEnvironment getEnvironment() {
+        return environment;
+    }
+}
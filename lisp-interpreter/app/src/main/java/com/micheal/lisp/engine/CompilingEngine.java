@@ -0,0 +1,41 @@
+package com.micheal.lisp.engine;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.compiler.Compiler;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.metrics.Metrics;
+
+public class CompilingEngine implements Engine {
+
+    private final GlobalEnvironment environment;
+    private final Compiler compiler;
+
+    public CompilingEngine() {
+        this(new GlobalEnvironment());
+    }
+
+    public CompilingEngine(GlobalEnvironment environment) {
+        this(environment, false);
+    }
+
+    // specialize builds nodes that rewrite themselves for the value types they see
+    public CompilingEngine(GlobalEnvironment environment, boolean specialize) {
+        this(environment, specialize, null);
+    }
+
+    // metrics may be null, the global cache hits and misses are then not counted
+    public CompilingEngine(GlobalEnvironment environment, boolean specialize, Metrics metrics) {
+        this.environment = environment;
+        this.compiler = new Compiler(environment, specialize, metrics);
+    }
+
+    @Override
+    public Object evaluate(Node ast) {
+        return compiler.compile(ast).execute();
+    }
+
+    @Override
+    public GlobalEnvironment getEnvironment() {
+        return environment;
+    }
+}
@@ -0,0 +1,35 @@
+package com.micheal.lisp.engine;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+
+// a way of running a parsed expression, the Repl and programmatic callers pick one by name.
+// an engine evaluates against one session environment and is not meant to be shared between threads
+
+public interface Engine {
+
+    Object evaluate(Node ast);
+
+    GlobalEnvironment getEnvironment();
+
+    static Engine forName(String name) {
+        return forName(name, new GlobalEnvironment());
+    }
+
+    static Engine forName(String name, GlobalEnvironment environment) {
+        switch (name) {
+            case "tree":
+                return new TreeWalkingEngine(environment);
+            case "compiled":
+                return new CompilingEngine(environment);
+            case "specializing":
+                return new CompilingEngine(environment, true);
+            case "vm":
+                return new BytecodeEngine(environment);
+            case "parallel":
+                return new ParallelEngine(environment);
+            default:
+                throw new IllegalArgumentException("Unknown engine: '" + name + "' (expected tree, compiled, specializing, vm or parallel)");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.micheal.lisp.engine;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.visitor.ConstantFoldingVisitor;
+
+// runs the constant folding pass over every expression before handing it to another engine.
+// wrapping is what --optimize does, leaving it off gives the unoptimized numbers to compare against
+
+public class OptimizingEngine implements Engine {
+
+    private final Engine delegate;
+    private final ConstantFoldingVisitor folder;
+
+    public OptimizingEngine(Engine delegate) {
+        this(delegate, new NodeFactory());
+    }
+
+    // nodeFactory should be the parser's, so folded subtrees are shared the same way
+    public OptimizingEngine(Engine delegate, NodeFactory nodeFactory) {
+        this.delegate = delegate;
+        this.folder = new ConstantFoldingVisitor(nodeFactory);
+    }
+
+    @Override
+    public Object evaluate(Node ast) {
+        return delegate.evaluate(folder.fold(ast));
+    }
+
+    @Override
+    public GlobalEnvironment getEnvironment() {
+        return delegate.getEnvironment();
+    }
+}
@@ -0,0 +1,30 @@
+package com.micheal.lisp.engine;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.visitor.ParallelEvaluator;
+
+public class ParallelEngine implements Engine {
+
+    private final GlobalEnvironment environment;
+    private final ParallelEvaluator evaluator;
+
+    public ParallelEngine() {
+        this(new GlobalEnvironment());
+    }
+
+    public ParallelEngine(GlobalEnvironment environment) {
+        this.environment = environment;
+        this.evaluator = new ParallelEvaluator(environment);
+    }
+
+    @Override
+    public Object evaluate(Node ast) {
+        return evaluator.evaluate(ast);
+    }
+
+    @Override
+    public GlobalEnvironment getEnvironment() {
+        return environment;
+    }
+}
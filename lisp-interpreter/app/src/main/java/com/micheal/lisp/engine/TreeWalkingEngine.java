@@ -0,0 +1,48 @@
+package com.micheal.lisp.engine;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.visitor.MemoCache;
+
+public class TreeWalkingEngine implements Engine {
+
+    private final GlobalEnvironment environment;
+    private final EvaluationVisitor evaluator;
+    private final MemoCache memoCache;
+
+    public TreeWalkingEngine() {
+        this(new GlobalEnvironment());
+    }
+
+    public TreeWalkingEngine(GlobalEnvironment environment) {
+        this(environment, null);
+    }
+
+    // memoCache may be null, results are then never cached
+    public TreeWalkingEngine(GlobalEnvironment environment, MemoCache memoCache) {
+        this(environment, memoCache, null);
+    }
+
+    // metrics may be null, nothing is counted then
+    public TreeWalkingEngine(GlobalEnvironment environment, MemoCache memoCache, Metrics metrics) {
+        this.environment = environment;
+        this.memoCache = memoCache;
+        this.evaluator = new EvaluationVisitor(environment, memoCache, metrics);
+    }
+
+    @Override
+    public Object evaluate(Node ast) {
+        return evaluator.evaluate(ast);
+    }
+
+    @Override
+    public GlobalEnvironment getEnvironment() {
+        return environment;
+    }
+
+    public MemoCache getMemoCache() {
+        return memoCache;
+    }
+}
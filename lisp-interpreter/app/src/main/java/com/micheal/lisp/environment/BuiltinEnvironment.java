@@ -0,0 +1,50 @@
+package com.micheal.lisp.environment;
+
+import com.micheal.lisp.runtime.Builtin;
+import com.micheal.lisp.runtime.Operators;
+import com.micheal.lisp.runtime.Sequences;
+import com.micheal.lisp.runtime.Vectors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// bindings every session starts with. built once and never changed afterwards,
+// so all sessions share the same instance and read it without any synchronization
+
+public final class BuiltinEnvironment {
+
+    private static final BuiltinEnvironment SHARED = new BuiltinEnvironment(bindings());
+
+    // holds the builtin symbols, so they are never collected
+    private final Map<Symbol, Object> values;
+
+    private BuiltinEnvironment(Map<String, Object> bindings) {
+        Map<Symbol, Object> values = new HashMap<>();
+        bindings.forEach((name, value) -> values.put(Symbol.intern(name), value));
+        this.values = Map.copyOf(values);
+    }
+
+    private static Map<String, Object> bindings() {
+        Map<String, Object> bindings = new HashMap<>();
+        bindings.put("true", Boolean.TRUE);
+        bindings.put("false", Boolean.FALSE);
+        List<Builtin> builtins = new ArrayList<>(Operators.builtins());
+        builtins.addAll(Vectors.builtins());
+        builtins.addAll(Sequences.builtins());
+        for (Builtin builtin : builtins) {
+            bindings.put(builtin.getName(), builtin);
+        }
+        return bindings;
+    }
+
+    public static BuiltinEnvironment shared() {
+        return SHARED;
+    }
+
+    // returns null when the symbol is not a builtin
+    public Object lookup(Symbol symbol) {
+        return values.get(symbol);
+    }
+}
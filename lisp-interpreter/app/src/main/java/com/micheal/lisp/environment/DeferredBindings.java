@@ -0,0 +1,15 @@
+package com.micheal.lisp.environment;
+
+// bindings that are only made when their symbol is first looked up, like the contents of a
+// restored snapshot. see GlobalEnvironment.restore
+
+public interface DeferredBindings {
+
+    boolean contains(Symbol symbol);
+
+    // the value of the symbol, or null if there is none
+    Object load(Symbol symbol);
+
+    // every symbol that has a binding. only getBindings walks them, restoring does not
+    Iterable<Symbol> symbols();
+}
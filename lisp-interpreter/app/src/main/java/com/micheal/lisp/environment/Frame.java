@@ -0,0 +1,48 @@
+package com.micheal.lisp.environment;
+
+// the local variables of one procedure call. a closure keeps the frame it was created in as
+// the parent of the frames for its calls. variables are plain array slots: the tree walker
+// finds them by comparing interned symbols, the Compiler resolves (depth, index) in advance
+
+public final class Frame {
+
+    private final Symbol[] names;
+    private final Object[] values;
+    private final Frame parent;
+
+    public Frame(Symbol[] names, Object[] values, Frame parent) {
+        this.names = names;
+        this.values = values;
+        this.parent = parent;
+    }
+
+    public Object get(int index) {
+        return values[index];
+    }
+
+    public Symbol getName(int index) {
+        return names[index];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public Frame getParent() {
+        return parent;
+    }
+
+    // value of the innermost binding of the symbol, or null when no enclosing frame binds it.
+    // evaluation never produces null, so null can't be a bound value
+    public Object lookup(Symbol symbol) {
+        for (Frame frame = this; frame != null; frame = frame.parent) {
+            Symbol[] frameNames = frame.names;
+            for (int i = 0; i < frameNames.length; i++) {
+                if (frameNames[i] == symbol) {
+                    return frame.values[i];
+                }
+            }
+        }
+        return null;
+    }
+}
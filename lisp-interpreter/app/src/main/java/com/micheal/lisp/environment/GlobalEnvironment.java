@@ -2,33 +2,175 @@ package com.micheal.lisp.environment;
 
 import com.micheal.lisp.exception.LispException;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// the global scope of one interpreter session. definitions go into this session only,
+// lookups fall back to the shared builtins.
+// each symbol the session has defined or loaded gets a Binding in a concurrent map, so a
+// session only costs what it defines, however many symbols the process has seen. reads
+// never lock, defines are serialized on the instance
 
 public class GlobalEnvironment {
 
-    private static final GlobalEnvironment INSTANCE = new GlobalEnvironment();
+    // marks a binding whose value is in a restored snapshot and has not been loaded yet
+    private static final Object DEFERRED = new Object();
+    // marks a binding the restored snapshots were asked about and don't have
+    private static final Object ABSENT = new Object();
+
+    // made by the first define or load of a symbol and never removed, so its version
+    // only ever grows. null means the symbol is not defined in this session
+    private static final class Binding {
+        final Symbol symbol;
+        volatile Object value;
+        // bumped by every define of the symbol, before the value is written
+        volatile long version;
+
+        Binding(Symbol symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private final BuiltinEnvironment builtins;
 
-    private final Map<String, Object> symbols = new HashMap<>();
+    // only changed under the lock
+    private final ConcurrentHashMap<Symbol, Binding> bindings = new ConcurrentHashMap<>();
+    // the same bindings in the order they were made, only used under the lock
+    private final List<Binding> order = new ArrayList<>();
+    // restored snapshots, newest last. while there are any a symbol without a value may
+    // still have one in one of them
+    private volatile DeferredBindings[] deferred = new DeferredBindings[0];
+    // counts the restores, part of every version since a restore can change any symbol
+    private volatile long restores;
+    // bumped after every define and restore, see getVersion()
+    private volatile long version;
 
-    private GlobalEnvironment() {
+    public GlobalEnvironment() {
+        this(BuiltinEnvironment.shared());
     }
 
-    public static GlobalEnvironment getInstance() {
-        return INSTANCE;
+    public GlobalEnvironment(BuiltinEnvironment builtins) {
+        this.builtins = builtins;
     }
 
     public void define(String name, Object value) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Symbol name cannot be null or empty");
         }
-        symbols.put(name, value);
+        define(Symbol.intern(name), value);
+    }
+
+    public synchronized void define(Symbol symbol, Object value) {
+        Binding binding = bind(symbol);
+        binding.version++;
+        binding.value = value;
+        version++;
+    }
+
+    // replaces the bindings of every symbol the snapshot has. nothing is read from it here,
+    // a symbol asks the snapshots the first time it is looked up, so restoring only walks
+    // the bindings this session already has
+    public synchronized void restore(DeferredBindings bindings) {
+        DeferredBindings[] grown = Arrays.copyOf(deferred, deferred.length + 1);
+        grown[grown.length - 1] = bindings;
+        deferred = grown;
+        for (Binding binding : order) {
+            Object value = binding.value;
+            if (value == ABSENT) {
+                binding.value = null;
+            } else if (value != null && value != DEFERRED && bindings.contains(binding.symbol)) {
+                binding.value = DEFERRED;
+            }
+        }
+        restores++;
+        version++;
+    }
+
+    // every binding made in this session, in the order they were made. restored values are loaded first
+    public synchronized Map<Symbol, Object> getBindings() {
+        for (DeferredBindings bindings : deferred) {
+            for (Symbol symbol : bindings.symbols()) {
+                find(symbol);
+            }
+        }
+        Map<Symbol, Object> result = new LinkedHashMap<>();
+        for (Binding binding : order) {
+            Object value = binding.value;
+            if (value != null && value != ABSENT) {
+                result.put(binding.symbol, value);
+            }
+        }
+        return result;
+    }
+
+    // how many times the symbol has been defined or a snapshot restored in this session,
+    // 0 if never. a cached result that read the symbol is still valid while its version is
+    // unchanged
+    public long getVersion(Symbol symbol) {
+        Binding binding = bindings.get(symbol);
+        long restored = restores;
+        return restored + (binding != null ? binding.version : 0);
+    }
+
+    // changes whenever any binding of this session may have, so a value looked up while it
+    // had one number is still the value while it has the same number. cheaper to check than
+    // getVersion(symbol), but a define of any symbol invalidates everything cached with it
+    public long getVersion() {
+        return version;
     }
 
     public Object lookup(String name) {
-        if (!symbols.containsKey(name)) {
-            throw new LispException("Undefined symbol: '" + name + "'");
+        return lookup(Symbol.intern(name));
+    }
+
+    public Object lookup(Symbol symbol) {
+        Object value = find(symbol);
+        if (value == null) {
+            throw new LispException("Undefined symbol: '" + symbol.getName() + "'");
+        }
+        return value;
+    }
+
+    // like lookup but returns null instead of failing, used where an undefined name gets its own error
+    public Object find(Symbol symbol) {
+        Binding binding = bindings.get(symbol);
+        Object value = binding != null ? binding.value : null;
+        if (value == DEFERRED || value == null && deferred.length > 0) {
+            value = load(symbol);
+        }
+        return value != null && value != ABSENT ? value : builtins.lookup(symbol);
+    }
+
+    // the newest snapshot that has the symbol makes its value, or ABSENT when none has it so
+    // the next lookup goes straight to the builtins. not a new definition, restoring already
+    // changed every version
+    private synchronized Object load(Symbol symbol) {
+        Binding binding = bind(symbol);
+        Object value = binding.value;
+        if (value != null && value != DEFERRED) {
+            // another thread loaded it or it was defined since
+            return value;
+        }
+        value = null;
+        for (int i = deferred.length - 1; i >= 0 && value == null; i--) {
+            value = deferred[i].load(symbol);
+        }
+        binding.value = value != null ? value : ABSENT;
+        return value;
+    }
+
+    // called under the lock
+    private Binding bind(Symbol symbol) {
+        Binding binding = bindings.get(symbol);
+        if (binding == null) {
+            binding = new Binding(symbol);
+            order.add(binding);
+            bindings.put(symbol, binding);
         }
-        return symbols.get(name);
+        return binding;
     }
 }
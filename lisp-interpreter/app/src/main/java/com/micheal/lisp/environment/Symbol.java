@@ -0,0 +1,76 @@
+package com.micheal.lisp.environment;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// an interned symbol name, so symbols can be compared and hashed by identity.
+// the table only holds weak references: a name that no tree, environment or image uses
+// anymore is garbage collected, and the next time it is read it is interned again. nobody
+// can tell, since nothing held on to the old one
+
+public final class Symbol {
+
+    private static final ConcurrentMap<String, Entry> TABLE = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Symbol> COLLECTED = new ReferenceQueue<>();
+
+    private final String name;
+
+    private Symbol(String name) {
+        this.name = name;
+    }
+
+    public static Symbol intern(String name) {
+        Entry entry = TABLE.get(name);
+        Symbol symbol = entry != null ? entry.get() : null;
+        if (symbol != null) {
+            return symbol;
+        }
+
+        removeCollected();
+        Symbol[] interned = new Symbol[1];
+        TABLE.compute(name, (key, current) -> {
+            interned[0] = current != null ? current.get() : null;
+            if (interned[0] != null) {
+                return current;
+            }
+            interned[0] = new Symbol(key);
+            return new Entry(interned[0]);
+        });
+        return interned[0];
+    }
+
+    // number of interned symbols that are still in use, for tests and diagnostics
+    public static int internedCount() {
+        removeCollected();
+        return TABLE.size();
+    }
+
+    private static void removeCollected() {
+        Entry entry;
+        while ((entry = (Entry) COLLECTED.poll()) != null) {
+            // only if the name has not been interned again since
+            TABLE.remove(entry.name, entry);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static final class Entry extends WeakReference<Symbol> {
+
+        private final String name;
+
+        Entry(Symbol symbol) {
+            super(symbol, COLLECTED);
+            this.name = symbol.name;
+        }
+    }
+}
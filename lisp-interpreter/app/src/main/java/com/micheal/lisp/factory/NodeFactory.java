@@ -1,20 +1,69 @@
 package com.micheal.lisp.factory;
 
 import com.micheal.lisp.ast.*;
+import com.micheal.lisp.environment.Symbol;
 
 import java.util.List;
 
+// nodes are immutable, so equal ones can be shared. numbers, symbols and booleans always
+// come back as one canonical instance per value, and with shareLists equal list subtrees
+// do too (hash-consing). a program that mentions the same names and constants millions
+// of times then holds each of them once, and a cache keyed on node identity sees equal
+// subtrees as the same key.
+// the canonical nodes live in one weak table for the whole JVM, small ints in a fixed array
+
 public class NodeFactory {
 
-    public NumberNode createNumber(int value) {
-        return new NumberNode(value);
+    private static final int SMALL_MIN = -128;
+    private static final int SMALL_MAX = 1023;
+    private static final NumberNode[] SMALL_NUMBERS = new NumberNode[SMALL_MAX - SMALL_MIN + 1];
+    private static final BooleanNode TRUE = new BooleanNode(true);
+    private static final BooleanNode FALSE = new BooleanNode(false);
+    private static final NodeTable TABLE = new NodeTable();
+
+    static {
+        for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+            SMALL_NUMBERS[i] = new NumberNode(i + SMALL_MIN);
+        }
+    }
+
+    private final boolean shareLists;
+
+    public NodeFactory() {
+        this(false);
+    }
+
+    // shareLists costs a table lookup per list, worth it for large generated programs
+    public NodeFactory(boolean shareLists) {
+        this.shareLists = shareLists;
+    }
+
+    // value must already be in its smallest type, see Numbers.valueOf
+    public NumberNode createNumber(Number value) {
+        if (value instanceof Integer) {
+            int small = (Integer) value;
+            if (small >= SMALL_MIN && small <= SMALL_MAX) {
+                return SMALL_NUMBERS[small - SMALL_MIN];
+            }
+        }
+        return TABLE.intern(new NumberNode(value));
     }
 
     public SymbolNode createSymbol(String name) {
-        return new SymbolNode(name);
+        return TABLE.intern(new SymbolNode(Symbol.intern(name)));
+    }
+
+    public BooleanNode createBoolean(boolean value) {
+        return value ? TRUE : FALSE;
     }
 
     public ListNode createList(List<Node> elements) {
-        return new ListNode(elements);
+        ListNode list = new ListNode(elements);
+        return shareLists ? TABLE.intern(list) : list;
+    }
+
+    // number of canonical nodes that are still in use, for tests and diagnostics
+    public static int sharedNodeCount() {
+        return TABLE.size();
     }
 }
@@ -0,0 +1,52 @@
+package com.micheal.lisp.factory;
+
+import com.micheal.lisp.ast.Node;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+// a weak intern table: equal nodes come back as one canonical instance, and an entry goes
+// away once nothing but the table refers to its node. the table is split into stripes by
+// hash so parsers on different threads rarely wait for the same lock
+
+final class NodeTable {
+
+    private static final int STRIPES = 32;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    NodeTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // the node already in the table that equals this one, or this one after adding it
+    @SuppressWarnings("unchecked")
+    <T extends Node> T intern(T node) {
+        Stripe stripe = stripes[(node.hashCode() & 0x7fffffff) % STRIPES];
+        synchronized (stripe) {
+            WeakReference<Node> reference = stripe.get(node);
+            Node existing = reference != null ? reference.get() : null;
+            if (existing != null) {
+                return (T) existing;
+            }
+            stripe.put(node, new WeakReference<>(node));
+            return node;
+        }
+    }
+
+    // nodes still reachable from the table, cleared entries are dropped on the way
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe extends WeakHashMap<Node, WeakReference<Node>> {
+    }
+}
@@ -0,0 +1,260 @@
+package com.micheal.lisp.image;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.runtime.IntVector;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// a memory-mapped image written by ImageWriter. opening it only reads the header, each
+// symbol and form is decoded from the mapping when it is asked for, so running the first
+// form of a large image does not wait for the rest. safe to share between threads
+
+public class Image {
+
+    private final ByteBuffer bytes;
+    private final NodeFactory nodeFactory;
+    // one node per symbol in the table, shared by every form that mentions it. filled in as
+    // the symbols are decoded, a thread that misses another's write decodes an equal node
+    private final SymbolNode[] symbols;
+    private final int formCount;
+    private final int nameTableSize;
+    private final int indexStart;
+    private final int nameTableStart;
+
+    public Image(ByteBuffer bytes, NodeFactory nodeFactory) throws IOException {
+        this.bytes = bytes;
+        this.nodeFactory = nodeFactory;
+        try {
+            ByteBuffer in = bytes.duplicate();
+            if (in.getInt() != ImageFormat.MAGIC) {
+                throw new IOException("Not a lisp image");
+            }
+            int version = in.getInt();
+            if (version != ImageFormat.VERSION) {
+                throw new IOException("Unsupported image version: " + version);
+            }
+            int symbolCount = in.getInt();
+            formCount = in.getInt();
+            nameTableSize = in.getInt();
+            if (symbolCount < 0 || formCount < 0 || Integer.bitCount(nameTableSize) > 1) {
+                throw new IOException("Not a lisp image");
+            }
+            symbols = new SymbolNode[symbolCount];
+            indexStart = ImageFormat.HEADER_SIZE + 4 * symbolCount;
+            nameTableStart = indexStart + ImageFormat.INDEX_ENTRY_SIZE * formCount;
+            if (nameTableStart + 4L * nameTableSize > bytes.limit()) {
+                throw new IOException("Image is truncated");
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Image is truncated");
+        }
+    }
+
+    public static Image open(Path path) throws IOException {
+        return open(path, new NodeFactory());
+    }
+
+    public static Image open(Path path, NodeFactory nodeFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Image is too large to map: " + path + " (" + size + " bytes)");
+            }
+            // the mapping stays valid after the channel is closed
+            return new Image(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), nodeFactory);
+        }
+    }
+
+    public int getFormCount() {
+        return formCount;
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    // the symbol the form is named after, or null
+    public Symbol getName(int index) {
+        checkIndex(index);
+        int name = nameOf(index);
+        return name < 0 ? null : symbol(name).getSymbol();
+    }
+
+    // the index of the form named after the symbol, or -1. reads only the table slots it
+    // probes and the names they point to
+    public int find(String name) {
+        if (nameTableSize == 0) {
+            return -1;
+        }
+        byte[] wanted = name.getBytes(StandardCharsets.UTF_8);
+        int mask = nameTableSize - 1;
+        int slot = name.hashCode() & mask;
+        for (int probes = 0; probes < nameTableSize; probes++) {
+            int form = bytes.getInt(nameTableStart + 4 * slot) - 1;
+            if (form < 0) {
+                return -1;
+            }
+            if (form >= formCount) {
+                throw new LispException("Corrupt image: name table is damaged");
+            }
+            int symbol = nameOf(form);
+            if (symbol >= 0 && nameEquals(symbol, name, wanted)) {
+                return form;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public Node getForm(int index) {
+        checkIndex(index);
+        ByteBuffer in = bytes.duplicate();
+        try {
+            in.position(bytes.getInt(indexStart + ImageFormat.INDEX_ENTRY_SIZE * index + 4));
+            return decode(in);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new LispException("Corrupt image: form " + index + " is damaged");
+        }
+    }
+
+    // the vector a form holds, or null when the form is an expression
+    public IntVector getVector(int index) {
+        checkIndex(index);
+        ByteBuffer in = bytes.duplicate();
+        try {
+            in.position(bytes.getInt(indexStart + ImageFormat.INDEX_ENTRY_SIZE * index + 4));
+            int head = in.get() & 0xFF;
+            if ((head & ImageFormat.TAG_MASK) != ImageFormat.VECTOR) {
+                return null;
+            }
+            int length = readValue(in, head);
+            // every element takes at least a byte
+            if (length < 0 || length > in.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            int[] elements = new int[length];
+            for (int i = 0; i < length; i++) {
+                int n = readVarint(in);
+                elements[i] = (n >>> 1) ^ -(n & 1);
+            }
+            return new IntVector(elements);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new LispException("Corrupt image: form " + index + " is damaged");
+        }
+    }
+
+    // the symbol index of the form's name, -1 for an unnamed form
+    private int nameOf(int form) {
+        int name = bytes.getInt(indexStart + ImageFormat.INDEX_ENTRY_SIZE * form);
+        if (name < 0 || name > symbols.length) {
+            throw new LispException("Corrupt image: form " + form + " is damaged");
+        }
+        return name - 1;
+    }
+
+    private SymbolNode symbol(int index) {
+        SymbolNode symbol = symbols[index];
+        if (symbol == null) {
+            byte[] name = symbolName(index);
+            symbol = nodeFactory.createSymbol(new String(name, StandardCharsets.UTF_8));
+            symbols[index] = symbol;
+        }
+        return symbol;
+    }
+
+    // wanted is the name in UTF-8
+    private boolean nameEquals(int index, String name, byte[] wanted) {
+        SymbolNode symbol = symbols[index];
+        return symbol != null ? symbol.getSymbol().getName().equals(name) : Arrays.equals(symbolName(index), wanted);
+    }
+
+    private byte[] symbolName(int index) {
+        ByteBuffer in = bytes.duplicate();
+        try {
+            in.position(bytes.getInt(ImageFormat.HEADER_SIZE + 4 * index));
+            return readBytes(in, readVarint(in));
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new LispException("Corrupt image: symbol " + index + " is damaged");
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= formCount) {
+            throw new IndexOutOfBoundsException("Form " + index + " of " + formCount);
+        }
+    }
+
+    private Node decode(ByteBuffer in) {
+        int head = in.get() & 0xFF;
+        int tag = head & ImageFormat.TAG_MASK;
+        switch (tag) {
+            case ImageFormat.LIST: {
+                int size = readValue(in, head);
+                List<Node> elements = new ArrayList<>(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) {
+                    elements.add(decode(in));
+                }
+                return nodeFactory.createList(elements);
+            }
+            case ImageFormat.INT: {
+                int n = readValue(in, head);
+                return nodeFactory.createNumber((n >>> 1) ^ -(n & 1));
+            }
+            case ImageFormat.LONG:
+                return nodeFactory.createNumber(in.getLong());
+            case ImageFormat.BIG: {
+                byte[] magnitude = readBytes(in, readValue(in, head));
+                return nodeFactory.createNumber(new BigInteger(magnitude));
+            }
+            case ImageFormat.SYMBOL:
+                return symbol(readValue(in, head));
+            case ImageFormat.TRUE:
+                return nodeFactory.createBoolean(true);
+            case ImageFormat.FALSE:
+                return nodeFactory.createBoolean(false);
+            default:
+                throw new LispException("Corrupt image: unknown tag " + tag + " at offset " + (in.position() - 1));
+        }
+    }
+
+    // the value stored in a tag byte, or the varint after it
+    private static int readValue(ByteBuffer in, int head) {
+        int value = head >>> ImageFormat.TAG_BITS;
+        return value < ImageFormat.FOLLOWS ? value : readVarint(in);
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint is too long");
+    }
+}
@@ -0,0 +1,57 @@
+package com.micheal.lisp.image;
+
+// layout of a compiled image. all ints are big endian.
+//
+//   int magic, int version, int symbol count, int form count, int name table size
+//   symbol index: an int per symbol, the file offset of its entry in the symbol table
+//   form index: two ints per form, its name (1 + the symbol index, 0 for an unnamed form)
+//     and the file offset where it starts. a script's forms have no names, the bindings of
+//     a Snapshot are named after their symbols
+//   name table: an int per slot, 0 or 1 + the index of a named form. a name is in the slot
+//     its String.hashCode picks or in one of the slots after it. the size is a power of two
+//     and at least twice the number of named forms, so probing stops at an empty slot soon.
+//     an image without named forms has no table
+//   symbol table: for each symbol a varint length and the UTF-8 bytes of its name
+//   forms: each one a node in preorder. a node starts with a byte that holds its tag in the
+//   low 3 bits and a small value in the high 5 bits
+//     LIST     the child count, then the children
+//     INT      the value, zigzag encoded so small negative numbers stay small
+//     LONG     8 bytes
+//     BIG      the length, then the two's complement bytes
+//     SYMBOL   the index into the symbol table
+//     TRUE, FALSE
+//     VECTOR   the length, then each element zigzag encoded as a varint. only a whole named
+//              form of a Snapshot is a vector, it is its value and not an expression
+//   a value below 31 is stored in the tag byte itself, otherwise the high bits are 31 and the
+//   value follows as a varint
+//
+// varints are 7 bits per byte with the high bit set on all but the last. most nodes of a
+// program are short lists, small numbers and one of its first 31 symbols, so they take one
+// byte each. the tables of fixed size come first, so nothing but the header has to be read
+// when an image is opened
+
+final class ImageFormat {
+
+    // "LISP"
+    static final int MAGIC = 0x4C495350;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 20;
+    static final int INDEX_ENTRY_SIZE = 8;
+
+    static final byte LIST = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte BIG = 3;
+    static final byte SYMBOL = 4;
+    static final byte TRUE = 5;
+    static final byte FALSE = 6;
+    static final byte VECTOR = 7;
+
+    static final int TAG_BITS = 3;
+    static final int TAG_MASK = (1 << TAG_BITS) - 1;
+    // high bits of a tag byte whose value follows as a varint
+    static final int FOLLOWS = 31;
+
+    private ImageFormat() {
+    }
+}
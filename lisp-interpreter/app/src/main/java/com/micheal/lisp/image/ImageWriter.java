@@ -0,0 +1,217 @@
+package com.micheal.lisp.image;
+
+import com.micheal.lisp.ast.BooleanNode;
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.NumberNode;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.parser.FormReader;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.runtime.IntVector;
+import com.micheal.lisp.script.MappedSourceReader;
+import com.micheal.lisp.visitor.ConstantFoldingVisitor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// collects parsed forms and writes them as an image (see ImageFormat). the forms are encoded
+// as they are added, the symbol table and the index are only known once all of them are in
+
+public class ImageWriter {
+
+    private final Map<Symbol, Integer> symbolIndexes = new HashMap<>();
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final List<Integer> formNames = new ArrayList<>();
+    private final List<Integer> formOffsets = new ArrayList<>();
+    private final ByteArrayOutputStream forms = new ByteArrayOutputStream();
+
+    // parses a script and writes its forms to an image, folded first when optimize is set.
+    // returns the number of forms
+    public static int compile(LispParser parser, Path script, Path image, boolean optimize) throws IOException {
+        ImageWriter writer = new ImageWriter();
+        ConstantFoldingVisitor folder = optimize ? new ConstantFoldingVisitor(parser.getNodeFactory()) : null;
+        try (Reader source = MappedSourceReader.open(script)) {
+            FormReader reader = parser.readForms(source);
+            while (reader.hasNext()) {
+                Node form = reader.next();
+                writer.add(folder != null ? folder.fold(form) : form);
+            }
+        }
+        writer.write(image);
+        return writer.getFormCount();
+    }
+
+    public void add(Node form) {
+        formNames.add(0);
+        formOffsets.add(forms.size());
+        encode(form);
+    }
+
+    public void add(Symbol name, Node form) {
+        formNames.add(indexOf(name) + 1);
+        formOffsets.add(forms.size());
+        encode(form);
+    }
+
+    public void add(Symbol name, IntVector vector) {
+        formNames.add(indexOf(name) + 1);
+        formOffsets.add(forms.size());
+        writeTag(ImageFormat.VECTOR, vector.length());
+        for (int i = 0; i < vector.length(); i++) {
+            int n = vector.get(i);
+            writeVarint(forms, (n << 1) ^ (n >> 31));
+        }
+    }
+
+    public int getFormCount() {
+        return formOffsets.size();
+    }
+
+    public void write(Path image) throws IOException {
+        try (OutputStream file = Files.newOutputStream(image)) {
+            write(file);
+        }
+    }
+
+    public void write(OutputStream target) throws IOException {
+        int[] symbolOffsets = new int[symbols.size()];
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        for (int i = 0; i < symbolOffsets.length; i++) {
+            symbolOffsets[i] = table.size();
+            byte[] name = symbols.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            writeVarint(table, name.length);
+            table.write(name, 0, name.length);
+        }
+        int[] names = nameTable();
+
+        long tableStart = ImageFormat.HEADER_SIZE + 4L * symbolOffsets.length
+                + (long) ImageFormat.INDEX_ENTRY_SIZE * formOffsets.size() + 4L * names.length;
+        long formsStart = tableStart + table.size();
+        if (formsStart + forms.size() > Integer.MAX_VALUE) {
+            throw new IOException("Image is too large: " + (formsStart + forms.size()) + " bytes");
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        out.writeInt(ImageFormat.MAGIC);
+        out.writeInt(ImageFormat.VERSION);
+        out.writeInt(symbols.size());
+        out.writeInt(formOffsets.size());
+        out.writeInt(names.length);
+        for (int offset : symbolOffsets) {
+            out.writeInt((int) tableStart + offset);
+        }
+        for (int i = 0; i < formOffsets.size(); i++) {
+            out.writeInt(formNames.get(i));
+            out.writeInt((int) formsStart + formOffsets.get(i));
+        }
+        for (int slot : names) {
+            out.writeInt(slot);
+        }
+        table.writeTo(out);
+        forms.writeTo(out);
+        out.flush();
+    }
+
+    // open addressing on String.hashCode, see ImageFormat
+    private int[] nameTable() {
+        int named = 0;
+        for (int name : formNames) {
+            if (name != 0) {
+                named++;
+            }
+        }
+        if (named == 0) {
+            return new int[0];
+        }
+
+        int[] slots = new int[Integer.highestOneBit(named) * 4];
+        for (int form = 0; form < formNames.size(); form++) {
+            int name = formNames.get(form);
+            if (name == 0) {
+                continue;
+            }
+            int slot = symbols.get(name - 1).getName().hashCode() & (slots.length - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = form + 1;
+        }
+        return slots;
+    }
+
+    // preorder, recursive like the parser that built the tree
+    private void encode(Node node) {
+        if (node instanceof NumberNode) {
+            encodeNumber(((NumberNode) node).getValue());
+        } else if (node instanceof SymbolNode) {
+            writeTag(ImageFormat.SYMBOL, indexOf(((SymbolNode) node).getSymbol()));
+        } else if (node instanceof BooleanNode) {
+            forms.write(((BooleanNode) node).getValue() ? ImageFormat.TRUE : ImageFormat.FALSE);
+        } else {
+            List<Node> elements = ((ListNode) node).getElements();
+            writeTag(ImageFormat.LIST, elements.size());
+            for (Node element : elements) {
+                encode(element);
+            }
+        }
+    }
+
+    private void encodeNumber(Number value) {
+        if (value instanceof Integer) {
+            int n = (Integer) value;
+            writeTag(ImageFormat.INT, (n << 1) ^ (n >> 31));
+        } else if (value instanceof Long) {
+            long n = (Long) value;
+            forms.write(ImageFormat.LONG);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                forms.write((int) (n >>> shift));
+            }
+        } else {
+            byte[] bytes = ((BigInteger) value).toByteArray();
+            writeTag(ImageFormat.BIG, bytes.length);
+            forms.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private int indexOf(Symbol symbol) {
+        Integer index = symbolIndexes.get(symbol);
+        if (index == null) {
+            index = symbols.size();
+            symbols.add(symbol);
+            symbolIndexes.put(symbol, index);
+        }
+        return index;
+    }
+
+    // one byte when the value fits next to the tag
+    private void writeTag(byte tag, int value) {
+        if (value >= 0 && value < ImageFormat.FOLLOWS) {
+            forms.write(tag | value << ImageFormat.TAG_BITS);
+        } else {
+            forms.write(tag | ImageFormat.FOLLOWS << ImageFormat.TAG_BITS);
+            writeVarint(forms, value);
+        }
+    }
+
+    // value is treated as unsigned
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,144 @@
+package com.micheal.lisp.image;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.DeferredBindings;
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.runtime.IntVector;
+import com.micheal.lisp.runtime.Procedure;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// the global bindings of a session saved to a file, so a new process can start where the
+// last one stopped. the file is an image with one form per binding, named after its symbol,
+// that evaluates back to the value: a number, a boolean or a lambda. a lambda that captured
+// variables is wrapped in a call that binds them again, ((lambda (n) (lambda (x) (+ x n))) 5).
+// a vector is stored as its elements instead of an expression.
+// restoring maps the file and reads only its header. a binding is found in the image's name
+// table and evaluated the first time its symbol is looked up, so a restart is quick however
+// much was saved.
+// restored procedures are tree walker closures, which every engine can call
+
+public final class Snapshot implements DeferredBindings {
+
+    private final Image image;
+    // only runs lambda expressions, GlobalEnvironment calls load under its lock
+    private final EvaluationVisitor evaluator;
+
+    private Snapshot(Image image, GlobalEnvironment environment) {
+        this.image = image;
+        this.evaluator = new EvaluationVisitor(environment);
+    }
+
+    // writes every binding of the environment that can be saved and returns how many that
+    // were. procedures that are not lambdas, and lambdas that captured one or a vector, are
+    // left out
+    public static int save(GlobalEnvironment environment, Path path) throws IOException {
+        NodeFactory nodeFactory = new NodeFactory();
+        ImageWriter writer = new ImageWriter();
+        for (Map.Entry<Symbol, Object> binding : environment.getBindings().entrySet()) {
+            if (binding.getValue() instanceof IntVector) {
+                writer.add(binding.getKey(), (IntVector) binding.getValue());
+                continue;
+            }
+            Node form = toNode(binding.getValue(), nodeFactory);
+            if (form != null) {
+                writer.add(binding.getKey(), form);
+            }
+        }
+        writer.write(path);
+        return writer.getFormCount();
+    }
+
+    // replaces the environment's bindings of every symbol in the snapshot and returns how
+    // many there are. the values are loaded on first lookup
+    public static int restore(Path path, GlobalEnvironment environment) throws IOException {
+        Snapshot snapshot = new Snapshot(Image.open(path), environment);
+        environment.restore(snapshot);
+        return snapshot.image.getFormCount();
+    }
+
+    @Override
+    public boolean contains(Symbol symbol) {
+        return image.find(symbol.getName()) >= 0;
+    }
+
+    @Override
+    public Object load(Symbol symbol) {
+        int form = image.find(symbol.getName());
+        if (form < 0) {
+            return null;
+        }
+        // built straight from its elements, a call to vector would depend on what the
+        // session has bound to that name
+        IntVector vector = image.getVector(form);
+        return vector != null ? vector : evaluator.evaluate(image.getForm(form));
+    }
+
+    @Override
+    public Iterable<Symbol> symbols() {
+        List<Symbol> symbols = new ArrayList<>(image.getFormCount());
+        for (int i = 0; i < image.getFormCount(); i++) {
+            symbols.add(image.getName(i));
+        }
+        return symbols;
+    }
+
+    // an expression that evaluates to the value, or null when it can't be written as one
+    private static Node toNode(Object value, NodeFactory nodeFactory) {
+        if (value instanceof Number) {
+            return nodeFactory.createNumber((Number) value);
+        }
+        if (value instanceof Boolean) {
+            return nodeFactory.createBoolean((Boolean) value);
+        }
+        if (!(value instanceof Procedure) || ((Procedure) value).getBody() == null) {
+            return null;
+        }
+
+        Procedure procedure = (Procedure) value;
+        Node lambda = lambda(procedure.getParameters(), procedure.getBody(), nodeFactory);
+
+        // the innermost binding of every captured name, like Frame.lookup finds it
+        List<Node> names = new ArrayList<>();
+        List<Node> values = new ArrayList<>();
+        Set<Symbol> seen = new HashSet<>();
+        for (Frame frame = procedure.getFrame(); frame != null; frame = frame.getParent()) {
+            for (int i = 0; i < frame.size(); i++) {
+                if (seen.add(frame.getName(i))) {
+                    Node captured = toNode(frame.get(i), nodeFactory);
+                    if (captured == null) {
+                        return null;
+                    }
+                    names.add(nodeFactory.createSymbol(frame.getName(i).getName()));
+                    values.add(captured);
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return lambda;
+        }
+
+        List<Node> call = new ArrayList<>();
+        call.add(nodeFactory.createList(List.of(nodeFactory.createSymbol("lambda"), nodeFactory.createList(names), lambda)));
+        call.addAll(values);
+        return nodeFactory.createList(call);
+    }
+
+    private static Node lambda(Symbol[] parameters, Node body, NodeFactory nodeFactory) {
+        List<Node> names = new ArrayList<>();
+        for (Symbol parameter : parameters) {
+            names.add(nodeFactory.createSymbol(parameter.getName()));
+        }
+        return nodeFactory.createList(List.of(nodeFactory.createSymbol("lambda"), nodeFactory.createList(names), body));
+    }
+}
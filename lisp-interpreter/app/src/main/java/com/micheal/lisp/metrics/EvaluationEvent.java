@@ -0,0 +1,19 @@
+package com.micheal.lisp.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// one top-level evaluation by an EvaluationVisitor with metrics enabled
+
+@Name("com.micheal.lisp.Evaluation")
+@Label("Lisp Evaluation")
+@Category("Lisp")
+@Description("Evaluation of one top-level expression")
+public class EvaluationEvent extends Event {
+
+    @Label("Nodes Evaluated")
+    public long nodes;
+}
@@ -0,0 +1,90 @@
+package com.micheal.lisp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// durations in power of two buckets: bucket i counts values in [2^i, 2^(i+1)) nanoseconds.
+// recording is a striped increment, so many threads can record and another can read
+// without locking. percentiles are reported as the upper bound of their bucket
+
+public class LatencyHistogram {
+
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        buckets[63 - Long.numberOfLeadingZeros(Math.max(nanos, 1))].increment();
+        totalNanos.add(nanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    // upper bound of the bucket holding the given percentile (0 to 100), 0 when nothing was recorded
+    public long percentileNanos(double percentile) {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == 62 ? Long.MAX_VALUE : 1L << (i + 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        long count = getCount();
+        if (count == 0) {
+            return "none";
+        }
+        return String.format("%d, total %s, mean %s, p50 < %s, p99 < %s, max < %s",
+                count, format(getTotalNanos()), format(getTotalNanos() / count),
+                format(percentileNanos(50)), format(percentileNanos(99)), format(percentileNanos(100)));
+    }
+
+    static String format(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.1fms", nanos / 1e6);
+        }
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,146 @@
+package com.micheal.lisp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// counters and timings filled in by a LispParser, an EvaluationVisitor and a Compiler that
+// were given this instance. all counters are LongAdders, so sessions on several threads can share one
+// Metrics and it can be read or reset from any thread while they run.
+// instrumentation is off when no Metrics is passed in, which costs one null check per node
+
+public class Metrics {
+
+    // what the operator counters are reported under, "call" counts procedure calls
+    static final String[] OPERATORS = {"+", "-", "*", "/", "%", ">", "<", "=", "if", "define", "lambda", "call"};
+
+    private final LongAdder[] operatorCounts = new LongAdder[OPERATORS.length];
+    private final LongAdder nodesEvaluated = new LongAdder();
+    private final LongAdder symbolLookups = new LongAdder();
+    // global variables of compiled code answered from their node's cache or looked up
+    private final LongAdder globalCacheHits = new LongAdder();
+    private final LongAdder globalCacheMisses = new LongAdder();
+    private final LatencyHistogram parseTimes = new LatencyHistogram();
+    private final LatencyHistogram evaluationTimes = new LatencyHistogram();
+
+    public Metrics() {
+        for (int i = 0; i < operatorCounts.length; i++) {
+            operatorCounts[i] = new LongAdder();
+        }
+    }
+
+    // op is the name in the head position of a list, anything that isn't a builtin is a call
+    public void countOperator(String op) {
+        operatorCounts[indexOf(op)].increment();
+    }
+
+    public void countNodes(long nodes) {
+        nodesEvaluated.add(nodes);
+    }
+
+    public void countLookup() {
+        symbolLookups.increment();
+    }
+
+    public void countGlobalCacheHit() {
+        globalCacheHits.increment();
+    }
+
+    public void countGlobalCacheMiss() {
+        globalCacheMisses.increment();
+    }
+
+    public void recordParse(long nanos) {
+        parseTimes.record(nanos);
+    }
+
+    public void recordEvaluation(long nanos) {
+        evaluationTimes.record(nanos);
+    }
+
+    public long getOperatorCount(String op) {
+        return operatorCounts[indexOf(op)].sum();
+    }
+
+    public long getNodesEvaluated() {
+        return nodesEvaluated.sum();
+    }
+
+    public long getSymbolLookups() {
+        return symbolLookups.sum();
+    }
+
+    public long getGlobalCacheHits() {
+        return globalCacheHits.sum();
+    }
+
+    public long getGlobalCacheMisses() {
+        return globalCacheMisses.sum();
+    }
+
+    public LatencyHistogram getParseTimes() {
+        return parseTimes;
+    }
+
+    public LatencyHistogram getEvaluationTimes() {
+        return evaluationTimes;
+    }
+
+    public void reset() {
+        for (LongAdder count : operatorCounts) {
+            count.reset();
+        }
+        nodesEvaluated.reset();
+        symbolLookups.reset();
+        globalCacheHits.reset();
+        globalCacheMisses.reset();
+        parseTimes.reset();
+        evaluationTimes.reset();
+    }
+
+    private static int indexOf(String op) {
+        switch (op) {
+            case "+":
+                return 0;
+            case "-":
+                return 1;
+            case "*":
+                return 2;
+            case "/":
+                return 3;
+            case "%":
+                return 4;
+            case ">":
+                return 5;
+            case "<":
+                return 6;
+            case "=":
+                return 7;
+            case "if":
+                return 8;
+            case "define":
+                return 9;
+            case "lambda":
+                return 10;
+            default:
+                return 11;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("parses: ").append(parseTimes).append('\n');
+        report.append("evaluations: ").append(evaluationTimes).append('\n');
+        report.append("nodes evaluated: ").append(getNodesEvaluated()).append('\n');
+        report.append("symbol lookups: ").append(getSymbolLookups()).append('\n');
+        report.append("global cache: hits=").append(getGlobalCacheHits())
+                .append(" misses=").append(getGlobalCacheMisses()).append('\n');
+        report.append("operators:");
+        for (int i = 0; i < OPERATORS.length; i++) {
+            long count = operatorCounts[i].sum();
+            if (count > 0) {
+                report.append(' ').append(OPERATORS[i]).append('=').append(count);
+            }
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package com.micheal.lisp.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// one expression parsed by a LispParser with metrics enabled
+
+@Name("com.micheal.lisp.Parse")
+@Label("Lisp Parse")
+@Category("Lisp")
+@Description("Parsing of one top-level expression")
+public class ParseEvent extends Event {
+
+    @Label("Source Length")
+    @Description("Characters read for the expression")
+    public long characters;
+}
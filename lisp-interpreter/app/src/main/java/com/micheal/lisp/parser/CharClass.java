@@ -0,0 +1,37 @@
+package com.micheal.lisp.parser;
+
+import com.micheal.lisp.runtime.Numbers;
+
+import java.math.BigInteger;
+
+// character rules shared by the lexers
+
+final class CharClass {
+
+    // a magnitude below this is exact, the lexers stop growing it once it gets here
+    static final long MAGNITUDE_LIMIT = 100_000_000_000_000_000L;
+
+    private CharClass() {
+    }
+
+    // same characters as \s in a regex
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    static boolean isDelimiter(char c) {
+        return c == '(' || c == ')' || isWhitespace(c);
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // the literal in the smallest type of the numeric tower that holds it
+    static Number toNumber(boolean negative, long magnitude, CharSequence text) {
+        if (magnitude < MAGNITUDE_LIMIT) {
+            return Numbers.valueOf(negative ? -magnitude : magnitude);
+        }
+        return Numbers.valueOf(new BigInteger(text.toString()));
+    }
+}
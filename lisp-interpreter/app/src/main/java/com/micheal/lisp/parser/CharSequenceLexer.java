@@ -0,0 +1,87 @@
+package com.micheal.lisp.parser;
+
+// scans a CharSequence in a single pass without copying it, tokens are reported as
+// offsets into the input and numbers are parsed while their digits are scanned
+
+public class CharSequenceLexer implements Lexer {
+
+    private final CharSequence input;
+    private final int length;
+    private int position;
+
+    private TokenType type;
+    private int start;
+    private int end;
+    private Number numberValue;
+
+    public CharSequenceLexer(CharSequence input) {
+        this.input = input;
+        this.length = input.length();
+    }
+
+    @Override
+    public TokenType next() {
+        while (position < length && CharClass.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+
+        start = position;
+        if (position == length) {
+            end = position;
+            return type = TokenType.END;
+        }
+
+        char c = input.charAt(position++);
+        if (c == '(' || c == ')') {
+            end = position;
+            return type = c == '(' ? TokenType.LEFT_PAREN : TokenType.RIGHT_PAREN;
+        }
+
+        boolean negative = c == '-';
+        boolean numeric = negative || CharClass.isDigit(c);
+        long magnitude = negative ? 0 : c - '0';
+        while (position < length && !CharClass.isDelimiter(c = input.charAt(position))) {
+            if (numeric && CharClass.isDigit(c)) {
+                // stop growing before it can overflow, longer literals are parsed from the text
+                if (magnitude < CharClass.MAGNITUDE_LIMIT) {
+                    magnitude = magnitude * 10 + (c - '0');
+                }
+            } else {
+                numeric = false;
+            }
+            position++;
+        }
+        end = position;
+
+        if (numeric && end - start > (negative ? 1 : 0)) {
+            numberValue = CharClass.toNumber(negative, magnitude, input.subSequence(start, end));
+            return type = TokenType.NUMBER;
+        }
+        return type = TokenType.SYMBOL;
+    }
+
+    @Override
+    public TokenType type() {
+        return type;
+    }
+
+    @Override
+    public long start() {
+        return start;
+    }
+
+    @Override
+    public long end() {
+        return end;
+    }
+
+    @Override
+    public Number numberValue() {
+        return numberValue;
+    }
+
+    @Override
+    public String symbolName() {
+        return input.subSequence(start, end).toString();
+    }
+}
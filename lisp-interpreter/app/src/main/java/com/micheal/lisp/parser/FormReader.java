@@ -0,0 +1,31 @@
+package com.micheal.lisp.parser;
+
+import com.micheal.lisp.ast.Node;
+
+import java.util.NoSuchElementException;
+
+// hands out the top-level expressions of a source one at a time, only the
+// expression being parsed is held in memory
+
+public class FormReader {
+
+    private final LispParser parser;
+    private final Lexer lexer;
+
+    FormReader(LispParser parser, Lexer lexer) {
+        this.parser = parser;
+        this.lexer = lexer;
+        lexer.next();
+    }
+
+    public boolean hasNext() {
+        return lexer.type() != TokenType.END;
+    }
+
+    public Node next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more expressions");
+        }
+        return parser.parseForm(lexer);
+    }
+}
@@ -0,0 +1,105 @@
+package com.micheal.lisp.parser;
+
+import java.util.function.Consumer;
+
+// takes source text in chunks of any size (REPL lines, socket reads) and hands out the text of
+// each top-level form as soon as it is complete, so it can be evaluated while more input is
+// still arriving. the paren depth and the position of the form being read are kept between
+// calls, so every character is scanned once however the input is split.
+// the caller parses each form with LispParser.parse or a ParseCache. input that is not a
+// valid form (a stray ')' or a list that is never closed) is handed out as well, and the
+// parser reports the same error for it as for any other input
+
+public class IncrementalParser {
+
+    private final StringBuilder pending = new StringBuilder();
+    // characters of pending that have been scanned
+    private int scanned;
+    // where the form being read starts in pending, -1 between forms
+    private int formStart = -1;
+    private int depth;
+
+    public void feed(CharSequence chunk, Consumer<String> forms) {
+        pending.append(chunk);
+        while (scanned < pending.length()) {
+            char c = pending.charAt(scanned++);
+            if (c == '(') {
+                if (formStart >= 0 && depth == 0) {
+                    // an atom followed directly by a list, like "x(+ 1 2)"
+                    emit(scanned - 1, forms);
+                }
+                if (formStart < 0) {
+                    formStart = scanned - 1;
+                }
+                depth++;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    if (formStart >= 0) {
+                        emit(scanned - 1, forms);
+                    }
+                    formStart = scanned - 1;
+                    emit(scanned, forms);
+                } else if (--depth == 0) {
+                    emit(scanned, forms);
+                }
+            } else if (CharClass.isWhitespace(c)) {
+                if (formStart >= 0 && depth == 0) {
+                    emit(scanned - 1, forms);
+                }
+            } else if (formStart < 0) {
+                formStart = scanned - 1;
+            }
+        }
+        compact();
+    }
+
+    // the input has ended, hands out whatever is left
+    public void finish(Consumer<String> forms) {
+        if (formStart >= 0) {
+            emit(pending.length(), forms);
+        }
+        reset();
+    }
+
+    // true while a form has started but is not complete yet
+    public boolean isInsideForm() {
+        return formStart >= 0;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    // characters held for the form being read
+    public int getPendingLength() {
+        return formStart < 0 ? 0 : pending.length() - formStart;
+    }
+
+    public void reset() {
+        pending.setLength(0);
+        scanned = 0;
+        formStart = -1;
+        depth = 0;
+    }
+
+    // the state is updated before the form is handed out. if forms throws, the rest of the
+    // chunk stays pending and is scanned by the next call
+    private void emit(int end, Consumer<String> forms) {
+        String form = pending.substring(formStart, end);
+        formStart = -1;
+        depth = 0;
+        forms.accept(form);
+    }
+
+    // drops text that belongs to forms that were already handed out
+    private void compact() {
+        int keep = formStart < 0 ? pending.length() : formStart;
+        if (keep > 0) {
+            pending.delete(0, keep);
+            scanned -= keep;
+            if (formStart >= 0) {
+                formStart = 0;
+            }
+        }
+    }
+}
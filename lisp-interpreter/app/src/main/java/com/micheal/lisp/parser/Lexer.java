@@ -0,0 +1,23 @@
+package com.micheal.lisp.parser;
+
+// splits source text into tokens one at a time. a token is either a paren or a run of
+// characters up to the next whitespace or paren, runs matching -?[0-9]+ are numbers
+
+public interface Lexer {
+
+    // moves to the next token and returns its type, END once the input is used up
+    TokenType next();
+
+    TokenType type();
+
+    // offsets of the current token in the input, end is exclusive
+    long start();
+
+    long end();
+
+    // value of the current NUMBER token, parsed while it was scanned
+    Number numberValue();
+
+    // text of the current SYMBOL token
+    String symbolName();
+}
@@ -1,63 +1,173 @@
 package com.micheal.lisp.parser;
 
+import com.micheal.lisp.ast.FlatAst;
 import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.exception.LispException;
 import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.metrics.ParseEvent;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
 public class LispParser {
 
-    private final NodeFactory nodeFactory = new NodeFactory();
-    private List<String> tokens;
-    private int position;
+    private final NodeFactory nodeFactory;
+    // optional, null when parse times are not recorded
+    private final Metrics metrics;
 
-    public Node parse(String input) {
-        this.tokens = tokenize(input);
-        this.position = 0;
-        return parseExpression();
+    public LispParser() {
+        this(null);
     }
 
-    private Node parseExpression() {
-        String token = tokens.get(position);
+    public LispParser(Metrics metrics) {
+        this(new NodeFactory(), metrics);
+    }
+
+    // a NodeFactory(true) makes equal subtrees of everything this parser reads one shared instance
+    public LispParser(NodeFactory nodeFactory, Metrics metrics) {
+        this.nodeFactory = nodeFactory;
+        this.metrics = metrics;
+    }
+
+    public NodeFactory getNodeFactory() {
+        return nodeFactory;
+    }
+
+    // parses the first expression of the input, anything after it is ignored
+    public Node parse(CharSequence input) {
+        Lexer lexer = new CharSequenceLexer(input);
+        lexer.next();
+        return parseForm(lexer);
+    }
+
+    // parses the first expression of the input straight into the flat representation,
+    // without creating a Node per element. errors are the same as parse() reports
+    public FlatAst parseFlat(CharSequence input) {
+        Lexer lexer = new CharSequenceLexer(input);
+        lexer.next();
+        return parseFlat(lexer);
+    }
 
-        if ("(".equals(token)) {
-            position++; // skip '('
-            List<Node> elements = new ArrayList<>();
+    public FlatAst parseFlat(Reader reader) {
+        Lexer lexer = new ReaderLexer(reader);
+        lexer.next();
+        return parseFlat(lexer);
+    }
+
+    // timed when metrics are enabled, like parseForm
+    private FlatAst parseFlat(Lexer lexer) {
+        if (metrics == null) {
+            return buildFlat(lexer);
+        }
 
-            while (!")".equals(tokens.get(position))) {
-                elements.add(parseExpression());
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long offset = lexer.start();
+        try {
+            return buildFlat(lexer);
+        } finally {
+            metrics.recordParse(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.characters = lexer.start() - offset;
+                event.commit();
             }
-            position++; // skip ')'
-            return nodeFactory.createList(elements);
         }
+    }
+
+    // iterative, a list is closed by its ')' so deep nesting does not use Java stack
+    private FlatAst buildFlat(Lexer lexer) {
+        FlatAst.Builder builder = new FlatAst.Builder();
+        do {
+            switch (lexer.type()) {
+                case LEFT_PAREN:
+                    builder.startList();
+                    break;
+                case RIGHT_PAREN:
+                    if (builder.getDepth() == 0) {
+                        throw new LispException("Unexpected ')' at offset " + lexer.start());
+                    }
+                    builder.endList();
+                    break;
+                case NUMBER:
+                    builder.addNumber(lexer.numberValue());
+                    break;
+                case SYMBOL:
+                    builder.addSymbol(Symbol.intern(lexer.symbolName()));
+                    break;
+                default:
+                    throw new LispException(builder.getDepth() > 0
+                            ? "Unexpected end of input, missing ')'" : "Unexpected end of input");
+            }
+            lexer.next();
+        } while (builder.getDepth() > 0);
 
-        position++;
-        return parseAtom(token);
+        return builder.build();
     }
 
-    private Node parseAtom(String token) {
-        if (isNumber(token)) {
-            return nodeFactory.createNumber(Integer.parseInt(token));
-        }
-        return nodeFactory.createSymbol(token);
+    // reads every top-level expression of the input one after another
+    public FormReader readForms(CharSequence input) {
+        return new FormReader(this, new CharSequenceLexer(input));
+    }
+
+    public FormReader readForms(Reader reader) {
+        return new FormReader(this, new ReaderLexer(reader));
     }
 
-    private List<String> tokenize(String input) {
-        // add spaces around parens so they become separate tokens
-        input = input.replace("(", " ( ").replace(")", " ) ");
-        String[] parts = input.trim().split("\\s+");
+    // parses one top-level expression, timed when metrics are enabled
+    Node parseForm(Lexer lexer) {
+        if (metrics == null) {
+            return parseExpression(lexer);
+        }
 
-        List<String> tokens = new ArrayList<>();
-        for (String part : parts) {
-            if (!part.isBlank()) {
-                tokens.add(part);
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long offset = lexer.start();
+        try {
+            return parseExpression(lexer);
+        } finally {
+            metrics.recordParse(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.characters = lexer.start() - offset;
+                event.commit();
             }
         }
-        return tokens;
     }
 
-    private boolean isNumber(String token) {
-        return token.matches("-?\\d+");
+    // parses the expression starting at the lexer's current token and leaves the lexer on the token after it
+    Node parseExpression(Lexer lexer) {
+        switch (lexer.type()) {
+            case LEFT_PAREN: {
+                lexer.next(); // skip '('
+                List<Node> elements = new ArrayList<>();
+
+                while (lexer.type() != TokenType.RIGHT_PAREN) {
+                    if (lexer.type() == TokenType.END) {
+                        throw new LispException("Unexpected end of input, missing ')'");
+                    }
+                    elements.add(parseExpression(lexer));
+                }
+                lexer.next(); // skip ')'
+                return nodeFactory.createList(elements);
+            }
+            case NUMBER: {
+                Node number = nodeFactory.createNumber(lexer.numberValue());
+                lexer.next();
+                return number;
+            }
+            case SYMBOL: {
+                Node symbol = nodeFactory.createSymbol(lexer.symbolName());
+                lexer.next();
+                return symbol;
+            }
+            case RIGHT_PAREN:
+                throw new LispException("Unexpected ')' at offset " + lexer.start());
+            default:
+                throw new LispException("Unexpected end of input");
+        }
     }
 }
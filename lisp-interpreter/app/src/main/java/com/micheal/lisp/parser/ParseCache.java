@@ -0,0 +1,99 @@
+package com.micheal.lisp.parser;
+
+import com.micheal.lisp.ast.Node;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// bounded LRU cache in front of the parser, keyed by source text. ASTs are immutable so one
+// cached tree can be handed to any number of sessions. the value can also be something built
+// from the AST (like a compiled form) by passing a different builder.
+// safe to share between threads, building a missing entry happens outside the lock
+
+public class ParseCache<T> {
+
+    private final int maxSize;
+    private final Function<String, T> builder;
+    private final LinkedHashMap<String, T> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ParseCache(int maxSize, Function<String, T> builder) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.builder = builder;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                if (size() > ParseCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static ParseCache<Node> forParser(LispParser parser, int maxSize) {
+        return new ParseCache<>(maxSize, parser::parse);
+    }
+
+    public T get(String source) {
+        synchronized (this) {
+            T cached = entries.get(source);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        // sources that fail to parse are not cached, the error is raised every time
+        T built = builder.apply(source);
+        synchronized (this) {
+            T raced = entries.putIfAbsent(source, built);
+            return raced != null ? raced : built;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("parse cache: %d/%d entries, %d hits, %d misses, %d evictions, hit rate %.1f%%",
+                entries.size(), maxSize, hits, misses, evictions, lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+}
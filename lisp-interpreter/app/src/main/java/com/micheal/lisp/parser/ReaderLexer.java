@@ -0,0 +1,126 @@
+package com.micheal.lisp.parser;
+
+import com.micheal.lisp.exception.LispException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// streaming version of CharSequenceLexer, pulls the input through a fixed size buffer
+// so arbitrarily large sources can be parsed without holding them in memory
+
+public class ReaderLexer implements Lexer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int limit;
+    private int position;
+    // offset of buffer[0] in the whole stream
+    private long bufferOffset;
+    private boolean exhausted;
+
+    private final StringBuilder text = new StringBuilder();
+    private TokenType type;
+    private long start;
+    private long end;
+    private Number numberValue;
+
+    public ReaderLexer(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public TokenType next() {
+        while (ensureAvailable() && CharClass.isWhitespace(buffer[position])) {
+            position++;
+        }
+
+        start = bufferOffset + position;
+        if (!ensureAvailable()) {
+            end = start;
+            return type = TokenType.END;
+        }
+
+        char c = buffer[position++];
+        if (c == '(' || c == ')') {
+            end = start + 1;
+            return type = c == '(' ? TokenType.LEFT_PAREN : TokenType.RIGHT_PAREN;
+        }
+
+        text.setLength(0);
+        text.append(c);
+        boolean negative = c == '-';
+        boolean numeric = negative || CharClass.isDigit(c);
+        long magnitude = negative ? 0 : c - '0';
+        while (ensureAvailable() && !CharClass.isDelimiter(c = buffer[position])) {
+            text.append(c);
+            if (numeric && CharClass.isDigit(c)) {
+                if (magnitude < CharClass.MAGNITUDE_LIMIT) {
+                    magnitude = magnitude * 10 + (c - '0');
+                }
+            } else {
+                numeric = false;
+            }
+            position++;
+        }
+        end = start + text.length();
+
+        if (numeric && text.length() > (negative ? 1 : 0)) {
+            numberValue = CharClass.toNumber(negative, magnitude, text);
+            return type = TokenType.NUMBER;
+        }
+        return type = TokenType.SYMBOL;
+    }
+
+    private boolean ensureAvailable() {
+        if (position < limit) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        try {
+            bufferOffset += limit;
+            position = 0;
+            limit = 0;
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            if (read < 0) {
+                exhausted = true;
+                return false;
+            }
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new LispException("Failed to read input: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public TokenType type() {
+        return type;
+    }
+
+    @Override
+    public long start() {
+        return start;
+    }
+
+    @Override
+    public long end() {
+        return end;
+    }
+
+    @Override
+    public Number numberValue() {
+        return numberValue;
+    }
+
+    @Override
+    public String symbolName() {
+        return text.toString();
+    }
+}
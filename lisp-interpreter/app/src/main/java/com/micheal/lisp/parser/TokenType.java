@@ -0,0 +1,9 @@
+package com.micheal.lisp.parser;
+
+public enum TokenType {
+    LEFT_PAREN,
+    RIGHT_PAREN,
+    NUMBER,
+    SYMBOL,
+    END
+}
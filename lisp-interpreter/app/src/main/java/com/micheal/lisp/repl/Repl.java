@@ -1,55 +1,150 @@
 package com.micheal.lisp.repl;
 
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.parser.IncrementalParser;
 import com.micheal.lisp.parser.LispParser;
-import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.parser.ParseCache;
 import com.micheal.lisp.ast.Node;
 import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.image.Snapshot;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.visitor.MemoCache;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Scanner;
 
 public class Repl {
 
     private final LispParser parser;
-    private final EvaluationVisitor evaluator;
+    private final Engine engine;
+    // optional, null when every line is parsed from scratch
+    private final ParseCache<Node> parseCache;
+    // optional, only the tree engine can cache results
+    private final MemoCache memoCache;
+    // optional, shown by :stats
+    private final Metrics metrics;
 
     public Repl() {
-        this.parser = new LispParser();
-        this.evaluator = new EvaluationVisitor();
+        this(new TreeWalkingEngine());
+    }
+
+    public Repl(Engine engine) {
+        this(engine, null);
+    }
+
+    public Repl(Engine engine, ParseCache<Node> parseCache) {
+        this(engine, parseCache, null);
+    }
+
+    public Repl(Engine engine, ParseCache<Node> parseCache, MemoCache memoCache) {
+        this(engine, parseCache, memoCache, null);
+    }
+
+    public Repl(Engine engine, ParseCache<Node> parseCache, MemoCache memoCache, Metrics metrics) {
+        this(engine, new LispParser(metrics), parseCache, memoCache, metrics);
+    }
+
+    public Repl(Engine engine, LispParser parser, ParseCache<Node> parseCache, MemoCache memoCache, Metrics metrics) {
+        this.parser = parser;
+        this.engine = engine;
+        this.parseCache = parseCache;
+        this.memoCache = memoCache;
+        this.metrics = metrics;
     }
 
     public void start() {
         Scanner scanner = new Scanner(System.in);
+        // a form can span several lines and a line can hold several forms
+        IncrementalParser input = new IncrementalParser();
         System.out.println("Lisp Interpreter");
         System.out.println("Type 'exit' to quit");
 
         while (true) {
-            System.out.print("lisp> ");
+            System.out.print(input.isInsideForm() ? "  ... " : "lisp> ");
 
             if (!scanner.hasNextLine()) {
+                input.finish(this::evaluate);
                 System.out.println("\nInput stream closed. Exiting...");
                 break;
             }
 
-            String input = scanner.nextLine().trim();
-            if (input.equalsIgnoreCase("exit")) {
-                System.out.println("Goodbye!");
-                break;
+            String line = scanner.nextLine();
+            // inside a form, :abort drops it so a missing ')' can't trap the user. a blank line
+            // is only whitespace, pasted code often has them
+            if (input.isInsideForm()) {
+                if (line.trim().equals(":abort")) {
+                    input.reset();
+                    System.out.println("form discarded");
+                    continue;
+                }
+            } else {
+                String command = line.trim();
+                if (command.equalsIgnoreCase("exit")) {
+                    System.out.println("Goodbye!");
+                    break;
+                }
+                if (command.equals(":cache")) {
+                    System.out.println(parseCache != null ? parseCache : "parse cache is disabled");
+                    continue;
+                }
+                if (command.equals(":memo")) {
+                    System.out.println(memoCache != null ? memoCache : "memo cache is disabled");
+                    continue;
+                }
+                if (command.equals(":stats") || command.equals(":reset-stats")) {
+                    if (metrics == null) {
+                        System.out.println("metrics are disabled, start with --metrics");
+                    } else if (command.equals(":stats")) {
+                        System.out.println(metrics);
+                    } else {
+                        metrics.reset();
+                        System.out.println("metrics reset");
+                    }
+                    continue;
+                }
+                if (command.startsWith(":save ") || command.startsWith(":restore ")) {
+                    snapshot(command);
+                    continue;
+                }
             }
-            if (input.isEmpty()) {
-                continue;
+
+            // each form is evaluated as soon as its closing paren has been read
+            input.feed(line + "\n", this::evaluate);
+        }
+    }
+
+    // :save file writes the session's definitions, :restore file brings them back
+    private void snapshot(String command) {
+        boolean save = command.startsWith(":save ");
+        Path path = Path.of(command.substring(save ? 6 : 9).trim());
+        try {
+            if (save) {
+                int saved = Snapshot.save(engine.getEnvironment(), path);
+                System.out.println("saved " + saved + " definitions to " + path);
+            } else {
+                int restored = Snapshot.restore(path, engine.getEnvironment());
+                System.out.println("restored " + restored + " definitions from " + path);
             }
+        } catch (IOException e) {
+            System.err.println("Error: cannot " + (save ? "save " : "restore ") + path + ": " + e.getMessage());
+        } catch (LispException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
 
-            try {
-                Node ast = parser.parse(input);
-                Object result = ast.accept(evaluator);
-                System.out.println(result);
-            } catch (LispException e) {
-                System.err.println("Error: " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("Unexpected error: " + e.getMessage());
-                if (e.getCause() != null) {
-                    System.err.println("  Caused by: " + e.getCause().getMessage());
-                }
+    private void evaluate(String source) {
+        try {
+            Node ast = parseCache != null ? parseCache.get(source) : parser.parse(source);
+            Object result = engine.evaluate(ast);
+            System.out.println(result);
+        } catch (LispException e) {
+            System.err.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Unexpected error: " + e.getMessage());
+            if (e.getCause() != null) {
+                System.err.println("  Caused by: " + e.getCause().getMessage());
             }
         }
     }
@@ -0,0 +1,40 @@
+package com.micheal.lisp.runtime;
+
+import java.util.function.Function;
+
+// a procedure that comes with the interpreter instead of being made by a lambda, like the
+// vector operations (see Vectors). it lives in the BuiltinEnvironment, so every engine calls
+// it the way it calls a closure
+
+public final class Builtin implements Procedure {
+
+    // for a builtin that takes any number of arguments
+    public static final int VARIADIC = -1;
+
+    private final String name;
+    private final int arity;
+    private final Function<Object[], Object> body;
+
+    public Builtin(String name, int arity, Function<Object[], Object> body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object apply(Object[] arguments) {
+        if (arity != VARIADIC && arguments.length != arity) {
+            throw Values.argumentCountError(name, arity, arguments.length);
+        }
+        return body.apply(arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "#<procedure " + name + ">";
+    }
+}
@@ -0,0 +1,58 @@
+package com.micheal.lisp.runtime;
+
+import java.util.Arrays;
+
+// the value made by (vector 1 2 3) and the other vector builtins in Vectors. the elements
+// are kept in one int[] and never boxed. a vector is not changed after it is made, every
+// operation returns a new one, so it can be shared between threads like a number
+
+public final class IntVector {
+
+    // how many elements toString shows before it stops
+    private static final int PRINTED = 20;
+
+    private final int[] elements;
+
+    // takes the array over, the caller must not change it afterwards
+    public IntVector(int[] elements) {
+        this.elements = elements;
+    }
+
+    public int length() {
+        return elements.length;
+    }
+
+    public int get(int index) {
+        return elements[index];
+    }
+
+    int[] elements() {
+        return elements;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof IntVector && Arrays.equals(elements, ((IntVector) other).elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(elements);
+    }
+
+    // #(1 2 3), a long vector ends with how many elements were left out
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("#(");
+        for (int i = 0; i < elements.length && i < PRINTED; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(elements[i]);
+        }
+        if (elements.length > PRINTED) {
+            text.append(" ... ").append(elements.length - PRINTED).append(" more");
+        }
+        return text.append(')').toString();
+    }
+}
@@ -0,0 +1,135 @@
+package com.micheal.lisp.runtime;
+
+import java.math.BigInteger;
+
+// the numeric tower: Integer, then Long, then BigInteger. a number is always stored in the
+// smallest of the three that holds it exactly, so equals() works across all of them and a
+// value only leaves the int fast path of the evaluators when it really doesn't fit.
+// these are the general operations, the evaluators compute on plain ints and call them
+// once an int operation overflows or an operand is already a Long or BigInteger
+
+public final class Numbers {
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private Numbers() {
+    }
+
+    public static Number valueOf(long value) {
+        if ((int) value == value) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    public static Number valueOf(BigInteger value) {
+        if (value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0) {
+            return valueOf(value.longValue());
+        }
+        return value;
+    }
+
+    // the operators that take any number of operands, op is +, -, *, / or %
+    public static Number apply(String op, Number a, Number b) {
+        switch (op) {
+            case "+":
+                return add(a, b);
+            case "-":
+                return subtract(a, b);
+            case "*":
+                return multiply(a, b);
+            case "/":
+                return divide(a, b);
+            case "%":
+                return remainder(a, b);
+            default:
+                throw new IllegalArgumentException("Not an arithmetic operator: " + op);
+        }
+    }
+
+    public static Number add(Number a, Number b) {
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long sum = x + y;
+            if (((x ^ sum) & (y ^ sum)) >= 0) {
+                return valueOf(sum);
+            }
+        }
+        return valueOf(big(a).add(big(b)));
+    }
+
+    public static Number subtract(Number a, Number b) {
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long difference = x - y;
+            if (((x ^ y) & (x ^ difference)) >= 0) {
+                return valueOf(difference);
+            }
+        }
+        return valueOf(big(a).subtract(big(b)));
+    }
+
+    public static Number multiply(Number a, Number b) {
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long high = Math.multiplyHigh(x, y);
+            long product = x * y;
+            if ((high == 0 && product >= 0) || (high == -1 && product < 0)) {
+                return valueOf(product);
+            }
+        }
+        return valueOf(big(a).multiply(big(b)));
+    }
+
+    // truncates towards zero like int division
+    public static Number divide(Number a, Number b) {
+        if (isZero(b)) {
+            throw Values.divisionByZero();
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            long x = a.longValue();
+            long y = b.longValue();
+            if (x != Long.MIN_VALUE || y != -1) {
+                return valueOf(x / y);
+            }
+        }
+        return valueOf(big(a).divide(big(b)));
+    }
+
+    // takes the sign of the dividend like int %
+    public static Number remainder(Number a, Number b) {
+        if (isZero(b)) {
+            throw Values.moduloByZero();
+        }
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            return valueOf(a.longValue() % b.longValue());
+        }
+        return valueOf(big(a).remainder(big(b)));
+    }
+
+    public static Number negate(Number a) {
+        if (!(a instanceof BigInteger) && a.longValue() != Long.MIN_VALUE) {
+            return valueOf(-a.longValue());
+        }
+        return valueOf(big(a).negate());
+    }
+
+    public static int compare(Number a, Number b) {
+        if (!(a instanceof BigInteger) && !(b instanceof BigInteger)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        return big(a).compareTo(big(b));
+    }
+
+    public static boolean isZero(Number a) {
+        return a instanceof BigInteger ? ((BigInteger) a).signum() == 0 : a.longValue() == 0;
+    }
+
+    private static BigInteger big(Number a) {
+        return a instanceof BigInteger ? (BigInteger) a : BigInteger.valueOf(a.longValue());
+    }
+}
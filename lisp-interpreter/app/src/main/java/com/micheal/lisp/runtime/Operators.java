@@ -0,0 +1,62 @@
+package com.micheal.lisp.runtime;
+
+import java.math.BigInteger;
+import java.util.List;
+
+// the operators as procedures, so they can be passed to another procedure like
+// (reduce + xs). in the operator position of a call the evaluators still handle + and the
+// rest themselves, these are only found when the symbol is looked up as a value.
+// they compute on Numbers and give the same results and errors as the evaluators
+
+public final class Operators {
+
+    private Operators() {
+    }
+
+    public static List<Builtin> builtins() {
+        return List.of(
+                new Builtin("+", Builtin.VARIADIC, arguments -> arithmetic("+", arguments)),
+                new Builtin("-", Builtin.VARIADIC, arguments -> arithmetic("-", arguments)),
+                new Builtin("*", Builtin.VARIADIC, arguments -> arithmetic("*", arguments)),
+                new Builtin("/", Builtin.VARIADIC, arguments -> arithmetic("/", arguments)),
+                new Builtin("%", 2, arguments -> arithmetic("%", arguments)),
+                new Builtin(">", 2, arguments -> compare(">", arguments) > 0),
+                new Builtin("<", 2, arguments -> compare("<", arguments) < 0),
+                new Builtin("=", 2, arguments -> arguments[0].equals(arguments[1])),
+                new Builtin("even", 1, arguments -> isEven(arguments[0], "even")),
+                new Builtin("odd", 1, arguments -> !isEven(arguments[0], "odd")));
+    }
+
+    private static Number arithmetic(String op, Object[] arguments) {
+        if (arguments.length == 0) {
+            switch (op) {
+                case "+":
+                    return 0;
+                case "*":
+                    return 1;
+                default:
+                    throw Values.missingArgumentError(op);
+            }
+        }
+        Number result = Values.toNumber(arguments[0], op);
+        if (arguments.length == 1 && op.equals("-")) {
+            return Numbers.negate(result);
+        }
+        for (int i = 1; i < arguments.length; i++) {
+            result = Numbers.apply(op, result, Values.toNumber(arguments[i], op));
+        }
+        return result;
+    }
+
+    private static int compare(String op, Object[] arguments) {
+        return Numbers.compare(Values.toNumber(arguments[0], op), Values.toNumber(arguments[1], op));
+    }
+
+    private static boolean isEven(Object value, String op) {
+        Number number = Values.toNumber(value, op);
+        if (number instanceof BigInteger) {
+            return !((BigInteger) number).testBit(0);
+        }
+        return (number.longValue() & 1) == 0;
+    }
+}
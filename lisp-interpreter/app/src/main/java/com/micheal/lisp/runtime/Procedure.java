@@ -0,0 +1,28 @@
+package com.micheal.lisp.runtime;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.environment.Symbol;
+
+// anything that can be called with (f arg ...). every engine can call the procedures of the
+// others, a closure made by the tree walker can be defined and then called from compiled code
+
+@FunctionalInterface
+public interface Procedure {
+
+    Object apply(Object[] arguments);
+
+    // a procedure made by a lambda describes the lambda and the frame it captured, so it can
+    // be rebuilt later (see Snapshot). the rest return null
+    default Symbol[] getParameters() {
+        return null;
+    }
+
+    default Node getBody() {
+        return null;
+    }
+
+    default Frame getFrame() {
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.micheal.lisp.runtime;
+
+// thrown out of an int fast path (EvaluationVisitor.evaluateInt, CompiledNode.executeInt ...)
+// when the exact result is not an int: an operation overflowed or an operand was already a
+// Long or BigInteger. the caller finishes its operator with Numbers and the promoted value.
+// it has no stack trace, so promoting costs about as much as boxing the value
+
+public final class Promotion extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Number value;
+
+    public Promotion(Number value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+
+    public Number getValue() {
+        return value;
+    }
+}
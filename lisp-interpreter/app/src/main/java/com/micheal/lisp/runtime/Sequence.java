@@ -0,0 +1,25 @@
+package com.micheal.lisp.runtime;
+
+// the value made by range, map, filter and take (see Sequences). a sequence only says where
+// its elements come from and what happens to them on the way. nothing is computed until reduce
+// pulls the elements one at a time through a cursor, and each stage pulls from the one before
+// it, so the whole pipeline runs as one loop with a single element in flight. every reduce
+// opens new cursors, so a sequence can be reduced again
+
+public abstract class Sequence {
+
+    // returned by a cursor once it has no more elements
+    static final Object END = new Object();
+
+    interface Cursor {
+        Object next();
+    }
+
+    abstract Cursor cursor();
+
+    // printing would have to run the pipeline
+    @Override
+    public String toString() {
+        return "#<sequence>";
+    }
+}
@@ -0,0 +1,180 @@
+package com.micheal.lisp.runtime;
+
+import com.micheal.lisp.exception.LispException;
+
+import java.math.BigInteger;
+import java.util.List;
+
+// the lazy sequence builtins. range, map, filter and take only wrap the sequence they are
+// given in another stage, reduce is the one that runs them (see Sequence). a vector can be
+// used wherever a sequence is expected
+
+public final class Sequences {
+
+    private Sequences() {
+    }
+
+    public static List<Builtin> builtins() {
+        return List.of(
+                new Builtin("range", Builtin.VARIADIC, Sequences::range),
+                new Builtin("map", 2, arguments -> map(procedure("map", arguments[0]), sequence("map", arguments[1]))),
+                new Builtin("filter", 2, arguments -> filter(procedure("filter", arguments[0]), sequence("filter", arguments[1]))),
+                new Builtin("take", 2, arguments -> take(count(arguments[0]), sequence("take", arguments[1]))),
+                new Builtin("reduce", Builtin.VARIADIC, Sequences::reduce));
+    }
+
+    // (range end) or (range start end), start, start + 1 ... end - 1
+    private static Sequence range(Object[] arguments) {
+        if (arguments.length != 1 && arguments.length != 2) {
+            throw argumentCountError("range", "1 or 2", arguments.length);
+        }
+        long start = arguments.length == 2 ? bound(arguments[0]) : 0;
+        long end = bound(arguments[arguments.length - 1]);
+        return new Sequence() {
+            @Override
+            Cursor cursor() {
+                return new Cursor() {
+                    private long next = start;
+
+                    @Override
+                    public Object next() {
+                        return next < end ? Numbers.valueOf(next++) : END;
+                    }
+                };
+            }
+        };
+    }
+
+    private static Sequence map(Procedure function, Sequence source) {
+        return new Sequence() {
+            @Override
+            Cursor cursor() {
+                Cursor elements = source.cursor();
+                return () -> {
+                    Object element = elements.next();
+                    return element == END ? END : function.apply(new Object[] {element});
+                };
+            }
+        };
+    }
+
+    private static Sequence filter(Procedure predicate, Sequence source) {
+        return new Sequence() {
+            @Override
+            Cursor cursor() {
+                Cursor elements = source.cursor();
+                return () -> {
+                    Object element;
+                    while ((element = elements.next()) != END) {
+                        if (test(predicate, element)) {
+                            return element;
+                        }
+                    }
+                    return END;
+                };
+            }
+        };
+    }
+
+    // stops pulling from the source once it has n elements
+    private static Sequence take(int n, Sequence source) {
+        return new Sequence() {
+            @Override
+            Cursor cursor() {
+                Cursor elements = source.cursor();
+                return new Cursor() {
+                    private int left = n;
+
+                    @Override
+                    public Object next() {
+                        if (left == 0) {
+                            return END;
+                        }
+                        left--;
+                        return elements.next();
+                    }
+                };
+            }
+        };
+    }
+
+    // (reduce f xs) or (reduce f initial xs). without an initial value the first element is
+    // used, and f is called with no arguments when there is none, so (reduce + xs) of an
+    // empty xs is 0
+    private static Object reduce(Object[] arguments) {
+        if (arguments.length != 2 && arguments.length != 3) {
+            throw argumentCountError("reduce", "2 or 3", arguments.length);
+        }
+        Procedure function = procedure("reduce", arguments[0]);
+        Sequence.Cursor elements = sequence("reduce", arguments[arguments.length - 1]).cursor();
+        Object result = arguments.length == 3 ? arguments[1] : elements.next();
+        if (result == Sequence.END) {
+            return function.apply(new Object[0]);
+        }
+        Object element;
+        while ((element = elements.next()) != Sequence.END) {
+            result = function.apply(new Object[] {result, element});
+        }
+        return result;
+    }
+
+    private static boolean test(Procedure predicate, Object element) {
+        Object result = predicate.apply(new Object[] {element});
+        if (!(result instanceof Boolean)) {
+            throw new LispException("Sequence operation 'filter' requires a predicate that returns a boolean, got: "
+                    + result.getClass().getSimpleName());
+        }
+        return (Boolean) result;
+    }
+
+    private static Sequence sequence(String op, Object value) {
+        if (value instanceof Sequence) {
+            return (Sequence) value;
+        }
+        if (value instanceof IntVector) {
+            int[] vector = ((IntVector) value).elements();
+            return new Sequence() {
+                @Override
+                Cursor cursor() {
+                    return new Cursor() {
+                        private int next;
+
+                        @Override
+                        public Object next() {
+                            return next < vector.length ? (Object) vector[next++] : END;
+                        }
+                    };
+                }
+            };
+        }
+        throw new LispException(String.format("Sequence operation '%s' requires a sequence or vector, got: %s",
+                op, value.getClass().getSimpleName()));
+    }
+
+    private static Procedure procedure(String op, Object value) {
+        if (!(value instanceof Procedure)) {
+            throw new LispException(String.format("Sequence operation '%s' requires a procedure, got: %s",
+                    op, value.getClass().getSimpleName()));
+        }
+        return (Procedure) value;
+    }
+
+    private static long bound(Object value) {
+        Number number = Values.toNumber(value, "range");
+        if (number instanceof BigInteger) {
+            throw new LispException("Sequence operation 'range' requires bounds that fit in a long, got: " + number);
+        }
+        return number.longValue();
+    }
+
+    private static int count(Object value) {
+        if (!(value instanceof Integer) || (Integer) value < 0) {
+            throw new LispException("Sequence operation 'take' requires a non-negative int count, got: " + value);
+        }
+        return (Integer) value;
+    }
+
+    private static LispException argumentCountError(String op, String expected, int actual) {
+        return new LispException(String.format("Operator '%s' expects %s arguments, but got %d", op, expected, actual));
+    }
+}
@@ -0,0 +1,110 @@
+package com.micheal.lisp.runtime;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.exception.LispException;
+
+import java.math.BigInteger;
+import java.util.List;
+
+// operand checks shared by every evaluation engine so they all report the same errors
+
+public final class Values {
+
+    private Values() {
+    }
+
+    // helper to convert values to int for math ops. a Long or BigInteger is thrown
+    // back as a Promotion so the caller can switch to the general path
+    public static int toInt(Object value, String operation) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        throw new Promotion(toNumber(value, operation));
+    }
+
+    // any integer of the numeric tower, see Numbers
+    public static Number toNumber(Object value, String operation) {
+        if (value instanceof Integer || value instanceof Long || value instanceof BigInteger) {
+            return (Number) value;
+        }
+        if (value instanceof Number) {
+            throw new LispException(
+                String.format("Arithmetic operation '%s' requires integer operands, got: %s",
+                    operation, value.getClass().getSimpleName()));
+        }
+        throw new LispException(
+            String.format("Arithmetic operation '%s' requires numeric operands, got: %s",
+                operation, value.getClass().getSimpleName()));
+    }
+
+    public static boolean toCondition(Object condition) {
+        if (!(condition instanceof Boolean)) {
+            throw new LispException("'if' condition must evaluate to a boolean value, got: " +
+                condition.getClass().getSimpleName());
+        }
+        return (Boolean) condition;
+    }
+
+    public static LispException emptyListError() {
+        return new LispException("Cannot evaluate empty list");
+    }
+
+    public static LispException notAnOperatorError() {
+        return new LispException("First element must be an operator");
+    }
+
+    public static LispException unknownOperatorError(String op) {
+        return new LispException("Unknown or invalid operator: '" + op + "'");
+    }
+
+    // checks the shape of (lambda (param ...) body) and returns the parameter symbols
+    public static Symbol[] lambdaParameters(List<Node> elements) {
+        if (elements.size() != 3) {
+            throw argumentCountError("lambda", 2, elements.size() - 1);
+        }
+        if (!(elements.get(1) instanceof ListNode)) {
+            throw lambdaParametersError();
+        }
+
+        List<Node> parameters = ((ListNode) elements.get(1)).getElements();
+        Symbol[] symbols = new Symbol[parameters.size()];
+        for (int i = 0; i < symbols.length; i++) {
+            if (!(parameters.get(i) instanceof SymbolNode)) {
+                throw lambdaParametersError();
+            }
+            symbols[i] = ((SymbolNode) parameters.get(i)).getSymbol();
+        }
+        return symbols;
+    }
+
+    public static LispException lambdaParametersError() {
+        return new LispException("First argument to 'lambda' must be a list of symbols");
+    }
+
+    public static LispException procedureArgumentCountError(int expected, int actual) {
+        return new LispException(String.format("Procedure expects %d argument(s), but got %d", expected, actual));
+    }
+
+    public static LispException defineNameError() {
+        return new LispException("First argument to 'define' must be a symbol");
+    }
+
+    public static LispException argumentCountError(String op, int expected, int actual) {
+        return new LispException(String.format("Operator '%s' expects %d argument(s), but got %d", op, expected, actual));
+    }
+
+    public static LispException missingArgumentError(String op) {
+        return new LispException(String.format("Operator '%s' expects at least one argument", op));
+    }
+
+    public static LispException divisionByZero() {
+        return new LispException("Arithmetic error in division: Division by zero");
+    }
+
+    public static LispException moduloByZero() {
+        return new LispException("Arithmetic error in modulo: Modulo by zero");
+    }
+}
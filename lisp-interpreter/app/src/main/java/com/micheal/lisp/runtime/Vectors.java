@@ -0,0 +1,209 @@
+package com.micheal.lisp.runtime;
+
+import com.micheal.lisp.exception.LispException;
+
+import java.util.Arrays;
+import java.util.List;
+
+// the vector builtins. each one checks its arguments once and then runs a plain loop over
+// int arrays: no boxing, no calls and no branches per element, so the JIT can unroll it and
+// use SIMD instructions. overflow is collected with bit operations over the whole loop and
+// reported at the end. vectors hold ints only, so unlike + an overflowing element is an error
+// instead of a promotion to long
+
+public final class Vectors {
+
+    // the largest array the JVM allocates everywhere
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private Vectors() {
+    }
+
+    public static List<Builtin> builtins() {
+        return List.of(
+                new Builtin("vector", Builtin.VARIADIC, Vectors::vector),
+                new Builtin("make-vector", 2, arguments -> makeVector(arguments[0], arguments[1])),
+                new Builtin("vector-range", 2, arguments -> range(arguments[0], arguments[1])),
+                new Builtin("vector-length", 1, arguments -> vectorOperand("vector-length", arguments[0]).length()),
+                new Builtin("vector-ref", 2, arguments -> ref(arguments[0], arguments[1])),
+                new Builtin("vector+", 2, arguments -> elementwise("vector+", arguments[0], arguments[1])),
+                new Builtin("vector-", 2, arguments -> elementwise("vector-", arguments[0], arguments[1])),
+                new Builtin("vector*", 2, arguments -> elementwise("vector*", arguments[0], arguments[1])),
+                new Builtin("vector-sum", 1, arguments -> sum(vectorOperand("vector-sum", arguments[0]).elements())),
+                new Builtin("vector-min", 1, arguments -> min(nonEmpty("vector-min", arguments[0]))),
+                new Builtin("vector-max", 1, arguments -> max(nonEmpty("vector-max", arguments[0]))));
+    }
+
+    private static IntVector vector(Object[] arguments) {
+        int[] elements = new int[arguments.length];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = intOperand("vector", arguments[i]);
+        }
+        return new IntVector(elements);
+    }
+
+    private static IntVector makeVector(Object length, Object fill) {
+        int[] elements = new int[checkLength(intOperand("make-vector", length))];
+        Arrays.fill(elements, intOperand("make-vector", fill));
+        return new IntVector(elements);
+    }
+
+    // start, start + 1 ... end - 1, empty when end is not above start
+    private static IntVector range(Object from, Object to) {
+        int start = intOperand("vector-range", from);
+        int end = intOperand("vector-range", to);
+        int[] elements = new int[checkLength(Math.max(0, (long) end - start))];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = start + i;
+        }
+        return new IntVector(elements);
+    }
+
+    private static Object ref(Object vector, Object index) {
+        IntVector elements = vectorOperand("vector-ref", vector);
+        int i = intOperand("vector-ref", index);
+        if (i < 0 || i >= elements.length()) {
+            throw new LispException("Vector index " + i + " out of range for length " + elements.length());
+        }
+        return elements.get(i);
+    }
+
+    // either operand may be a single int, which is used for every element
+    private static IntVector elementwise(String op, Object left, Object right) {
+        if (!(left instanceof IntVector) && !(right instanceof IntVector)) {
+            vectorOperand(op, left);
+        }
+        int length = left instanceof IntVector ? ((IntVector) left).length() : ((IntVector) right).length();
+        int[] a = elementsOf(op, left, length);
+        int[] b = elementsOf(op, right, length);
+        if (a.length != b.length) {
+            throw new LispException(String.format("Vector operation '%s' requires vectors of the same length, got: %d and %d",
+                    op, a.length, b.length));
+        }
+        int[] result;
+        switch (op) {
+            case "vector+":
+                result = add(a, b);
+                break;
+            case "vector-":
+                result = subtract(a, b);
+                break;
+            default:
+                result = multiply(a, b);
+                break;
+        }
+        if (result == null) {
+            throw new LispException("Integer overflow in '" + op + "'");
+        }
+        return new IntVector(result);
+    }
+
+    private static int[] elementsOf(String op, Object operand, int length) {
+        if (operand instanceof IntVector) {
+            return ((IntVector) operand).elements();
+        }
+        int[] elements = new int[length];
+        Arrays.fill(elements, intOperand(op, operand));
+        return elements;
+    }
+
+    // the loops below return null when an element overflowed
+
+    private static int[] add(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int overflow = 0;
+        for (int i = 0; i < result.length; i++) {
+            int x = a[i];
+            int y = b[i];
+            int r = x + y;
+            result[i] = r;
+            // the sign of the sum differs from both operands
+            overflow |= (x ^ r) & (y ^ r);
+        }
+        return overflow < 0 ? null : result;
+    }
+
+    private static int[] subtract(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int overflow = 0;
+        for (int i = 0; i < result.length; i++) {
+            int x = a[i];
+            int y = b[i];
+            int r = x - y;
+            result[i] = r;
+            overflow |= (x ^ y) & (x ^ r);
+        }
+        return overflow < 0 ? null : result;
+    }
+
+    private static int[] multiply(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int overflow = 0;
+        for (int i = 0; i < result.length; i++) {
+            long r = (long) a[i] * b[i];
+            result[i] = (int) r;
+            // the high half is not just the sign of the low half
+            overflow |= (int) (r >> 32) ^ ((int) r >> 31);
+        }
+        return overflow != 0 ? null : result;
+    }
+
+    // a long can't overflow, it would take 2^32 ints
+    private static Number sum(int[] elements) {
+        long sum = 0;
+        for (int element : elements) {
+            sum += element;
+        }
+        return Numbers.valueOf(sum);
+    }
+
+    private static int min(int[] elements) {
+        int min = elements[0];
+        for (int i = 1; i < elements.length; i++) {
+            min = Math.min(min, elements[i]);
+        }
+        return min;
+    }
+
+    private static int max(int[] elements) {
+        int max = elements[0];
+        for (int i = 1; i < elements.length; i++) {
+            max = Math.max(max, elements[i]);
+        }
+        return max;
+    }
+
+    private static int[] nonEmpty(String op, Object value) {
+        IntVector vector = vectorOperand(op, value);
+        if (vector.length() == 0) {
+            throw new LispException("Vector operation '" + op + "' requires a non-empty vector");
+        }
+        return vector.elements();
+    }
+
+    private static IntVector vectorOperand(String op, Object value) {
+        if (!(value instanceof IntVector)) {
+            throw new LispException(String.format("Vector operation '%s' requires vector operands, got: %s",
+                    op, value.getClass().getSimpleName()));
+        }
+        return (IntVector) value;
+    }
+
+    private static int intOperand(String op, Object value) {
+        if (!(value instanceof Integer)) {
+            throw new LispException(String.format("Vector operation '%s' requires int operands, got: %s",
+                    op, value.getClass().getSimpleName()));
+        }
+        return (Integer) value;
+    }
+
+    private static int checkLength(long length) {
+        if (length < 0) {
+            throw new LispException("Vector length must not be negative: " + length);
+        }
+        if (length > MAX_LENGTH) {
+            throw new LispException("Vector is too long: " + length + " elements");
+        }
+        return (int) length;
+    }
+}
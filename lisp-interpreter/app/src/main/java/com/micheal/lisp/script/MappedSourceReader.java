@@ -0,0 +1,75 @@
+package com.micheal.lisp.script;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// reads a memory-mapped UTF-8 file, characters are decoded straight into the caller's
+// buffer so the file is never copied onto the heap as a whole
+
+public class MappedSourceReader extends Reader {
+
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    // every byte has gone through decode, only the flush is left
+    private boolean decoded;
+    // the decoder has been flushed and must not be used again
+    private boolean ended;
+
+    public MappedSourceReader(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    public static MappedSourceReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Script is too large to map: " + path + " (" + size + " bytes)");
+            }
+            // the mapping stays valid after the channel is closed
+            return new MappedSourceReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (ended) {
+            return -1;
+        }
+
+        CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+        if (!decoded) {
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            // an overflow means out is full and there are bytes left for the next call
+            decoded = result.isUnderflow();
+        }
+        if (decoded) {
+            // overflows when out was filled exactly, then it is flushed again next time
+            ended = decoder.flush(out).isUnderflow();
+        }
+
+        int read = out.position() - offset;
+        return read == 0 && ended ? -1 : read;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the mapping is freed with the buffer
+    }
+}
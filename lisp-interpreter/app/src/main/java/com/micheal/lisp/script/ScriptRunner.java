@@ -0,0 +1,111 @@
+package com.micheal.lisp.script;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.image.Image;
+import com.micheal.lisp.parser.FormReader;
+import com.micheal.lisp.parser.LispParser;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.Path;
+
+// batch mode: evaluates every top-level form of a script in order and prints each result.
+// a form that fails to evaluate is reported and the run goes on, a parse error stops it
+// because the rest of the input can't be trusted
+
+public class ScriptRunner {
+
+    private final LispParser parser;
+    private final Engine engine;
+
+    public ScriptRunner(Engine engine) {
+        this(engine, new LispParser());
+    }
+
+    public ScriptRunner(Engine engine, LispParser parser) {
+        this.engine = engine;
+        this.parser = parser;
+    }
+
+    // returns the number of forms that failed
+    public int run(Path script, PrintWriter out, PrintWriter err) throws IOException {
+        try (Reader source = MappedSourceReader.open(script)) {
+            return run(source, out, err);
+        }
+    }
+
+    public int run(Reader source, PrintWriter out, PrintWriter err) {
+        int failures = 0;
+        FormReader forms;
+        try {
+            forms = parser.readForms(source);
+        } catch (LispException e) {
+            report(out, err, "Parse error: " + e.getMessage());
+            return 1;
+        }
+
+        while (true) {
+            Node form;
+            try {
+                if (!forms.hasNext()) {
+                    break;
+                }
+                form = forms.next();
+            } catch (LispException e) {
+                report(out, err, "Parse error: " + e.getMessage());
+                failures++;
+                break;
+            }
+
+            if (!evaluate(form, out, err)) {
+                failures++;
+            }
+        }
+
+        out.flush();
+        return failures;
+    }
+
+    // runs the forms of a compiled image, no text is parsed. a damaged form stops the run
+    // like a parse error does
+    public int run(Image image, PrintWriter out, PrintWriter err) {
+        int failures = 0;
+        for (int i = 0; i < image.getFormCount(); i++) {
+            Node form;
+            try {
+                form = image.getForm(i);
+            } catch (LispException e) {
+                report(out, err, e.getMessage());
+                failures++;
+                break;
+            }
+
+            if (!evaluate(form, out, err)) {
+                failures++;
+            }
+        }
+
+        out.flush();
+        return failures;
+    }
+
+    private boolean evaluate(Node form, PrintWriter out, PrintWriter err) {
+        try {
+            out.println(engine.evaluate(form));
+            return true;
+        } catch (LispException e) {
+            report(out, err, "Error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void report(PrintWriter out, PrintWriter err, String message) {
+        // keep errors in order with the buffered results printed before them
+        out.flush();
+        err.println(message);
+        err.flush();
+    }
+}
@@ -0,0 +1,375 @@
+package com.micheal.lisp.server;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.parser.ParseCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// evaluation server: expressions in, one result (or "Error: ...") line out per expression.
+// an expression can span lines and a line can hold several.
+// a single selector thread does all socket IO, so idle connections cost no thread.
+// evaluation runs on a fixed worker pool, each connection has its own engine and
+// environment and its requests are evaluated one at a time in the order they arrived.
+// a client that sends faster than its forms are evaluated, or doesn't read its responses,
+// is not read from until it has caught up, so the kernel's socket buffers fill up and
+// its writes block instead of the server queueing without bound
+
+public class LispServer implements Closeable {
+
+    private static final int MAX_LINE_BYTES = 1 << 20;
+    // reading from a session stops above either limit
+    private static final int MAX_QUEUED_REQUESTS = 1024;
+    private static final long MAX_QUEUED_RESPONSE_BYTES = 1 << 20;
+
+    // queued after the last response of a session that asked to exit
+    private static final ByteBuffer END_OF_SESSION = ByteBuffer.allocate(0);
+
+    private final SocketAddress address;
+    // makes the engine of each new connection
+    private final Supplier<Engine> engines;
+    private final LispParser parser;
+    // optional, shared by all sessions since cached trees are immutable
+    private final ParseCache<Node> parseCache;
+    private final ExecutorService workers;
+    private final Queue<Session> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public LispServer(SocketAddress address, String engineName, int workerThreads) {
+        this(address, engineName, workerThreads, null);
+    }
+
+    public LispServer(SocketAddress address, String engineName, int workerThreads, ParseCache<Node> parseCache) {
+        this(address, () -> Engine.forName(engineName), workerThreads, new LispParser(), parseCache);
+    }
+
+    // the parser and the engines are used from every worker thread, so the engines may share
+    // thread-safe state like a Metrics but each needs its own environment
+    public LispServer(SocketAddress address, Supplier<Engine> engines, int workerThreads, LispParser parser, ParseCache<Node> parseCache) {
+        this.address = address;
+        this.engines = engines;
+        this.parser = parser;
+        this.parseCache = parseCache;
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "lisp-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // "7777" listens on that TCP port of the loopback interface, anything else is a unix socket path
+    public static SocketAddress parseAddress(String value) {
+        if (value.chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress("127.0.0.1", Integer.parseInt(value));
+        }
+        return UnixDomainSocketAddress.of(value);
+    }
+
+    public void start() throws IOException {
+        // fail early on a bad engine name instead of on the first connection
+        engines.get();
+
+        selector = Selector.open();
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address, 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "lisp-selector");
+        selectorThread.start();
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        selectorThread.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                enableWrites();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read((Session) key.attachment());
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write((Session) key.attachment());
+                        }
+                    } catch (IOException e) {
+                        closeSession(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            Session session = new Session(channel, engines.get());
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        }
+    }
+
+    private void read(Session session) throws IOException {
+        readBuffer.clear();
+        int read = session.channel.read(readBuffer);
+        if (read < 0) {
+            closeSession(session.key);
+            return;
+        }
+        readBuffer.flip();
+
+        while (readBuffer.hasRemaining()) {
+            int start = readBuffer.position();
+            int newline = indexOf(readBuffer, (byte) '\n');
+            if (newline < 0) {
+                ByteArrayOutputStream partial = session.partialLine();
+                // a client that never sends a newline must not make us buffer without bound
+                if (partial.size() + readBuffer.remaining() > MAX_LINE_BYTES) {
+                    closeSession(session.key);
+                    return;
+                }
+                byte[] rest = new byte[readBuffer.remaining()];
+                readBuffer.get(rest);
+                partial.write(rest, 0, rest.length);
+                break;
+            }
+
+            byte[] bytes = new byte[newline - start];
+            readBuffer.get(bytes);
+            readBuffer.get(); // skip '\n'
+            String line;
+            if (session.hasPartialLine()) {
+                ByteArrayOutputStream partial = session.partialLine();
+                partial.write(bytes, 0, bytes.length);
+                line = partial.toString(StandardCharsets.UTF_8);
+                session.clearPartialLine();
+            } else {
+                line = new String(bytes, StandardCharsets.UTF_8);
+            }
+            session.forms.feed(line + "\n", form -> submit(session, form));
+            // and neither must a form that never closes its parentheses
+            if (session.forms.getPendingLength() > MAX_LINE_BYTES) {
+                closeSession(session.key);
+                return;
+            }
+        }
+
+        if (isBehind(session)) {
+            session.paused = true;
+            session.key.interestOps(session.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    private static boolean isBehind(Session session) {
+        return session.queuedRequests.get() > MAX_QUEUED_REQUESTS
+                || session.queuedResponseBytes.get() > MAX_QUEUED_RESPONSE_BYTES;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void submit(Session session, String form) {
+        if (session.closing) {
+            return;
+        }
+        session.queuedRequests.incrementAndGet();
+        session.requests.add(form);
+        schedule(session);
+    }
+
+    private void schedule(Session session) {
+        if (session.scheduled.compareAndSet(false, true)) {
+            workers.execute(() -> drain(session));
+        }
+    }
+
+    // runs on a worker, evaluates everything queued for the session
+    private void drain(Session session) {
+        String form;
+        while (!session.closing && (form = session.requests.poll()) != null) {
+            session.queuedRequests.decrementAndGet();
+            if ("exit".equalsIgnoreCase(form)) {
+                session.closing = true;
+                session.requests.clear();
+                session.responses.add(ByteBuffer.wrap("Goodbye!\n".getBytes(StandardCharsets.UTF_8)));
+                session.responses.add(END_OF_SESSION);
+                break;
+            }
+            respond(session, evaluate(session, form));
+        }
+        // one wakeup for everything evaluated in this batch
+        pendingWrites.add(session);
+        selector.wakeup();
+        session.scheduled.set(false);
+
+        // a form may have arrived after the last poll but before the flag was cleared
+        if (!session.requests.isEmpty()) {
+            schedule(session);
+        }
+    }
+
+    private String evaluate(Session session, String form) {
+        try {
+            Node ast = parseCache != null ? parseCache.get(form) : parser.parse(form);
+            return String.valueOf(session.engine.evaluate(ast));
+        } catch (LispException e) {
+            return "Error: " + e.getMessage();
+        } catch (RuntimeException | StackOverflowError e) {
+            return "Unexpected error: " + e.getMessage();
+        }
+    }
+
+    private void respond(Session session, String response) {
+        byte[] bytes = (response + "\n").getBytes(StandardCharsets.UTF_8);
+        session.queuedResponseBytes.addAndGet(bytes.length);
+        session.responses.add(ByteBuffer.wrap(bytes));
+    }
+
+    private void enableWrites() {
+        Session session;
+        while ((session = pendingWrites.poll()) != null) {
+            if (session.key.isValid()) {
+                session.key.interestOps(session.key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    private void write(Session session) throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = session.responses.peek()) != null) {
+            if (buffer == END_OF_SESSION) {
+                closeSession(session.key);
+                return;
+            }
+            session.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return; // socket is full, wait for the next OP_WRITE
+            }
+            session.responses.poll();
+            session.queuedResponseBytes.addAndGet(-buffer.capacity());
+        }
+        // every batch a worker finishes ends with a write, so a paused session is looked at
+        // again whenever it may have caught up
+        if (session.paused && !isBehind(session)) {
+            session.paused = false;
+        }
+        int reads = session.paused ? 0 : SelectionKey.OP_READ;
+        session.key.interestOps(reads);
+
+        // a worker may have queued a response between the last peek and clearing OP_WRITE
+        if (!session.responses.isEmpty()) {
+            session.key.interestOps(reads | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void closeSession(SelectionKey key) {
+        // workers stop evaluating for a client that is gone
+        Session session = (Session) key.attachment();
+        if (session != null) {
+            session.closing = true;
+            session.requests.clear();
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // already closed by the client
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            closeSession(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            try {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            } catch (IOException e) {
+                // stale socket file is removed on the next start
+            }
+        }
+    }
+}
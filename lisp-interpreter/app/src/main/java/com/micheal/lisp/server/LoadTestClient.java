@@ -0,0 +1,128 @@
+package com.micheal.lisp.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// opens many connections to a LispServer, sends the same expression over and over on each
+// and reports throughput and latency percentiles.
+// usage: LoadTestClient <port|socket-path> [connections] [requests-per-connection] [expression]
+
+public class LoadTestClient {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadTestClient <port|socket-path> [connections] [requests] [expression]");
+            return;
+        }
+
+        SocketAddress address = LispServer.parseAddress(args[0]);
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        String expression = args.length > 3 ? args[3] : "(+ 1 (* 2 3) (- 10 4))";
+
+        System.out.println(run(address, connections, requests, expression));
+    }
+
+    public static Report run(SocketAddress address, int connections, int requests, String expression)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                results.add(pool.submit(() -> runConnection(address, requests, expression)));
+            }
+
+            long[] latencies = new long[connections * requests];
+            int count = 0;
+            for (Future<long[]> result : results) {
+                long[] connectionLatencies = result.get();
+                System.arraycopy(connectionLatencies, 0, latencies, count, connectionLatencies.length);
+                count += connectionLatencies.length;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            return new Report(count, elapsed, latencies);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long[] runConnection(SocketAddress address, int requests, String expression) throws IOException {
+        long[] latencies = new long[requests];
+        byte[] request = (expression + "\n").getBytes(StandardCharsets.UTF_8);
+
+        try (SocketChannel channel = open(address)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                    StandardCharsets.UTF_8));
+            for (int i = 0; i < requests; i++) {
+                long sent = System.nanoTime();
+                out.write(request);
+                out.flush();
+                String response = in.readLine();
+                if (response == null) {
+                    throw new IOException("Server closed the connection");
+                }
+                latencies[i] = System.nanoTime() - sent;
+            }
+        }
+        return latencies;
+    }
+
+    private static SocketChannel open(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        channel.connect(address);
+        return channel;
+    }
+
+    public static class Report {
+
+        private final int requests;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+
+        Report(int requests, long elapsedNanos, long[] sortedLatencies) {
+            this.requests = requests;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+        }
+
+        public double throughput() {
+            return requests / (elapsedNanos / 1e9);
+        }
+
+        // latency in microseconds at the given percentile, 0 < percentile <= 100
+        public double percentileMicros(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests in %.2f s: %.0f req/s, p50 %.1f us, p99 %.1f us, max %.1f us",
+                    requests, elapsedNanos / 1e9, throughput(),
+                    percentileMicros(50), percentileMicros(99), percentileMicros(100));
+        }
+    }
+}
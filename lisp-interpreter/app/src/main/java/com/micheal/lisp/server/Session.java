@@ -0,0 +1,63 @@
+package com.micheal.lisp.server;
+
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.parser.IncrementalParser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// state of one client connection. an idle session is only its channel, its engine and
+// a few empty queues, the read buffer belongs to the selector thread and is shared
+
+class Session {
+
+    final SocketChannel channel;
+    final Engine engine;
+    SelectionKey key;
+
+    // bytes of a line that has not been terminated yet, only touched by the selector thread
+    private ByteArrayOutputStream partialLine;
+    // splits the received lines into forms, only touched by the selector thread
+    final IncrementalParser forms = new IncrementalParser();
+
+    // forms waiting for evaluation, drained by at most one worker at a time
+    final Queue<String> requests = new ConcurrentLinkedQueue<>();
+    // forms read but not evaluated yet, the queue's size() would have to walk it
+    final AtomicInteger queuedRequests = new AtomicInteger();
+    final AtomicBoolean scheduled = new AtomicBoolean();
+    volatile boolean closing;
+
+    // encoded responses waiting to be written by the selector thread
+    final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+    final AtomicLong queuedResponseBytes = new AtomicLong();
+    // set while the selector has stopped reading from a client that is too far behind,
+    // only touched by the selector thread
+    boolean paused;
+
+    Session(SocketChannel channel, Engine engine) {
+        this.channel = channel;
+        this.engine = engine;
+    }
+
+    ByteArrayOutputStream partialLine() {
+        if (partialLine == null) {
+            partialLine = new ByteArrayOutputStream();
+        }
+        return partialLine;
+    }
+
+    boolean hasPartialLine() {
+        return partialLine != null && partialLine.size() > 0;
+    }
+
+    void clearPartialLine() {
+        partialLine = null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.micheal.lisp.visitor;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.Frame;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.runtime.Procedure;
+
+// a lambda created by the EvaluationVisitor, its body runs on the evaluator that created it
+
+public final class Closure implements Procedure {
+
+    private final Symbol[] parameters;
+    private final Node body;
+    private final Frame frame;
+    private final EvaluationVisitor evaluator;
+
+    Closure(Symbol[] parameters, Node body, Frame frame, EvaluationVisitor evaluator) {
+        this.parameters = parameters;
+        this.body = body;
+        this.frame = frame;
+        this.evaluator = evaluator;
+    }
+
+    @Override
+    public Symbol[] getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public Node getBody() {
+        return body;
+    }
+
+    @Override
+    public Frame getFrame() {
+        return frame;
+    }
+
+    EvaluationVisitor getEvaluator() {
+        return evaluator;
+    }
+
+    @Override
+    public Object apply(Object[] arguments) {
+        return evaluator.apply(this, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "#<procedure>";
+    }
+}
@@ -0,0 +1,287 @@
+package com.micheal.lisp.visitor;
+
+import com.micheal.lisp.ast.*;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.runtime.Numbers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// rewrites a tree before evaluation: arithmetic and comparisons on literals are computed
+// once, constant operands of + and * are combined, and an if with a known condition is
+// replaced by the branch it would take.
+// anything that would fail at runtime (division by zero, wrong arity, a boolean operand
+// in arithmetic ...) is left in the tree so the same error is still raised at the same point.
+// unchanged subtrees are returned as the same instances, and new ones come from the given
+// NodeFactory, so with the parser's factory a folded list is shared like a parsed one
+
+public class ConstantFoldingVisitor implements Visitor {
+
+    private final NodeFactory nodeFactory;
+
+    public ConstantFoldingVisitor() {
+        this(new NodeFactory());
+    }
+
+    public ConstantFoldingVisitor(NodeFactory nodeFactory) {
+        this.nodeFactory = nodeFactory;
+    }
+
+    public Node fold(Node node) {
+        return (Node) node.accept(this);
+    }
+
+    @Override
+    public Object visit(NumberNode node) {
+        return node;
+    }
+
+    @Override
+    public Object visit(SymbolNode node) {
+        return node;
+    }
+
+    @Override
+    public Object visit(BooleanNode node) {
+        return node;
+    }
+
+    @Override
+    public Object visit(ListNode node) {
+        List<Node> elements = node.getElements();
+        if (elements.isEmpty()) {
+            return node;
+        }
+        if (!(elements.get(0) instanceof SymbolNode)) {
+            return foldApplication(node);
+        }
+
+        switch (((SymbolNode) elements.get(0)).getName()) {
+            case "+":
+                return foldAssociative(node, 0);
+            case "*":
+                return foldAssociative(node, 1);
+            case "-":
+                return foldSubtraction(node);
+            case "/":
+                return foldDivision(node);
+            case "%":
+                return foldModulo(node);
+            case ">":
+            case "<":
+            case "=":
+                return foldComparison(node);
+            case "if":
+                return foldIf(node);
+            case "define":
+                return foldDefine(node);
+            case "lambda":
+                return foldLambda(node);
+            default:
+                return foldApplication(node);
+        }
+    }
+
+    // (+ 1 x 2 y) becomes (+ 3 x y). addition and multiplication commute and literals can't
+    // fail, so moving them in front keeps the result and the order of any errors
+    private Node foldAssociative(ListNode node, int identity) {
+        List<Node> elements = foldOperands(node);
+        boolean addition = identity == 0;
+
+        Number constant = identity;
+        int constants = 0;
+        List<Node> rest = new ArrayList<>();
+        for (int i = 1; i < elements.size(); i++) {
+            Node operand = elements.get(i);
+            if (operand instanceof NumberNode) {
+                Number value = ((NumberNode) operand).getValue();
+                constant = addition ? Numbers.add(constant, value) : Numbers.multiply(constant, value);
+                constants++;
+            } else {
+                rest.add(operand);
+            }
+        }
+
+        if (rest.isEmpty()) {
+            return nodeFactory.createNumber(constant);
+        }
+        if (constants <= 1) {
+            return rebuild(node, elements);
+        }
+
+        List<Node> folded = new ArrayList<>();
+        folded.add(elements.get(0));
+        if (!constant.equals(identity)) {
+            folded.add(nodeFactory.createNumber(constant));
+        }
+        folded.addAll(rest);
+        return nodeFactory.createList(folded);
+    }
+
+    private Node foldSubtraction(ListNode node) {
+        List<Node> elements = foldOperands(node);
+        if (elements.size() == 1 || !allNumbers(elements)) {
+            return rebuild(node, elements);
+        }
+
+        Number result = numberAt(elements, 1);
+        if (elements.size() == 2) {
+            return nodeFactory.createNumber(Numbers.negate(result));
+        }
+        for (int i = 2; i < elements.size(); i++) {
+            result = Numbers.subtract(result, numberAt(elements, i));
+        }
+        return nodeFactory.createNumber(result);
+    }
+
+    private Node foldDivision(ListNode node) {
+        List<Node> elements = foldOperands(node);
+        if (elements.size() == 1 || !allNumbers(elements)) {
+            return rebuild(node, elements);
+        }
+
+        Number result = numberAt(elements, 1);
+        for (int i = 2; i < elements.size(); i++) {
+            Number divisor = numberAt(elements, i);
+            if (Numbers.isZero(divisor)) {
+                return rebuild(node, elements);
+            }
+            result = Numbers.divide(result, divisor);
+        }
+        return nodeFactory.createNumber(result);
+    }
+
+    private Node foldModulo(ListNode node) {
+        List<Node> elements = foldOperands(node);
+        if (elements.size() != 3 || !allNumbers(elements) || Numbers.isZero(numberAt(elements, 2))) {
+            return rebuild(node, elements);
+        }
+        return nodeFactory.createNumber(Numbers.remainder(numberAt(elements, 1), numberAt(elements, 2)));
+    }
+
+    private Node foldComparison(ListNode node) {
+        List<Node> elements = foldOperands(node);
+        String op = ((SymbolNode) elements.get(0)).getName();
+        if (elements.size() != 3) {
+            return rebuild(node, elements);
+        }
+
+        Node left = elements.get(1);
+        Node right = elements.get(2);
+        if ("=".equals(op)) {
+            Object leftValue = constantValue(left);
+            Object rightValue = constantValue(right);
+            if (leftValue == null || rightValue == null) {
+                return rebuild(node, elements);
+            }
+            return nodeFactory.createBoolean(leftValue.equals(rightValue));
+        }
+
+        if (!(left instanceof NumberNode) || !(right instanceof NumberNode)) {
+            return rebuild(node, elements);
+        }
+        int comparison = Numbers.compare(((NumberNode) left).getValue(), ((NumberNode) right).getValue());
+        return nodeFactory.createBoolean(">".equals(op) ? comparison > 0 : comparison < 0);
+    }
+
+    private Node foldIf(ListNode node) {
+        List<Node> elements = node.getElements();
+        if (elements.size() != 4) {
+            return node;
+        }
+
+        Node condition = fold(elements.get(1));
+        if (condition instanceof BooleanNode) {
+            // the branch that is not taken would never run, so it can go with its errors
+            return fold(elements.get(((BooleanNode) condition).getValue() ? 2 : 3));
+        }
+
+        List<Node> folded = new ArrayList<>(elements);
+        folded.set(1, condition);
+        folded.set(2, fold(elements.get(2)));
+        folded.set(3, fold(elements.get(3)));
+        return rebuild(node, folded);
+    }
+
+    private Node foldDefine(ListNode node) {
+        List<Node> elements = node.getElements();
+        if (elements.size() != 3 || !(elements.get(1) instanceof SymbolNode)) {
+            return node;
+        }
+
+        List<Node> folded = new ArrayList<>(elements);
+        folded.set(2, fold(elements.get(2)));
+        return rebuild(node, folded);
+    }
+
+    // only the body, the parameter list is left as it is
+    private Node foldLambda(ListNode node) {
+        List<Node> elements = node.getElements();
+        if (elements.size() != 3 || !(elements.get(1) instanceof ListNode)) {
+            return node;
+        }
+
+        List<Node> folded = new ArrayList<>(elements);
+        folded.set(2, fold(elements.get(2)));
+        return rebuild(node, folded);
+    }
+
+    // a procedure call. a computed operator is only replaced by another list: turning
+    // ((if c f g) 1) into (f 1) would change which error an undefined f raises
+    private Node foldApplication(ListNode node) {
+        List<Node> folded = foldOperands(node);
+        Node operator = folded.get(0);
+        if (operator instanceof ListNode) {
+            Node foldedOperator = fold(operator);
+            if (foldedOperator instanceof ListNode) {
+                folded.set(0, foldedOperator);
+            }
+        }
+        return rebuild(node, folded);
+    }
+
+    private List<Node> foldOperands(ListNode node) {
+        List<Node> elements = node.getElements();
+        List<Node> folded = new ArrayList<>(elements.size());
+        folded.add(elements.get(0));
+        for (int i = 1; i < elements.size(); i++) {
+            folded.add(fold(elements.get(i)));
+        }
+        return folded;
+    }
+
+    // keeps the original node when folding changed none of its elements
+    private Node rebuild(ListNode node, List<Node> elements) {
+        List<Node> original = node.getElements();
+        for (int i = 0; i < elements.size(); i++) {
+            if (elements.get(i) != original.get(i)) {
+                return nodeFactory.createList(elements);
+            }
+        }
+        return node;
+    }
+
+    private static boolean allNumbers(List<Node> elements) {
+        for (int i = 1; i < elements.size(); i++) {
+            if (!(elements.get(i) instanceof NumberNode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Number numberAt(List<Node> elements, int index) {
+        return ((NumberNode) elements.get(index)).getValue();
+    }
+
+    // value of a literal, or null when the node is not one
+    private static Object constantValue(Node node) {
+        if (node instanceof NumberNode) {
+            return ((NumberNode) node).getValue();
+        }
+        if (node instanceof BooleanNode) {
+            return ((BooleanNode) node).getValue();
+        }
+        return null;
+    }
+}
@@ -1,127 +1,432 @@
 package com.micheal.lisp.visitor;
 
 import com.micheal.lisp.ast.*;
+import com.micheal.lisp.environment.Frame;
 import com.micheal.lisp.environment.GlobalEnvironment;
-import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.metrics.EvaluationEvent;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Procedure;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
 
 import java.util.List;
 
 public class EvaluationVisitor implements Visitor {
 
+    private final GlobalEnvironment environment;
+    // local variables of the closure call being evaluated, null at the top level
+    private Frame frame;
+    // optional, results of pure top level subtrees. memoizing is set while one is evaluated
+    // so that its own subtrees are not cached separately
+    private final MemoCache memoCache;
+    private boolean memoizing;
+    // optional, null when nothing is counted. nodes is the count for the evaluation in
+    // progress, evaluate() adds it to the shared counter when the evaluation ends
+    private final Metrics metrics;
+    private long nodes;
+
+    public EvaluationVisitor() {
+        this(new GlobalEnvironment());
+    }
+
+    public EvaluationVisitor(GlobalEnvironment environment) {
+        this(environment, null);
+    }
+
+    public EvaluationVisitor(GlobalEnvironment environment, MemoCache memoCache) {
+        this(environment, memoCache, null);
+    }
+
+    public EvaluationVisitor(GlobalEnvironment environment, MemoCache memoCache, Metrics metrics) {
+        this.environment = environment;
+        this.memoCache = memoCache;
+        this.metrics = metrics;
+    }
+
+    // evaluates a top-level expression, timing it when metrics are enabled. it sees no locals,
+    // even when it is reached from inside a call (a Snapshot loading a binding on lookup)
+    public Object evaluate(Node node) {
+        Frame caller = frame;
+        frame = null;
+        try {
+            return metrics == null ? node.accept(this) : evaluateTimed(node);
+        } finally {
+            frame = caller;
+        }
+    }
+
+    private Object evaluateTimed(Node node) {
+        EvaluationEvent event = new EvaluationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return node.accept(this);
+        } finally {
+            metrics.recordEvaluation(System.nanoTime() - start);
+            metrics.countNodes(nodes);
+            if (event.shouldCommit()) {
+                event.nodes = nodes;
+                event.commit();
+            }
+            nodes = 0;
+        }
+    }
+
     @Override
     public Object visit(NumberNode node) {
+        if (metrics != null) {
+            nodes++;
+        }
         return node.getValue();
     }
 
     @Override
-    public Object visit(SymbolNode node) {
-        return GlobalEnvironment.getInstance().lookup(node.getName());
+    public Object visit(BooleanNode node) {
+        if (metrics != null) {
+            nodes++;
+        }
+        return node.getValue();
     }
-    
-    // helper to convert values to int for math ops
-    private int toInt(Object value, String operation) {
-        if (value instanceof Integer) {
-            return (Integer) value;
+
+    @Override
+    public Object visit(SymbolNode node) {
+        if (metrics != null) {
+            nodes++;
+            metrics.countLookup();
         }
-        if (value instanceof Number) {
-            throw new LispException(
-                String.format("Arithmetic operation '%s' requires integer operands, got: %s", 
-                    operation, value.getClass().getSimpleName()));
+        Symbol symbol = node.getSymbol();
+        if (frame != null) {
+            Object value = frame.lookup(symbol);
+            if (value != null) {
+                return value;
+            }
         }
-        throw new LispException(
-            String.format("Arithmetic operation '%s' requires numeric operands, got: %s", 
-                operation, value.getClass().getSimpleName()));
+        return environment.lookup(symbol);
     }
 
-
     @Override
     public Object visit(ListNode node) {
-        var elements = node.getElements();
-
-        if (elements.isEmpty()) {
-            throw new LispException("Cannot evaluate empty list");
-        }
-        
-        var first = elements.get(0);
-        if (!(first instanceof SymbolNode)) {
-            throw new LispException("First element must be an operator");
-        }
-
-        String op = ((SymbolNode) first).getName();
-
-        switch (op) {
-            case "+":
-                return evaluateAddition(elements.subList(1, elements.size()));
-            case "-":
-                return evaluateSubtraction(elements.subList(1, elements.size()));
-            case "*":
-                return evaluateMultiplication(elements.subList(1, elements.size()));
-            case "/":
-                return evaluateDivision(elements.subList(1, elements.size()));
-            case "%":
-                return evaluateModulo(elements.subList(1, elements.size()));
-            case "define":
-                return evaluateDefine(elements);
-            case "if":
-                return evaluateIf(elements);
-            case ">":
-                return evaluateGreaterThan(elements);
-            case "<":
-                return evaluateLessThan(elements);
-            case "=":
-                return evaluateEquals(elements);
+        // inside a procedure call a subtree can read locals, which the cache does not track
+        if (memoCache != null && frame == null && !memoizing && memoCache.isCacheable(node)) {
+            return evaluateMemoized(node);
+        }
+
+        Frame caller = frame;
+        try {
+            return evaluateList(node);
+        } finally {
+            frame = caller;
+        }
+    }
+
+    private Object evaluateMemoized(ListNode node) {
+        Object cached = memoCache.get(node, environment);
+        if (cached != null) {
+            return cached;
+        }
+
+        Object value;
+        memoizing = true;
+        try {
+            value = evaluateList(node);
+        } finally {
+            memoizing = false;
+        }
+        memoCache.put(node, environment, value);
+        return value;
+    }
+
+    // the branches of an if and the body of a called closure are evaluated by going round
+    // this loop again instead of recursing, so tail calls run in constant Java stack.
+    // the current frame is switched in place, visit(ListNode) restores the caller's frame
+    private Object evaluateList(ListNode node) {
+        while (true) {
+            var elements = node.getElements();
+
+            if (elements.isEmpty()) {
+                throw Values.emptyListError();
+            }
+
+            var first = elements.get(0);
+            if (metrics != null) {
+                countOperator(first);
+            }
+            Procedure procedure;
+            if (first instanceof SymbolNode) {
+                String op = ((SymbolNode) first).getName();
+
+                switch (op) {
+                    case "+":
+                    case "-":
+                    case "*":
+                    case "/":
+                    case "%":
+                        try {
+                            return evaluateArithmetic(op, elements);
+                        } catch (Promotion p) {
+                            return p.getValue();
+                        }
+                    case "define":
+                        return evaluateDefine(elements);
+                    case "lambda":
+                        return evaluateLambda(elements);
+                    case "if": {
+                        Node branch = selectBranch(elements);
+                        if (!(branch instanceof ListNode)) {
+                            return branch.accept(this);
+                        }
+                        node = (ListNode) branch;
+                        continue;
+                    }
+                    case ">":
+                        return evaluateGreaterThan(elements);
+                    case "<":
+                        return evaluateLessThan(elements);
+                    case "=":
+                        return evaluateEquals(elements);
+                    default:
+                        procedure = lookupProcedure((SymbolNode) first);
+                        break;
+                }
+            } else if (first instanceof ListNode) {
+                Object value = first.accept(this);
+                if (!(value instanceof Procedure)) {
+                    throw Values.notAnOperatorError();
+                }
+                procedure = (Procedure) value;
+            } else {
+                throw Values.notAnOperatorError();
+            }
+
+            Object[] arguments = new Object[elements.size() - 1];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = elements.get(i + 1).accept(this);
+            }
+
+            if (!(procedure instanceof Closure) || ((Closure) procedure).getEvaluator() != this) {
+                return procedure.apply(arguments);
+            }
+
+            Closure closure = (Closure) procedure;
+            frame = enter(closure, arguments);
+            Node body = closure.getBody();
+            if (!(body instanceof ListNode)) {
+                return body.accept(this);
+            }
+            node = (ListNode) body;
+        }
+    }
+
+    // calls a closure of this evaluator from outside, e.g. from compiled code or another procedure
+    Object apply(Closure closure, Object[] arguments) {
+        Frame caller = frame;
+        try {
+            frame = enter(closure, arguments);
+            return closure.getBody().accept(this);
+        } finally {
+            frame = caller;
+        }
+    }
+
+    private static Frame enter(Closure closure, Object[] arguments) {
+        Symbol[] parameters = closure.getParameters();
+        if (arguments.length != parameters.length) {
+            throw Values.procedureArgumentCountError(parameters.length, arguments.length);
+        }
+        return new Frame(parameters, arguments, closure.getFrame());
+    }
+
+    private Procedure lookupProcedure(SymbolNode node) {
+        Symbol symbol = node.getSymbol();
+        Object value = frame != null ? frame.lookup(symbol) : null;
+        if (value == null) {
+            value = environment.find(symbol);
+        }
+        if (!(value instanceof Procedure)) {
+            throw Values.unknownOperatorError(node.getName());
+        }
+        return (Procedure) value;
+    }
+
+    private Object evaluateLambda(List<Node> elements) {
+        Symbol[] parameters = Values.lambdaParameters(elements);
+        return new Closure(parameters, elements.get(2), frame, this);
+    }
+
+    // evaluates an operand that has to be an int. nested arithmetic is computed
+    // directly as int here, so only the final result of visit(ListNode) gets boxed.
+    // a value that is not an int comes out as a Promotion, see evaluateNumber
+    int evaluateInt(Node node, String operation) {
+        if (node instanceof NumberNode) {
+            if (metrics != null) {
+                nodes++;
+            }
+            Number value = ((NumberNode) node).getValue();
+            if (value instanceof Integer) {
+                return (Integer) value;
+            }
+            throw new Promotion(value);
+        }
+        if (node instanceof ListNode) {
+            List<Node> elements = ((ListNode) node).getElements();
+            if (!elements.isEmpty() && elements.get(0) instanceof SymbolNode) {
+                String op = ((SymbolNode) elements.get(0)).getName();
+                if (isArithmetic(op)) {
+                    if (metrics != null) {
+                        countOperator(elements.get(0));
+                    }
+                    return evaluateArithmetic(op, elements);
+                }
+            }
+        }
+        return Values.toInt(node.accept(this), operation);
+    }
+
+    // the same on the general path, for operands after an int result overflowed
+    private Number evaluateNumber(Node node, String operation) {
+        try {
+            return evaluateInt(node, operation);
+        } catch (Promotion p) {
+            return p.getValue();
+        }
+    }
+
+    private static boolean isArithmetic(String op) {
+        return op.length() == 1 && "+-*/%".indexOf(op.charAt(0)) >= 0;
+    }
+
+    private void countOperator(Node head) {
+        nodes++;
+        metrics.countOperator(head instanceof SymbolNode ? ((SymbolNode) head).getName() : "call");
+    }
+
+    // op is one of + - * / %, so its first character is enough
+    private int evaluateArithmetic(String op, List<Node> elements) {
+        switch (op.charAt(0)) {
+            case '+':
+                return evaluateAddition(elements);
+            case '-':
+                return evaluateSubtraction(elements);
+            case '*':
+                return evaluateMultiplication(elements);
+            case '/':
+                return evaluateDivision(elements);
             default:
-                throw new LispException("Unknown or invalid operator: '" + op + "'");
+                return evaluateModulo(elements);
         }
     }
 
-    private int evaluateAddition(List<Node> operands) {
+    // finishes an operator with Numbers from operand next on, once its int result has
+    // overflowed or an operand was not an int. the final value may be back in int range
+    private Promotion promote(String op, Number result, List<Node> elements, int next) {
+        for (int i = next; i < elements.size(); i++) {
+            result = Numbers.apply(op, result, evaluateNumber(elements.get(i), op));
+        }
+        return new Promotion(result);
+    }
+
+    private int evaluateAddition(List<Node> elements) {
         int result = 0;
-        for (Node operand : operands) {
-            Object value = operand.accept(this);
-            result += toInt(value, "+");
+        for (int i = 1; i < elements.size(); i++) {
+            int value;
+            try {
+                value = evaluateInt(elements.get(i), "+");
+            } catch (Promotion p) {
+                throw promote("+", Numbers.add(result, p.getValue()), elements, i + 1);
+            }
+            try {
+                result = Math.addExact(result, value);
+            } catch (ArithmeticException e) {
+                throw promote("+", (long) result + value, elements, i + 1);
+            }
         }
         return result;
     }
 
-    private int evaluateSubtraction(List<Node> operands) {
-        if (operands.isEmpty()) {
-            throw new LispException("Operator '-' expects at least one argument");
+    private int evaluateSubtraction(List<Node> elements) {
+        if (elements.size() == 1) {
+            throw Values.missingArgumentError("-");
+        }
+
+        int result;
+        try {
+            result = evaluateInt(elements.get(1), "-");
+        } catch (Promotion p) {
+            if (elements.size() == 2) {
+                throw new Promotion(Numbers.negate(p.getValue()));
+            }
+            throw promote("-", p.getValue(), elements, 2);
         }
 
-        int result = toInt(operands.get(0).accept(this), "-");
-        
         // handle unary minus
-        if (operands.size() == 1) {
+        if (elements.size() == 2) {
+            if (result == Integer.MIN_VALUE) {
+                throw new Promotion(Numbers.negate(result));
+            }
             return -result;
         }
 
-        for (int i = 1; i < operands.size(); i++) {
-            result -= toInt(operands.get(i).accept(this), "-");
+        for (int i = 2; i < elements.size(); i++) {
+            int value;
+            try {
+                value = evaluateInt(elements.get(i), "-");
+            } catch (Promotion p) {
+                throw promote("-", Numbers.subtract(result, p.getValue()), elements, i + 1);
+            }
+            try {
+                result = Math.subtractExact(result, value);
+            } catch (ArithmeticException e) {
+                throw promote("-", (long) result - value, elements, i + 1);
+            }
         }
         return result;
     }
 
-    private int evaluateMultiplication(List<Node> operands) {
+    private int evaluateMultiplication(List<Node> elements) {
         int result = 1;
-        for (Node operand : operands) {
-            Object value = operand.accept(this);
-            result *= toInt(value, "*");
+        for (int i = 1; i < elements.size(); i++) {
+            int value;
+            try {
+                value = evaluateInt(elements.get(i), "*");
+            } catch (Promotion p) {
+                throw promote("*", Numbers.multiply(result, p.getValue()), elements, i + 1);
+            }
+            try {
+                result = Math.multiplyExact(result, value);
+            } catch (ArithmeticException e) {
+                throw promote("*", (long) result * value, elements, i + 1);
+            }
         }
         return result;
     }
 
-    private int evaluateDivision(List<Node> operands) {
-        if (operands.isEmpty()) {
-            throw new LispException("Operator '/' expects at least one argument");
+    private int evaluateDivision(List<Node> elements) {
+        if (elements.size() == 1) {
+            throw Values.missingArgumentError("/");
         }
 
-        int result = toInt(operands.get(0).accept(this), "/");
+        int result;
+        try {
+            result = evaluateInt(elements.get(1), "/");
+        } catch (Promotion p) {
+            throw promote("/", p.getValue(), elements, 2);
+        }
 
-        for (int i = 1; i < operands.size(); i++) {
-            int divisor = toInt(operands.get(i).accept(this), "/");
+        for (int i = 2; i < elements.size(); i++) {
+            int divisor;
+            try {
+                divisor = evaluateInt(elements.get(i), "/");
+            } catch (Promotion p) {
+                throw promote("/", Numbers.divide(result, p.getValue()), elements, i + 1);
+            }
             if (divisor == 0) {
-                throw new LispException("Arithmetic error in division: Division by zero");
+                throw Values.divisionByZero();
+            }
+            // the only int division that overflows
+            if (result == Integer.MIN_VALUE && divisor == -1) {
+                throw promote("/", -(long) result, elements, i + 1);
             }
             result /= divisor;
         }
@@ -129,63 +434,81 @@ public class EvaluationVisitor implements Visitor {
         return result;
     }
 
-    private int evaluateModulo(List<Node> operands) {
-        if (operands.size() != 2) {
-            throw new LispException(String.format("Operator '%%' expects 2 argument(s), but got %d", operands.size()));
+    private int evaluateModulo(List<Node> elements) {
+        if (elements.size() != 3) {
+            throw Values.argumentCountError("%", 2, elements.size() - 1);
         }
 
-        int a = toInt(operands.get(0).accept(this), "%");
-        int b = toInt(operands.get(1).accept(this), "%");
+        int a;
+        try {
+            a = evaluateInt(elements.get(1), "%");
+        } catch (Promotion p) {
+            throw new Promotion(Numbers.remainder(p.getValue(), evaluateNumber(elements.get(2), "%")));
+        }
+        int b;
+        try {
+            b = evaluateInt(elements.get(2), "%");
+        } catch (Promotion p) {
+            throw new Promotion(Numbers.remainder(a, p.getValue()));
+        }
 
         if (b == 0) {
-            throw new LispException("Arithmetic error in modulo: Modulo by zero");
+            throw Values.moduloByZero();
         }
 
         return a % b;
     }
 
+    // sign of left - right for > and <, on ints unless an operand is bigger
+    private int compareOperands(List<Node> elements, String op) {
+        int left;
+        try {
+            left = evaluateInt(elements.get(1), op);
+        } catch (Promotion p) {
+            return Numbers.compare(p.getValue(), evaluateNumber(elements.get(2), op));
+        }
+        try {
+            return Integer.compare(left, evaluateInt(elements.get(2), op));
+        } catch (Promotion p) {
+            return Numbers.compare(left, p.getValue());
+        }
+    }
 
     private Object evaluateDefine(List<Node> elements) {
         if (elements.size() != 3) {
-            throw new LispException(String.format("Operator 'define' expects 2 argument(s), but got %d", elements.size() - 1));
+            throw Values.argumentCountError("define", 2, elements.size() - 1);
         }
 
         Node nameNode = elements.get(1);
         if (!(nameNode instanceof SymbolNode)) {
-            throw new LispException("First argument to 'define' must be a symbol");
+            throw Values.defineNameError();
         }
 
-        String name = ((SymbolNode) nameNode).getName();
+        Symbol name = ((SymbolNode) nameNode).getSymbol();
         Object value = elements.get(2).accept(this);
-        GlobalEnvironment.getInstance().define(name, value);
+        environment.define(name, value);
         return value;
     }
 
     private Object evaluateGreaterThan(List<Node> elements) {
         if (elements.size() != 3) {
-            throw new LispException(String.format("Operator '>' expects 2 argument(s), but got %d", elements.size() - 1));
+            throw Values.argumentCountError(">", 2, elements.size() - 1);
         }
 
-        int left = toInt(elements.get(1).accept(this), ">");
-        int right = toInt(elements.get(2).accept(this), ">");
-
-        return left > right;
+        return compareOperands(elements, ">") > 0;
     }
 
     private Object evaluateLessThan(List<Node> elements) {
         if (elements.size() != 3) {
-            throw new LispException(String.format("Operator '<' expects 2 argument(s), but got %d", elements.size() - 1));
+            throw Values.argumentCountError("<", 2, elements.size() - 1);
         }
 
-        int left = toInt(elements.get(1).accept(this), "<");
-        int right = toInt(elements.get(2).accept(this), "<");
-
-        return left < right;
+        return compareOperands(elements, "<") < 0;
     }
 
     private Object evaluateEquals(List<Node> elements) {
         if (elements.size() != 3) {
-            throw new LispException(String.format("Operator '=' expects 2 argument(s), but got %d", elements.size() - 1));
+            throw Values.argumentCountError("=", 2, elements.size() - 1);
         }
 
         Object left = elements.get(1).accept(this);
@@ -194,20 +517,12 @@ public class EvaluationVisitor implements Visitor {
         return left.equals(right);
     }
 
-    private Object evaluateIf(List<Node> elements) {
+    private Node selectBranch(List<Node> elements) {
         if (elements.size() != 4) {
-            throw new LispException(String.format("Operator 'if' expects 3 argument(s), but got %d", elements.size() - 1));
+            throw Values.argumentCountError("if", 3, elements.size() - 1);
         }
 
         Object condition = elements.get(1).accept(this);
-        if (!(condition instanceof Boolean)) {
-            throw new LispException("'if' condition must evaluate to a boolean value, got: " + 
-                condition.getClass().getSimpleName());
-        }
-
-        if ((Boolean) condition) {
-            return elements.get(2).accept(this);
-        }
-        return elements.get(3).accept(this);
+        return Values.toCondition(condition) ? elements.get(2) : elements.get(3);
     }
 }
@@ -0,0 +1,501 @@
+package com.micheal.lisp.visitor;
+
+import com.micheal.lisp.ast.FlatAst;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// evaluates a FlatAst by walking its arrays, with the same results and errors as
+// EvaluationVisitor. arithmetic, comparisons, if and define run here. lambdas and procedure
+// calls are turned back into Nodes and handed to a tree walking evaluator on the same
+// environment, which also owns the closures they create. generated programs that are big
+// enough to need a FlatAst are almost entirely arithmetic, so that is rarely needed.
+// lists are evaluated recursively down to maxNesting levels. a list nested deeper is
+// evaluated with an explicit stack of pending lists, like parseFlat builds them, so a deeply
+// nested generated expression does not overflow the Java stack. a lambda or call subtree is
+// still walked recursively by the tree walker
+
+public class FlatEvaluator {
+
+    // a few Java frames per level, well inside the default thread stack
+    public static final int DEFAULT_MAX_NESTING = 1000;
+
+    private final GlobalEnvironment environment;
+    private final EvaluationVisitor nodes;
+    // the program being evaluated and the subtrees of it that were handed to nodes
+    private FlatAst ast;
+    private final Map<Integer, Node> materialized = new HashMap<>();
+    // true for each symbol in the program's pool that is one of + - * / %
+    private boolean[] arithmetic;
+    // how many lists are being evaluated recursively right now, and the most that may be
+    private int nesting;
+    private final int maxNesting;
+    // the lists waiting for an operand in evaluateIteratively, innermost last
+    private Pending[] stack = new Pending[16];
+
+    public FlatEvaluator() {
+        this(new GlobalEnvironment());
+    }
+
+    public FlatEvaluator(GlobalEnvironment environment) {
+        this(environment, DEFAULT_MAX_NESTING);
+    }
+
+    // with a maxNesting of 0 every list is evaluated with the explicit stack
+    public FlatEvaluator(GlobalEnvironment environment, int maxNesting) {
+        if (maxNesting < 0) {
+            throw new IllegalArgumentException("Nesting limit must not be negative: " + maxNesting);
+        }
+        this.environment = environment;
+        this.nodes = new EvaluationVisitor(environment);
+        this.maxNesting = maxNesting;
+    }
+
+    public Object evaluate(FlatAst program) {
+        if (program != ast) {
+            ast = program;
+            materialized.clear();
+            arithmetic = new boolean[program.getSymbolCount()];
+            for (int i = 0; i < arithmetic.length; i++) {
+                String name = program.getSymbol(i).getName();
+                arithmetic[i] = name.length() == 1 && "+-*/%".indexOf(name.charAt(0)) >= 0;
+            }
+        }
+        return evaluate(0);
+    }
+
+    private Object evaluate(int node) {
+        if (nesting == maxNesting) {
+            return evaluateIteratively(node);
+        }
+        nesting++;
+        try {
+            return evaluateRecursively(node);
+        } finally {
+            nesting--;
+        }
+    }
+
+    private Object evaluateRecursively(int node) {
+        while (true) {
+            switch (ast.kind(node)) {
+                case FlatAst.INT:
+                case FlatAst.NUMBER:
+                    return ast.number(node);
+                case FlatAst.BOOLEAN:
+                    return ast.booleanValue(node);
+                case FlatAst.SYMBOL:
+                    return environment.lookup(ast.symbol(node));
+                default:
+                    break;
+            }
+
+            if (ast.childCount(node) == 0) {
+                throw Values.emptyListError();
+            }
+            int head = node + 1;
+            if (ast.kind(head) != FlatAst.SYMBOL) {
+                return delegate(node);
+            }
+
+            String op = ast.symbol(head).getName();
+            switch (op) {
+                case "+":
+                case "-":
+                case "*":
+                case "/":
+                case "%":
+                    try {
+                        return evaluateArithmetic(op, node);
+                    } catch (Promotion p) {
+                        return p.getValue();
+                    }
+                case "define":
+                    return evaluateDefine(node);
+                case "if": {
+                    // the branch is evaluated by going round again, like EvaluationVisitor
+                    checkArity(node, "if", 3);
+                    int condition = ast.next(head);
+                    int thenBranch = ast.next(condition);
+                    node = Values.toCondition(evaluate(condition)) ? thenBranch : ast.next(thenBranch);
+                    continue;
+                }
+                case ">":
+                    checkArity(node, ">", 2);
+                    return compareOperands(node, ">") > 0;
+                case "<":
+                    checkArity(node, "<", 2);
+                    return compareOperands(node, "<") < 0;
+                case "=": {
+                    checkArity(node, "=", 2);
+                    int left = ast.next(head);
+                    Object value = evaluate(left);
+                    return value.equals(evaluate(ast.next(left)));
+                }
+                default:
+                    return delegate(node);
+            }
+        }
+    }
+
+    // lambdas and calls, including their arity and operator errors
+    private Object delegate(int node) {
+        return materialized.computeIfAbsent(node, ast::toNode).accept(nodes);
+    }
+
+    private void checkArity(int node, String op, int expected) {
+        int actual = ast.childCount(node) - 1;
+        if (actual != expected) {
+            throw Values.argumentCountError(op, expected, actual);
+        }
+    }
+
+    private Object evaluateDefine(int node) {
+        checkArity(node, "define", 2);
+        int name = ast.next(node + 1);
+        if (ast.kind(name) != FlatAst.SYMBOL) {
+            throw Values.defineNameError();
+        }
+        Object value = evaluate(ast.next(name));
+        environment.define(ast.symbol(name), value);
+        return value;
+    }
+
+    // see EvaluationVisitor.evaluateInt, a value that is not an int comes out as a Promotion
+    private int evaluateInt(int node, String operation) {
+        byte kind = ast.kind(node);
+        if (kind == FlatAst.INT) {
+            return ast.intValue(node);
+        }
+        if (kind == FlatAst.LIST && ast.childCount(node) > 0 && ast.kind(node + 1) == FlatAst.SYMBOL
+                && arithmetic[ast.symbolIndex(node + 1)]) {
+            if (nesting == maxNesting) {
+                return Values.toInt(evaluateIteratively(node), operation);
+            }
+            nesting++;
+            try {
+                return evaluateArithmetic(ast.symbol(node + 1).getName(), node);
+            } finally {
+                nesting--;
+            }
+        }
+        return Values.toInt(evaluate(node), operation);
+    }
+
+    private Number evaluateNumber(int node, String operation) {
+        try {
+            return evaluateInt(node, operation);
+        } catch (Promotion p) {
+            return p.getValue();
+        }
+    }
+
+    // op is one of + - * / %
+    private int evaluateArithmetic(String op, int node) {
+        int operands = ast.childCount(node) - 1;
+        int first = ast.next(node + 1);
+        int end = ast.next(node);
+        switch (op.charAt(0)) {
+            case '+':
+                return fold("+", 0, first, end);
+            case '*':
+                return fold("*", 1, first, end);
+            case '-': {
+                if (operands == 0) {
+                    throw Values.missingArgumentError("-");
+                }
+                int result;
+                try {
+                    result = evaluateInt(first, "-");
+                } catch (Promotion p) {
+                    if (operands == 1) {
+                        throw new Promotion(Numbers.negate(p.getValue()));
+                    }
+                    throw promote("-", p.getValue(), ast.next(first), end);
+                }
+                // handle unary minus
+                if (operands == 1) {
+                    if (result == Integer.MIN_VALUE) {
+                        throw new Promotion(Numbers.negate(result));
+                    }
+                    return -result;
+                }
+                return fold("-", result, ast.next(first), end);
+            }
+            case '/': {
+                if (operands == 0) {
+                    throw Values.missingArgumentError("/");
+                }
+                int result;
+                try {
+                    result = evaluateInt(first, "/");
+                } catch (Promotion p) {
+                    throw promote("/", p.getValue(), ast.next(first), end);
+                }
+                return fold("/", result, ast.next(first), end);
+            }
+            default:
+                return evaluateModulo(node, operands, first);
+        }
+    }
+
+    // applies op to result and the operands in [from, end) on ints, promoting on overflow
+    private int fold(String op, int result, int from, int end) {
+        char operator = op.charAt(0);
+        for (int operand = from; operand < end; operand = ast.next(operand)) {
+            int value;
+            try {
+                value = evaluateInt(operand, op);
+            } catch (Promotion p) {
+                throw promote(op, Numbers.apply(op, result, p.getValue()), ast.next(operand), end);
+            }
+            try {
+                switch (operator) {
+                    case '+':
+                        result = Math.addExact(result, value);
+                        break;
+                    case '-':
+                        result = Math.subtractExact(result, value);
+                        break;
+                    case '*':
+                        result = Math.multiplyExact(result, value);
+                        break;
+                    default:
+                        if (value == 0) {
+                            throw Values.divisionByZero();
+                        }
+                        // the only int division that overflows
+                        if (result == Integer.MIN_VALUE && value == -1) {
+                            throw new ArithmeticException();
+                        }
+                        result /= value;
+                        break;
+                }
+            } catch (ArithmeticException e) {
+                throw promote(op, Numbers.apply(op, result, value), ast.next(operand), end);
+            }
+        }
+        return result;
+    }
+
+    private Promotion promote(String op, Number result, int from, int end) {
+        for (int operand = from; operand < end; operand = ast.next(operand)) {
+            result = Numbers.apply(op, result, evaluateNumber(operand, op));
+        }
+        return new Promotion(result);
+    }
+
+    private int evaluateModulo(int node, int operands, int first) {
+        if (operands != 2) {
+            throw Values.argumentCountError("%", 2, operands);
+        }
+
+        int second = ast.next(first);
+        int a;
+        try {
+            a = evaluateInt(first, "%");
+        } catch (Promotion p) {
+            throw new Promotion(Numbers.remainder(p.getValue(), evaluateNumber(second, "%")));
+        }
+        int b;
+        try {
+            b = evaluateInt(second, "%");
+        } catch (Promotion p) {
+            throw new Promotion(Numbers.remainder(a, p.getValue()));
+        }
+        if (b == 0) {
+            throw Values.moduloByZero();
+        }
+        return a % b;
+    }
+
+    // sign of left - right for > and <
+    private int compareOperands(int node, String op) {
+        int first = ast.next(node + 1);
+        int second = ast.next(first);
+        int left;
+        try {
+            left = evaluateInt(first, op);
+        } catch (Promotion p) {
+            return Numbers.compare(p.getValue(), evaluateNumber(second, op));
+        }
+        try {
+            return Integer.compare(left, evaluateInt(second, op));
+        } catch (Promotion p) {
+            return Numbers.compare(left, p.getValue());
+        }
+    }
+
+    // evaluates a subtree without recursion: goes down to a node's first operand, pushing the
+    // list, until a node has a value. then hands the value to the innermost pending list, which
+    // either asks for its next operand or is done and hands its own value on
+    private Object evaluateIteratively(int root) {
+        int depth = 0;
+        int node = root;
+        Object value;
+
+        while (true) {
+            descend:
+            while (true) {
+                switch (ast.kind(node)) {
+                    case FlatAst.INT:
+                    case FlatAst.NUMBER:
+                        value = ast.number(node);
+                        break descend;
+                    case FlatAst.BOOLEAN:
+                        value = ast.booleanValue(node);
+                        break descend;
+                    case FlatAst.SYMBOL:
+                        value = environment.lookup(ast.symbol(node));
+                        break descend;
+                    default:
+                        break;
+                }
+
+                int operands = ast.childCount(node) - 1;
+                if (operands < 0) {
+                    throw Values.emptyListError();
+                }
+                int head = node + 1;
+                if (ast.kind(head) != FlatAst.SYMBOL) {
+                    value = delegate(node);
+                    break descend;
+                }
+
+                String op = ast.symbol(head).getName();
+                int first = ast.next(head);
+                switch (op) {
+                    case "+":
+                    case "*":
+                        if (operands == 0) {
+                            value = op.equals("+") ? 0 : 1;
+                            break descend;
+                        }
+                        break;
+                    case "-":
+                    case "/":
+                        if (operands == 0) {
+                            throw Values.missingArgumentError(op);
+                        }
+                        break;
+                    case "%":
+                    case ">":
+                    case "<":
+                    case "=":
+                        checkArity(node, op, 2);
+                        break;
+                    case "if":
+                        checkArity(node, op, 3);
+                        break;
+                    case "define":
+                        checkArity(node, op, 2);
+                        if (ast.kind(first) != FlatAst.SYMBOL) {
+                            throw Values.defineNameError();
+                        }
+                        // the name is not evaluated
+                        first = ast.next(first);
+                        break;
+                    default:
+                        value = delegate(node);
+                        break descend;
+                }
+
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                if (stack[depth] == null) {
+                    stack[depth] = new Pending();
+                }
+                stack[depth++].start(node, op, ast.next(first), ast.next(node));
+                node = first;
+            }
+
+            // hand the value on until a list needs another operand evaluated
+            while (true) {
+                if (depth == 0) {
+                    return value;
+                }
+                Pending list = stack[depth - 1];
+                String op = list.op;
+                if (op.equals("if")) {
+                    // the branch replaces the if, like EvaluationVisitor going round again
+                    depth--;
+                    int thenBranch = list.next;
+                    node = Values.toCondition(value) ? thenBranch : ast.next(thenBranch);
+                    break;
+                }
+                if (op.equals("define")) {
+                    depth--;
+                    environment.define(ast.symbol(list.node + 2), value);
+                    continue;
+                }
+                list.received++;
+                if (op.equals("=")) {
+                    if (list.received == 1) {
+                        list.result = value;
+                    } else {
+                        depth--;
+                        value = list.result.equals(value);
+                        list.result = null;
+                        continue;
+                    }
+                } else {
+                    // an operand of + - * / % < >, which has to be a number
+                    Number operand = Values.toNumber(value, op);
+                    if (list.result == null) {
+                        list.result = operand;
+                    } else if (op.equals("<") || op.equals(">")) {
+                        int sign = Numbers.compare((Number) list.result, operand);
+                        depth--;
+                        value = op.equals("<") ? sign < 0 : sign > 0;
+                        list.result = null;
+                        continue;
+                    } else {
+                        list.result = Numbers.apply(op, (Number) list.result, operand);
+                    }
+                }
+
+                if (list.next < list.end) {
+                    node = list.next;
+                    list.next = ast.next(node);
+                    break;
+                }
+
+                // every operand of + - * / or % has been received
+                depth--;
+                value = op.equals("-") && list.received == 1 ? Numbers.negate((Number) list.result) : list.result;
+                list.result = null;
+            }
+        }
+    }
+
+    // a list on the stack of evaluateIteratively with the operands it has received so far
+    private static final class Pending {
+
+        private int node;
+        private String op;
+        // the operand to evaluate after the current one, and the end of the list
+        private int next;
+        private int end;
+        private int received;
+        // the result so far of + - * / %, the left operand of < > and =
+        private Object result;
+
+        // next is the operand after the first one
+        void start(int node, String op, int next, int end) {
+            this.node = node;
+            this.op = op;
+            this.next = next;
+            this.end = end;
+            this.received = 0;
+            // + and * start from 0 and 1, the others from their first operand
+            this.result = op.equals("+") ? (Object) 0 : op.equals("*") ? (Object) 1 : null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.micheal.lisp.visitor;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// bounded LRU cache of results of pure subtrees (see PureExpressions), keyed by node identity.
+// only pure subtrees get an entry, the ones found impure are remembered in a separate LRU
+// of the same size, so a define or a call never evicts a result.
+// an entry remembers the GlobalEnvironment version of every distinct symbol it reads and is
+// invalid once one of them changes, so checking it costs one version read per global.
+// belongs to one EvaluationVisitor and so to one session and thread
+
+public class MemoCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, Entry> entries;
+    // subtrees that are not pure, so they are not analyzed again every time
+    private final LinkedHashMap<Key, Boolean> impure;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    public MemoCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > MemoCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.impure = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > MemoCache.this.maxSize;
+            }
+        };
+    }
+
+    // whether results of this node can be cached. the answer is kept too, so a subtree
+    // is only analyzed again after it was evicted
+    public boolean isCacheable(ListNode node) {
+        Key key = new Key(node);
+        if (entries.get(key) != null) {
+            return true;
+        }
+        if (impure.get(key) != null) {
+            return false;
+        }
+        Set<Symbol> symbols = new LinkedHashSet<>();
+        if (!PureExpressions.isPure(node, symbols)) {
+            impure.put(key, Boolean.TRUE);
+            return false;
+        }
+        entries.put(key, new Entry(symbols));
+        return true;
+    }
+
+    // the cached result, or null on a miss or when a symbol it read has been redefined
+    public Object get(ListNode node, GlobalEnvironment environment) {
+        Entry entry = entry(node);
+        if (entry.value == null) {
+            misses++;
+            return null;
+        }
+
+        Symbol[] symbols = entry.symbols;
+        for (int i = 0; i < symbols.length; i++) {
+            if (environment.getVersion(symbols[i]) != entry.versions[i]) {
+                invalidations++;
+                entry.value = null;
+                return null;
+            }
+        }
+        hits++;
+        return entry.value;
+    }
+
+    // a pure subtree can't define anything, so the versions read now are the ones its result depends on
+    public void put(ListNode node, GlobalEnvironment environment, Object value) {
+        Entry entry = entry(node);
+        Symbol[] symbols = entry.symbols;
+        for (int i = 0; i < symbols.length; i++) {
+            entry.versions[i] = environment.getVersion(symbols[i]);
+        }
+        entry.value = value;
+    }
+
+    // the node must be pure
+    private Entry entry(ListNode node) {
+        Key key = new Key(node);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Set<Symbol> symbols = new LinkedHashSet<>();
+            PureExpressions.isPure(node, symbols);
+            entry = new Entry(symbols);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void clear() {
+        entries.clear();
+        impure.clear();
+        hits = 0;
+        misses = 0;
+        invalidations = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public String toString() {
+        long lookups = hits + misses + invalidations;
+        return String.format("memo cache: %d/%d entries, %d hits, %d misses, %d invalidations, %d evictions, hit rate %.1f%%",
+                entries.size(), maxSize, hits, misses, invalidations, evictions,
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+
+    // nodes are compared by identity: the same text parsed twice gives two keys
+    private static final class Key {
+
+        private final Node node;
+
+        Key(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).node == node;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Symbol[] symbols;
+        private final long[] versions;
+        // null until a result is stored or after it was invalidated
+        private Object value;
+
+        // symbols has each symbol once
+        Entry(Set<Symbol> symbols) {
+            this.symbols = symbols.toArray(new Symbol[0]);
+            this.versions = new long[this.symbols.length];
+        }
+    }
+}
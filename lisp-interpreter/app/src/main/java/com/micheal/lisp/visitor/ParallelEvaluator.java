@@ -0,0 +1,370 @@
+package com.micheal.lisp.visitor;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Promotion;
+import com.micheal.lisp.runtime.Values;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// evaluates large pure expressions (see PureExpressions) on a ForkJoinPool. the cost of a
+// subtree is its node count: operand lists are split into tasks while a range of operands
+// costs more than twice the threshold, and subtrees below the threshold run on a plain
+// EvaluationVisitor after a purity check.
+// errors are deterministic: every operand's value or error is kept in its slot and the
+// operator consumes them left to right exactly like EvaluationVisitor, so the leftmost
+// error wins. as soon as a task meets a define, lambda or procedure call the parallel run
+// is abandoned and the whole expression is evaluated again sequentially. nothing that ran
+// before that point had a side effect
+
+public class ParallelEvaluator {
+
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    // thrown through the tasks once the expression turned out not to be pure
+    private static final RuntimeException FALLBACK = new RuntimeException("not pure", null, false, false) {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final GlobalEnvironment environment;
+    private final EvaluationVisitor sequential;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelEvaluator(GlobalEnvironment environment) {
+        this(environment, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public ParallelEvaluator(GlobalEnvironment environment, ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.environment = environment;
+        this.sequential = new EvaluationVisitor(environment);
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    // like EvaluationVisitor, one evaluator belongs to one session and is called from one thread
+    public Object evaluate(Node node) {
+        // an atom always runs here, whatever the threshold
+        if (!(node instanceof ListNode) || cost(node) < threshold
+                || !isPureOperator(((ListNode) node).getElements())) {
+            return node.accept(sequential);
+        }
+
+        Run run = new Run();
+        RootTask root = new RootTask(run, node);
+        pool.invoke(root);
+        if (run.impure) {
+            return node.accept(sequential);
+        }
+        if (root.error != null) {
+            throw root.error;
+        }
+        return root.result;
+    }
+
+    private static int cost(Node node) {
+        return node instanceof ListNode ? ((ListNode) node).getSize() : 1;
+    }
+
+    private static boolean isPureOperator(List<Node> elements) {
+        if (elements.isEmpty() || !(elements.get(0) instanceof SymbolNode)) {
+            return false;
+        }
+        switch (((SymbolNode) elements.get(0)).getName()) {
+            case "+":
+            case "-":
+            case "*":
+            case "/":
+            case "%":
+            case ">":
+            case "<":
+            case "=":
+            case "if":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void checkArity(List<Node> elements, String op, int expected) {
+        if (elements.size() != expected + 1) {
+            throw Values.argumentCountError(op, expected, elements.size() - 1);
+        }
+    }
+
+    // state of one parallel evaluation, shared by all its tasks
+    private final class Run {
+
+        private volatile boolean impure;
+
+        // local evaluates the small subtrees, each task has its own
+        private Object evaluate(Node node, EvaluationVisitor local) {
+            if (isSmall(node)) {
+                return node.accept(local);
+            }
+
+            List<Node> elements = ((ListNode) node).getElements();
+            if (!isPureOperator(elements)) {
+                throw fallback();
+            }
+            switch (((SymbolNode) elements.get(0)).getName()) {
+                case "+":
+                    return evaluateOperands(elements, "+").fold("+", 0, 1);
+                case "*":
+                    return evaluateOperands(elements, "*").fold("*", 1, 1);
+                case "-": {
+                    if (elements.size() == 1) {
+                        throw Values.missingArgumentError("-");
+                    }
+                    Operands operands = evaluateOperands(elements, "-");
+                    if (elements.size() == 2) {
+                        return Numbers.negate(operands.numberAt(1));
+                    }
+                    return operands.fold("-", operands.numberAt(1), 2);
+                }
+                case "/": {
+                    if (elements.size() == 1) {
+                        throw Values.missingArgumentError("/");
+                    }
+                    Operands operands = evaluateOperands(elements, "/");
+                    return operands.fold("/", operands.numberAt(1), 2);
+                }
+                case "%": {
+                    checkArity(elements, "%", 2);
+                    Operands operands = evaluateOperands(elements, "%");
+                    return Numbers.remainder(operands.numberAt(1), operands.numberAt(2));
+                }
+                case ">": {
+                    checkArity(elements, ">", 2);
+                    Operands operands = evaluateOperands(elements, ">");
+                    return Numbers.compare(operands.numberAt(1), operands.numberAt(2)) > 0;
+                }
+                case "<": {
+                    checkArity(elements, "<", 2);
+                    Operands operands = evaluateOperands(elements, "<");
+                    return Numbers.compare(operands.numberAt(1), operands.numberAt(2)) < 0;
+                }
+                case "=": {
+                    checkArity(elements, "=", 2);
+                    Operands operands = evaluateOperands(elements, null);
+                    return operands.valueAt(1).equals(operands.valueAt(2));
+                }
+                default: {
+                    checkArity(elements, "if", 3);
+                    boolean condition = Values.toCondition(evaluate(elements.get(1), local));
+                    return evaluate(elements.get(condition ? 2 : 3), local);
+                }
+            }
+        }
+
+        // like evaluate, but type checks the result the way EvaluationVisitor checks an operand.
+        // a Long or BigInteger comes out as a Promotion
+        private int evaluateInt(Node node, String op, EvaluationVisitor local) {
+            if (isSmall(node)) {
+                return local.evaluateInt(node, op);
+            }
+            return Values.toInt(evaluate(node, local), op);
+        }
+
+        // true for an atom or a subtree below the threshold, after checking that it is pure
+        private boolean isSmall(Node node) {
+            if (impure) {
+                throw FALLBACK;
+            }
+            if (node instanceof ListNode && cost(node) >= threshold) {
+                return false;
+            }
+            if (!PureExpressions.isPure(node)) {
+                throw fallback();
+            }
+            return true;
+        }
+
+        private RuntimeException fallback() {
+            impure = true;
+            return FALLBACK;
+        }
+
+        // intOp is the operator whose operands have to be ints, null when any value is fine
+        private Operands evaluateOperands(List<Node> elements, String intOp) {
+            Operands operands = new Operands(elements, intOp);
+            new OperandsTask(this, elements, operands, 1, elements.size()).compute();
+            if (impure) {
+                throw FALLBACK;
+            }
+            return operands;
+        }
+    }
+
+    // slot i holds the value of operand i or the error it raised, slot 0 is unused.
+    // for an arithmetic operator an int goes into ints and a bigger number into values
+    private static final class Operands {
+
+        private final String intOp;
+        private final int[] ints;
+        private final Object[] values;
+        private final RuntimeException[] errors;
+        // costs[i] is the total cost of the operands before i, so a range costs costs[to] - costs[from]
+        private final long[] costs;
+
+        Operands(List<Node> elements, String intOp) {
+            int size = elements.size();
+            this.intOp = intOp;
+            this.ints = intOp != null ? new int[size] : null;
+            this.values = new Object[size];
+            this.errors = new RuntimeException[size];
+            this.costs = new long[size + 1];
+            for (int i = 1; i < size; i++) {
+                costs[i + 1] = costs[i] + cost(elements.get(i));
+            }
+        }
+
+        Number numberAt(int index) {
+            if (errors[index] != null) {
+                throw errors[index];
+            }
+            return values[index] != null ? (Number) values[index] : Integer.valueOf(ints[index]);
+        }
+
+        // applies op (+, -, * or /) to result and the operands from index from on, left to
+        // right. stays on ints until an operand is bigger or a step overflows
+        Number fold(String op, Number result, int from) {
+            int i = from;
+            if (result instanceof Integer) {
+                char operator = op.charAt(0);
+                long value = (Integer) result;
+                for (; i < ints.length && errors[i] == null && values[i] == null; i++) {
+                    int operand = ints[i];
+                    long next;
+                    if (operator == '+') {
+                        next = value + operand;
+                    } else if (operator == '-') {
+                        next = value - operand;
+                    } else if (operator == '*') {
+                        next = value * operand;
+                    } else if (operand != 0) {
+                        next = value / operand;
+                    } else {
+                        break;
+                    }
+                    if ((int) next != next) {
+                        break;
+                    }
+                    value = next;
+                }
+                result = (int) value;
+            }
+            for (; i < ints.length; i++) {
+                result = Numbers.apply(op, result, numberAt(i));
+            }
+            return result;
+        }
+
+        Object valueAt(int index) {
+            if (errors[index] != null) {
+                throw errors[index];
+            }
+            return values[index];
+        }
+    }
+
+    // evaluates operands [from, to) into their slots, halving the range while both halves are worth a task
+    private final class OperandsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Run run;
+        private final transient List<Node> elements;
+        private final transient Operands operands;
+        private final int from;
+        private final int to;
+
+        OperandsTask(Run run, List<Node> elements, Operands operands, int from, int to) {
+            this.run = run;
+            this.elements = elements;
+            this.operands = operands;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            long[] costs = operands.costs;
+            if (to - from > 1 && costs[to] - costs[from] >= 2L * threshold) {
+                int middle = middle(costs);
+                invokeAll(new OperandsTask(run, elements, operands, from, middle),
+                        new OperandsTask(run, elements, operands, middle, to));
+                return;
+            }
+
+            EvaluationVisitor local = new EvaluationVisitor(environment);
+            String intOp = operands.intOp;
+            for (int i = from; i < to; i++) {
+                try {
+                    if (intOp != null) {
+                        operands.ints[i] = run.evaluateInt(elements.get(i), intOp, local);
+                    } else {
+                        operands.values[i] = run.evaluate(elements.get(i), local);
+                    }
+                } catch (Promotion p) {
+                    operands.values[i] = p.getValue();
+                } catch (RuntimeException e) {
+                    if (e == FALLBACK) {
+                        return;
+                    }
+                    operands.errors[i] = e;
+                }
+            }
+        }
+
+        // the split point that divides the cost of the range most evenly, both halves non-empty
+        private int middle(long[] costs) {
+            long half = (costs[from] + costs[to]) / 2;
+            int low = from + 1;
+            int high = to - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (costs[mid] < half) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final class RootTask extends RecursiveTask<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Run run;
+        private final transient Node node;
+        private transient Object result;
+        private transient RuntimeException error;
+
+        RootTask(Run run, Node node) {
+            this.run = run;
+            this.node = node;
+        }
+
+        @Override
+        protected Object compute() {
+            try {
+                result = run.evaluate(node, new EvaluationVisitor(environment));
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.micheal.lisp.visitor;
+
+import com.micheal.lisp.ast.BooleanNode;
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.NumberNode;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.environment.Symbol;
+
+import java.util.Collection;
+import java.util.List;
+
+// a subtree is pure when it only uses the builtin arithmetic, comparisons and if on numbers
+// and global symbols: no define, lambda or procedure call. evaluating it can't change
+// anything, so its result can be cached or its operands evaluated in any order
+
+final class PureExpressions {
+
+    private PureExpressions() {
+    }
+
+    static boolean isPure(Node node) {
+        return isPure(node, null);
+    }
+
+    // also adds the symbols the node reads to symbols when it is not null
+    static boolean isPure(Node node, Collection<Symbol> symbols) {
+        if (node instanceof NumberNode || node instanceof BooleanNode) {
+            return true;
+        }
+        if (node instanceof SymbolNode) {
+            if (symbols != null) {
+                symbols.add(((SymbolNode) node).getSymbol());
+            }
+            return true;
+        }
+
+        List<Node> elements = ((ListNode) node).getElements();
+        if (elements.isEmpty() || !(elements.get(0) instanceof SymbolNode)) {
+            return false;
+        }
+        switch (((SymbolNode) elements.get(0)).getName()) {
+            case "+":
+            case "-":
+            case "*":
+            case "/":
+            case "%":
+            case ">":
+            case "<":
+            case "=":
+            case "if":
+                break;
+            default:
+                return false;
+        }
+        for (int i = 1; i < elements.size(); i++) {
+            if (!isPure(elements.get(i), symbols)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -9,4 +9,6 @@ public interface Visitor {
     Object visit(SymbolNode node);
 
     Object visit(ListNode node);
+
+    Object visit(BooleanNode node);
 }
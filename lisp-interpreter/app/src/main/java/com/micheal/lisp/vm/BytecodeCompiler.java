@@ -0,0 +1,255 @@
+package com.micheal.lisp.vm;
+
+import com.micheal.lisp.ast.*;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.runtime.Values;
+import com.micheal.lisp.visitor.Visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// compiles a Node tree into a Chunk for the VirtualMachine.
+// every operand is type checked right after it is evaluated (not when the operator runs)
+// so errors come out in the same order as in EvaluationVisitor
+
+public class BytecodeCompiler implements Visitor {
+
+    private int[] code;
+    private int size;
+    private List<Object> constants;
+    private Map<Object, Integer> constantIndexes;
+    private int depth;
+    private int maxDepth;
+
+    public Chunk compile(Node node) {
+        code = new int[16];
+        size = 0;
+        constants = new ArrayList<>();
+        constantIndexes = new HashMap<>();
+        depth = 0;
+        maxDepth = 0;
+
+        node.accept(this);
+        emit(Opcode.RETURN);
+        return new Chunk(Arrays.copyOf(code, size), constants.toArray(), maxDepth);
+    }
+
+    @Override
+    public Object visit(NumberNode node) {
+        Number value = node.getValue();
+        if (value instanceof Integer) {
+            emit(Opcode.PUSH_INT, (Integer) value);
+        } else {
+            emit(Opcode.PUSH_CONST, constant(value));
+        }
+        push();
+        return null;
+    }
+
+    @Override
+    public Object visit(BooleanNode node) {
+        emit(Opcode.PUSH_CONST, constant(node.getValue()));
+        push();
+        return null;
+    }
+
+    @Override
+    public Object visit(SymbolNode node) {
+        emit(Opcode.LOAD_GLOBAL, constant(node.getSymbol()));
+        push();
+        return null;
+    }
+
+    @Override
+    public Object visit(ListNode node) {
+        List<Node> elements = node.getElements();
+
+        if (elements.isEmpty()) {
+            return fail(Values.emptyListError());
+        }
+
+        Node first = elements.get(0);
+        if (!(first instanceof SymbolNode)) {
+            return evaluateNode(node);
+        }
+
+        String op = ((SymbolNode) first).getName();
+
+        switch (op) {
+            case "+":
+                return compileFold(elements, 0, Opcode.ADD);
+            case "*":
+                return compileFold(elements, 1, Opcode.MUL);
+            case "-":
+                return compileSubtraction(elements);
+            case "/":
+                return compileDivision(elements);
+            case "%":
+                return compileBinary(elements, "%", Opcode.MOD);
+            case ">":
+                return compileBinary(elements, ">", Opcode.GT);
+            case "<":
+                return compileBinary(elements, "<", Opcode.LT);
+            case "=":
+                return compileEquals(elements);
+            case "define":
+                return compileDefine(elements);
+            case "if":
+                return compileIf(elements);
+            default:
+                return evaluateNode(node);
+        }
+    }
+
+    // (+ a b c) becomes PUSH_INT 0, a, ADD, b, ADD, c, ADD
+    private Object compileFold(List<Node> elements, int identity, int opcode) {
+        emit(Opcode.PUSH_INT, identity);
+        push();
+        for (int i = 1; i < elements.size(); i++) {
+            elements.get(i).accept(this);
+            emit(opcode);
+            pop();
+        }
+        return null;
+    }
+
+    private Object compileSubtraction(List<Node> elements) {
+        if (elements.size() == 1) {
+            return fail(Values.missingArgumentError("-"));
+        }
+
+        elements.get(1).accept(this);
+
+        // handle unary minus
+        if (elements.size() == 2) {
+            emit(Opcode.NEG);
+            return null;
+        }
+
+        emit(Opcode.CHECK_INT, Opcode.SUB);
+        for (int i = 2; i < elements.size(); i++) {
+            elements.get(i).accept(this);
+            emit(Opcode.SUB);
+            pop();
+        }
+        return null;
+    }
+
+    private Object compileDivision(List<Node> elements) {
+        if (elements.size() == 1) {
+            return fail(Values.missingArgumentError("/"));
+        }
+
+        elements.get(1).accept(this);
+        emit(Opcode.CHECK_INT, Opcode.DIV);
+        for (int i = 2; i < elements.size(); i++) {
+            elements.get(i).accept(this);
+            emit(Opcode.DIV);
+            pop();
+        }
+        return null;
+    }
+
+    private Object compileBinary(List<Node> elements, String op, int opcode) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError(op, 2, elements.size() - 1));
+        }
+
+        elements.get(1).accept(this);
+        emit(Opcode.CHECK_INT, opcode);
+        elements.get(2).accept(this);
+        emit(opcode);
+        pop();
+        return null;
+    }
+
+    private Object compileEquals(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError("=", 2, elements.size() - 1));
+        }
+
+        elements.get(1).accept(this);
+        elements.get(2).accept(this);
+        emit(Opcode.EQ);
+        pop();
+        return null;
+    }
+
+    private Object compileDefine(List<Node> elements) {
+        if (elements.size() != 3) {
+            return fail(Values.argumentCountError("define", 2, elements.size() - 1));
+        }
+
+        Node nameNode = elements.get(1);
+        if (!(nameNode instanceof SymbolNode)) {
+            return fail(Values.defineNameError());
+        }
+
+        elements.get(2).accept(this);
+        emit(Opcode.DEFINE, constant(((SymbolNode) nameNode).getSymbol()));
+        return null;
+    }
+
+    private Object compileIf(List<Node> elements) {
+        if (elements.size() != 4) {
+            return fail(Values.argumentCountError("if", 3, elements.size() - 1));
+        }
+
+        elements.get(1).accept(this);
+        emit(Opcode.JUMP_IF_FALSE, 0);
+        pop();
+        int elseJump = size - 1;
+
+        elements.get(2).accept(this);
+        emit(Opcode.JUMP, 0);
+        int endJump = size - 1;
+        pop();
+
+        code[elseJump] = size;
+        elements.get(3).accept(this);
+        code[endJump] = size;
+        return null;
+    }
+
+    // lambdas and procedure calls have no instructions of their own, the VM hands
+    // them to the tree walking evaluator, which also owns the closures they create
+    private Object evaluateNode(ListNode node) {
+        emit(Opcode.EVAL_NODE, constant(node));
+        push();
+        return null;
+    }
+
+    private Object fail(LispException error) {
+        emit(Opcode.FAIL, constant(error.getMessage()));
+        push();
+        return null;
+    }
+
+    private int constant(Object value) {
+        return constantIndexes.computeIfAbsent(value, v -> {
+            constants.add(v);
+            return constants.size() - 1;
+        });
+    }
+
+    private void emit(int... words) {
+        if (size + words.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+        }
+        for (int word : words) {
+            code[size++] = word;
+        }
+    }
+
+    private void push() {
+        depth++;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void pop() {
+        depth--;
+    }
+}
@@ -0,0 +1,28 @@
+package com.micheal.lisp.vm;
+
+// a compiled program: the instruction stream, its constant pool and the operand stack depth it needs
+
+public class Chunk {
+
+    private final int[] code;
+    private final Object[] constants;
+    private final int maxStack;
+
+    public Chunk(int[] code, Object[] constants, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.maxStack = maxStack;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+}
@@ -0,0 +1,52 @@
+package com.micheal.lisp.vm;
+
+// instruction set of the bytecode VM, each opcode is followed by the number of int operands listed next to it
+
+public final class Opcode {
+
+    public static final int PUSH_INT = 0;       // value
+    public static final int PUSH_CONST = 1;     // constant index
+    public static final int LOAD_GLOBAL = 2;    // constant index of the Symbol
+    public static final int DEFINE = 3;         // constant index of the Symbol
+    public static final int CHECK_INT = 4;      // opcode whose operator name is used in the error message, unboxes an Integer
+    public static final int ADD = 5;
+    public static final int SUB = 6;
+    public static final int MUL = 7;
+    public static final int DIV = 8;
+    public static final int MOD = 9;
+    public static final int NEG = 10;
+    public static final int GT = 11;
+    public static final int LT = 12;
+    public static final int EQ = 13;
+    public static final int JUMP = 14;          // target
+    public static final int JUMP_IF_FALSE = 15; // target
+    public static final int FAIL = 16;          // constant index of the error message
+    public static final int RETURN = 17;
+    public static final int EVAL_NODE = 18;     // constant index of a Node for the tree walking evaluator
+
+    private Opcode() {
+    }
+
+    // operator name reported by toNumber when an operand of this instruction is not an integer
+    public static String operatorName(int opcode) {
+        switch (opcode) {
+            case ADD:
+                return "+";
+            case SUB:
+            case NEG:
+                return "-";
+            case MUL:
+                return "*";
+            case DIV:
+                return "/";
+            case MOD:
+                return "%";
+            case GT:
+                return ">";
+            case LT:
+                return "<";
+            default:
+                throw new IllegalArgumentException("Opcode has no operator name: " + opcode);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.micheal.lisp.vm;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.runtime.Numbers;
+import com.micheal.lisp.runtime.Values;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+
+// runs a Chunk on an operand stack.
+// the stack is split into an int[] and an Object[]: a null reference means the slot
+// holds a raw int, so intermediate arithmetic results are never boxed. a Long or
+// BigInteger result of the numeric tower is kept in the Object[] slot
+
+public class VirtualMachine {
+
+    private final GlobalEnvironment environment;
+    // created on the first EVAL_NODE
+    private EvaluationVisitor evaluator;
+
+    public VirtualMachine() {
+        this(new GlobalEnvironment());
+    }
+
+    public VirtualMachine(GlobalEnvironment environment) {
+        this.environment = environment;
+    }
+
+    public Object run(Chunk chunk) {
+        int[] code = chunk.getCode();
+        Object[] constants = chunk.getConstants();
+        int[] ints = new int[chunk.getMaxStack()];
+        Object[] refs = new Object[chunk.getMaxStack()];
+        int sp = -1;
+        int pc = 0;
+
+        while (true) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case Opcode.PUSH_INT:
+                    sp++;
+                    ints[sp] = code[pc++];
+                    refs[sp] = null;
+                    break;
+                case Opcode.PUSH_CONST:
+                    refs[++sp] = constants[code[pc++]];
+                    break;
+                case Opcode.LOAD_GLOBAL:
+                    refs[++sp] = environment.lookup((Symbol) constants[code[pc++]]);
+                    break;
+                case Opcode.DEFINE: {
+                    Object value = box(ints, refs, sp);
+                    environment.define((Symbol) constants[code[pc++]], value);
+                    refs[sp] = value;
+                    break;
+                }
+                case Opcode.CHECK_INT:
+                    checkNumber(ints, refs, sp, code[pc++]);
+                    break;
+                case Opcode.ADD:
+                    sp--;
+                    if (refs[sp] == null && refs[sp + 1] == null) {
+                        try {
+                            ints[sp] = Math.addExact(ints[sp], ints[sp + 1]);
+                            break;
+                        } catch (ArithmeticException e) {
+                            // overflowed, the general path below promotes it
+                        }
+                    }
+                    arithmetic(opcode, ints, refs, sp);
+                    break;
+                case Opcode.SUB:
+                    sp--;
+                    if (refs[sp] == null && refs[sp + 1] == null) {
+                        try {
+                            ints[sp] = Math.subtractExact(ints[sp], ints[sp + 1]);
+                            break;
+                        } catch (ArithmeticException e) {
+                            // overflowed, the general path below promotes it
+                        }
+                    }
+                    arithmetic(opcode, ints, refs, sp);
+                    break;
+                case Opcode.MUL:
+                    sp--;
+                    if (refs[sp] == null && refs[sp + 1] == null) {
+                        try {
+                            ints[sp] = Math.multiplyExact(ints[sp], ints[sp + 1]);
+                            break;
+                        } catch (ArithmeticException e) {
+                            // overflowed, the general path below promotes it
+                        }
+                    }
+                    arithmetic(opcode, ints, refs, sp);
+                    break;
+                case Opcode.DIV:
+                    sp--;
+                    // MIN_VALUE / -1 is the only int division that overflows
+                    if (refs[sp] == null && refs[sp + 1] == null
+                            && (ints[sp] != Integer.MIN_VALUE || ints[sp + 1] != -1)) {
+                        if (ints[sp + 1] == 0) {
+                            throw Values.divisionByZero();
+                        }
+                        ints[sp] /= ints[sp + 1];
+                        break;
+                    }
+                    arithmetic(opcode, ints, refs, sp);
+                    break;
+                case Opcode.MOD:
+                    sp--;
+                    if (refs[sp] == null && refs[sp + 1] == null) {
+                        if (ints[sp + 1] == 0) {
+                            throw Values.moduloByZero();
+                        }
+                        ints[sp] %= ints[sp + 1];
+                        break;
+                    }
+                    arithmetic(opcode, ints, refs, sp);
+                    break;
+                case Opcode.NEG:
+                    if (refs[sp] == null && ints[sp] != Integer.MIN_VALUE) {
+                        ints[sp] = -ints[sp];
+                        break;
+                    }
+                    store(ints, refs, sp, Numbers.negate(numberAt(ints, refs, sp, opcode)));
+                    break;
+                case Opcode.GT:
+                    sp--;
+                    refs[sp] = compare(ints, refs, sp, opcode) > 0;
+                    break;
+                case Opcode.LT:
+                    sp--;
+                    refs[sp] = compare(ints, refs, sp, opcode) < 0;
+                    break;
+                case Opcode.EQ: {
+                    boolean equal;
+                    if (refs[sp] == null && refs[sp - 1] == null) {
+                        equal = ints[sp - 1] == ints[sp];
+                    } else {
+                        equal = box(ints, refs, sp - 1).equals(box(ints, refs, sp));
+                    }
+                    refs[--sp] = equal;
+                    break;
+                }
+                case Opcode.JUMP:
+                    pc = code[pc];
+                    break;
+                case Opcode.JUMP_IF_FALSE:
+                    if (Values.toCondition(box(ints, refs, sp--))) {
+                        pc++;
+                    } else {
+                        pc = code[pc];
+                    }
+                    break;
+                case Opcode.FAIL:
+                    throw new LispException((String) constants[code[pc]]);
+                case Opcode.EVAL_NODE:
+                    refs[++sp] = ((Node) constants[code[pc++]]).accept(evaluator());
+                    break;
+                case Opcode.RETURN:
+                    return box(ints, refs, sp);
+                default:
+                    throw new IllegalStateException("Unknown opcode " + opcode + " at " + (pc - 1));
+            }
+        }
+    }
+
+    private EvaluationVisitor evaluator() {
+        if (evaluator == null) {
+            evaluator = new EvaluationVisitor(environment);
+        }
+        return evaluator;
+    }
+
+    // leaves an int unboxed in its slot and any other number as it is
+    private static void checkNumber(int[] ints, Object[] refs, int index, int opcode) {
+        Object ref = refs[index];
+        if (ref instanceof Integer) {
+            ints[index] = (Integer) ref;
+            refs[index] = null;
+        } else if (ref != null) {
+            Values.toNumber(ref, Opcode.operatorName(opcode));
+        }
+    }
+
+    private static Number numberAt(int[] ints, Object[] refs, int index, int opcode) {
+        Object ref = refs[index];
+        if (ref == null) {
+            return ints[index];
+        }
+        return Values.toNumber(ref, Opcode.operatorName(opcode));
+    }
+
+    // the general path of a binary operator on slots index and index + 1, for operands that
+    // are not both raw ints or an int result that would overflow. the right operand is
+    // checked first, the left one already was
+    private static void arithmetic(int opcode, int[] ints, Object[] refs, int index) {
+        Number right = numberAt(ints, refs, index + 1, opcode);
+        Number left = numberAt(ints, refs, index, opcode);
+        store(ints, refs, index, Numbers.apply(Opcode.operatorName(opcode), left, right));
+    }
+
+    private static int compare(int[] ints, Object[] refs, int index, int opcode) {
+        if (refs[index] == null && refs[index + 1] == null) {
+            return Integer.compare(ints[index], ints[index + 1]);
+        }
+        Number right = numberAt(ints, refs, index + 1, opcode);
+        return Numbers.compare(numberAt(ints, refs, index, opcode), right);
+    }
+
+    private static void store(int[] ints, Object[] refs, int index, Number value) {
+        if (value instanceof Integer) {
+            ints[index] = (Integer) value;
+            refs[index] = null;
+        } else {
+            refs[index] = value;
+        }
+    }
+
+    private static Object box(int[] ints, Object[] refs, int index) {
+        Object ref = refs[index];
+        return ref != null ? ref : Integer.valueOf(ints[index]);
+    }
+}
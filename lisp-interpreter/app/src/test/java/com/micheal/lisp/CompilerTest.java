@@ -0,0 +1,152 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.compiler.CompiledNode;
+import com.micheal.lisp.compiler.Compiler;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CompilerTest {
+
+    private LispParser parser;
+    private Compiler compiler;
+    private EvaluationVisitor evaluator;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        GlobalEnvironment environment = new GlobalEnvironment();
+        compiler = new Compiler(environment);
+        evaluator = new EvaluationVisitor(environment);
+    }
+
+    @Test
+    public void testMatchesEvaluatorOnCorpus() {
+        for (Object[] row : EvaluatorParameterizedTest.testData()) {
+            String expression = (String) row[0];
+            CompiledNode compiled = compiler.compile(parser.parse(expression));
+            assertEquals("Expression: " + expression, row[1], compiled.execute());
+        }
+    }
+
+    @Test
+    public void testCompiledNodeCanRunRepeatedly() {
+        CompiledNode compiled = compiler.compile(parser.parse("(+ 1 (* 2 3))"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(7, compiled.execute());
+        }
+    }
+
+    @Test
+    public void testDefineAndLookup() {
+        compiler.compile(parser.parse("(define z 6)")).execute();
+        CompiledNode compiled = compiler.compile(parser.parse("(if (> z 5) (* z 2) 0)"));
+        assertEquals(12, compiled.execute());
+    }
+
+    @Test
+    public void testCachedGlobalsSeeNewDefinitions() {
+        CompiledNode compiled = compiler.compile(parser.parse("(+ cached 1)"));
+        CompiledNode call = compiler.compile(parser.parse("(cached-f 2)"));
+        try {
+            compiled.execute();
+            fail("Expected LispException");
+        } catch (LispException e) {
+            assertEquals("Undefined symbol: 'cached'", e.getMessage());
+        }
+
+        compiler.compile(parser.parse("(define cached 1)")).execute();
+        compiler.compile(parser.parse("(define cached-f (lambda (x) (* x 10)))")).execute();
+        assertEquals(2, compiled.execute());
+        assertEquals(2, compiled.execute());
+        assertEquals(20, call.execute());
+
+        // any define changes the version, including one in a different compiled tree
+        evaluator.evaluate(parser.parse("(define cached 41)"));
+        evaluator.evaluate(parser.parse("(define cached-f (lambda (x) (* x 100)))"));
+        assertEquals(42, compiled.execute());
+        assertEquals(200, call.execute());
+    }
+
+    @Test
+    public void testErrorsMatchEvaluator() {
+        String[] expressions = {
+                "()", "(1 2)", "(foo 1)", "(% 1)", "(/ 1 0)", "(% 1 0)", "(-)",
+                "(define 1 2)", "(if 1 2 3)", "(+ 1 (> 2 1))", "undefined-symbol"
+        };
+        for (String expression : expressions) {
+            assertEquals("Expression: " + expression,
+                    errorOf(() -> parser.parse(expression).accept(evaluator)),
+                    errorOf(() -> compiler.compile(parser.parse(expression)).execute()));
+        }
+    }
+
+    @Test
+    public void testArityErrorIsRaisedWhenNodeRuns() {
+        CompiledNode compiled = compiler.compile(parser.parse("(+ (define w 1) (% 1))"));
+        try {
+            compiled.execute();
+            fail("Expected LispException");
+        } catch (LispException e) {
+            assertEquals(1, parser.parse("w").accept(evaluator));
+        }
+    }
+
+    @Test
+    public void testSpecializedNodesFallBackWhenTypesChange() {
+        GlobalEnvironment environment = new GlobalEnvironment();
+        Compiler specializing = new Compiler(environment, true);
+        EvaluationVisitor reference = new EvaluationVisitor(new GlobalEnvironment());
+        String[] definitions = {
+                "(define add (lambda (a b) (+ a b)))",
+                "(define less (lambda (a b) (< a b)))",
+                "(define same (lambda (a b) (= a b)))",
+                "(define pick (lambda (c a b) (* 1 (if c a b))))"
+        };
+        for (String definition : definitions) {
+            specializing.compile(parser.parse(definition)).execute();
+            parser.parse(definition).accept(reference);
+        }
+
+        // each call site first sees ints or booleans, then something else, then the first kind again
+        String[] calls = {
+                "(add 1 2)", "(add 2147483647 1)", "(add 1 2)", "(add 1 (> 2 1))", "(add -4 2)",
+                "(less 1 2)", "(less 3 9999999999)", "(less 2 1)", "(less (= 1 1) 2)",
+                "(same 1 1)", "(same 1 (> 2 1))", "(same 4294967296 4294967296)", "(same 2 3)",
+                "(same (> 2 1) (< 2 1))", "(same (> 2 1) (> 3 1))", "(same (> 2 1) 1)",
+                "(pick (> 2 1) 5 6)", "(pick (< 2 1) 5 9999999999)", "(pick 1 5 6)", "(pick (> 2 1) 5 (> 2 1))",
+                "(pick (> 2 1) (> 2 1) 5)"
+        };
+        for (String call : calls) {
+            assertEquals("Expression: " + call,
+                    outcomeOf(() -> parser.parse(call).accept(reference)),
+                    outcomeOf(() -> specializing.compile(parser.parse(call)).execute()));
+        }
+    }
+
+    // the result, or the message of the error
+    private static Object outcomeOf(Supplier<Object> action) {
+        try {
+            return action.get();
+        } catch (LispException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static String errorOf(Runnable action) {
+        try {
+            action.run();
+        } catch (LispException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.BooleanNode;
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.NumberNode;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.ConstantFoldingVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ConstantFoldingVisitorTest {
+
+    private LispParser parser;
+    private ConstantFoldingVisitor folder;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        folder = new ConstantFoldingVisitor();
+    }
+
+    @Test
+    public void testFoldsConstantArithmetic() {
+        assertEquals("7", fold("(+ 1 (* 2 3))"));
+        assertEquals("-5", fold("(- 5)"));
+        assertEquals("10", fold("(/ 100 5 2)"));
+        assertEquals("1", fold("(% 7 3)"));
+        assertEquals("1", fold("(*)"));
+        assertEquals("4294967296", fold("(* 65536 65536)"));
+        assertEquals("(* 4294967296 x)", fold("(* x 65536 65536)"));
+        assertEquals("#t", fold("(> 100000000000000000000 9223372036854775807)"));
+    }
+
+    @Test
+    public void testFoldsComparisons() {
+        assertEquals("#t", fold("(> 3 2)"));
+        assertEquals("#f", fold("(< 3 2)"));
+        assertEquals("#t", fold("(= (> 1 2) (< 2 1))"));
+        assertEquals("(= x 1)", fold("(= x 1)"));
+    }
+
+    @Test
+    public void testCombinesConstantOperands() {
+        assertEquals("(+ 10 x)", fold("(+ x (* 2 3) 4)"));
+        assertEquals("(* 0 x y)", fold("(* x 2 y (/ 1 2))"));
+        assertEquals("(+ x y)", fold("(+ x 2 y -2)"));
+        assertEquals("(+ x 1)", fold("(+ x 1)"));
+    }
+
+    @Test
+    public void testCollapsesIfWithKnownCondition() {
+        assertEquals("x", fold("(if (> 2 1) x (/ 1 0))"));
+        assertEquals("3", fold("(if (= 1 2) x (+ 1 2))"));
+        assertEquals("(if c 3 x)", fold("(if c (+ 1 2) x)"));
+    }
+
+    @Test
+    public void testLeavesFailingExpressionsInPlace() {
+        assertEquals("(/ 3 0)", fold("(/ (+ 1 2) 0)"));
+        assertEquals("(% 1 0)", fold("(% 1 0)"));
+        assertEquals("(% 1 2 3)", fold("(% 1 2 3)"));
+        assertEquals("(+ #t 1)", fold("(+ (> 2 1) 1)"));
+        assertEquals("(-)", fold("(-)"));
+    }
+
+    @Test
+    public void testFoldsDefinedValue() {
+        assertEquals("(define x 6)", fold("(define x (* 2 3))"));
+    }
+
+    @Test
+    public void testFoldsInsideProcedures() {
+        assertEquals("(lambda (x) (+ 3 x))", fold("(lambda (x) (+ x 1 2))"));
+        assertEquals("(f 6 (g x))", fold("(f (* 2 3) (g x))"));
+        assertEquals("((if (> 2 1) f g) 1)", fold("((if (> 2 1) f g) 1)"));
+    }
+
+    @Test
+    public void testUnchangedTreeIsReturnedAsIs() {
+        Node node = parser.parse("(if (> x 1) (+ x y) (define z 1))");
+        assertSame(node, folder.fold(node));
+    }
+
+    private String fold(String source) {
+        return render(folder.fold(parser.parse(source)));
+    }
+
+    private static String render(Node node) {
+        if (node instanceof NumberNode) {
+            return String.valueOf(((NumberNode) node).getValue());
+        }
+        if (node instanceof BooleanNode) {
+            return ((BooleanNode) node).getValue() ? "#t" : "#f";
+        }
+        if (node instanceof SymbolNode) {
+            return ((SymbolNode) node).getName();
+        }
+        StringBuilder builder = new StringBuilder("(");
+        for (Node element : ((ListNode) node).getElements()) {
+            if (builder.length() > 1) {
+                builder.append(' ');
+            }
+            builder.append(render(element));
+        }
+        return builder.append(')').toString();
+    }
+}
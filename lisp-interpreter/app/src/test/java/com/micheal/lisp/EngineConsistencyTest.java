@@ -0,0 +1,189 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.engine.OptimizingEngine;
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+
+// every engine must agree with the tree walking evaluator on results and error messages
+
+@RunWith(Parameterized.class)
+public class EngineConsistencyTest {
+
+    static final String[] ERROR_EXPRESSIONS = {
+            "()", "(1 2)", "(foo 1)", "(% 1)", "(% 1 2 3)", "(/ 1 0)", "(% 1 0)", "(-)", "(/)",
+            "(define x)", "(define 1 2)", "(if 1 2 3)", "(if (> 1 2) 3)", "(+ 1 (> 2 1))",
+            "(- (> 2 1) 1)", "(* 2 (< 2 1))", "(> (= 1 1) 2)", "(+ (> 1 2) undefined-symbol)", "(* 3 (if (> 2 1) (> 1 0) 5))",
+            "(lambda x 1)", "(lambda (x 1) x)", "(lambda (x))", "((lambda (x) x))", "((+ 1 2) 3)", "(() 1)",
+            "((lambda (x) (+ x undefined-symbol)) 1)",
+            "(+ 1 2 (/ 3 0))", "(if (> 2 1) (% 5 0) 1)", "(* 2 undefined-symbol 3)", "(+ (= 1 1) 2 3)",
+            "(+ 2147483647 1 (> 1 2))", "(/ 100000000000 0)", "(% 100000000000 0)", "(/ 100000000000 (- 5 5) undefined-symbol)",
+            "(> 100000000000 (= 1 1))", "(- 100000000000 (> 1 2))", "(* 65536 65536 (if 1 2 3))",
+            "undefined-symbol"
+    };
+
+    private final String engineName;
+    private LispParser parser;
+    private Engine engine;
+    private Engine reference;
+
+    public EngineConsistencyTest(String engineName) {
+        this.engineName = engineName;
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {
+                {"tree"},
+                {"compiled"},
+                {"specializing"},
+                {"vm"},
+                {"parallel"},
+                {"tree --optimize"},
+                {"compiled --optimize"},
+                {"specializing --optimize"},
+                {"vm --optimize"}
+        });
+    }
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        String[] options = engineName.split(" ");
+        engine = Engine.forName(options[0]);
+        if (options.length > 1) {
+            engine = new OptimizingEngine(engine);
+        }
+        reference = new TreeWalkingEngine();
+    }
+
+    @Test
+    public void testCorpusResults() {
+        for (Object[] row : EvaluatorParameterizedTest.testData()) {
+            String expression = (String) row[0];
+            assertEquals(engineName + ": " + expression, row[1], engine.evaluate(parser.parse(expression)));
+        }
+    }
+
+    @Test
+    public void testNestedExpressions() {
+        String[] expressions = {
+                "(+ 1 (* 2 3))", "(+ (* 2 3) (* 4 5))", "(if (> (* 2 3) 5) 10 20)",
+                "(- 10 3 2)", "(/ 100 5 2)", "(/ 7)", "(= (> 1 2) (< 2 1))", "(= 1 (> 1 2))",
+                "(if (= 1 1) (- 5) (+))", "(*)",
+                "(+ 1000 (* 2000 (- 3000 (/ 9000 (% 7000 4001)))))", "(* (+ 300 400) (- 500 (if (> 2 1) 600 700)))",
+                "(* 65536 65536)", "(- -2147483648)", "(= (= 1 1) (> 2 1))", "(if (< 1 2) (if (> 1 2) 1 2) 3)"
+        };
+        for (String expression : expressions) {
+            assertEquals(engineName + ": " + expression,
+                    reference.evaluate(parser.parse(expression)), engine.evaluate(parser.parse(expression)));
+        }
+    }
+
+    @Test
+    public void testNumericTower() {
+        String[] expressions = {
+                "(+ 2147483647 1)", "(- -2147483648 1)", "(* 65536 65536 65536 65536 65536)", "(/ -2147483648 -1)",
+                "(+ 2147483647 1 -1)", "(- (* 3037000500 3037000500) 9223372036854775807)", "(- -9223372036854775808)",
+                "(% 123456789012345678901234567890 7)", "(% 10 100000000000)", "(/ 100000000000 7 3)",
+                "(> 100000000000 2147483647)", "(< -100000000000 (* 65536 -65536))", "(= (* 65536 65536) 4294967296)",
+                "(= (/ 4294967296 65536) 65536)", "(if (> (* 65536 65536) 0) (- (* 65536 65536) 1) 0)",
+                "(* 2 (+ 2147483647 1) (- 0 2147483647 2147483647))", "(+ 1 (- 2147483648))", "(- 5 2147483648 -2147483648)"
+        };
+        for (String expression : expressions) {
+            assertEquals(engineName + ": " + expression,
+                    reference.evaluate(parser.parse(expression)), engine.evaluate(parser.parse(expression)));
+        }
+
+        engine.evaluate(parser.parse("(define fact (lambda (n) (if (< n 2) 1 (* n (fact (- n 1))))))"));
+        assertEquals(new BigInteger("30414093201713378043612608166064768844377641568960512000000000000"),
+                engine.evaluate(parser.parse("(fact 50)")));
+        assertEquals(Integer.valueOf(479001600), engine.evaluate(parser.parse("(fact 12)")));
+        assertEquals(Long.valueOf(6227020800L), engine.evaluate(parser.parse("(fact 13)")));
+    }
+
+    @Test
+    public void testVariables() {
+        engine.evaluate(parser.parse("(define a 5)"));
+        engine.evaluate(parser.parse("(define b (* a 3))"));
+        assertEquals(20, engine.evaluate(parser.parse("(+ a b)")));
+        assertEquals(true, engine.evaluate(parser.parse("(= b 15)")));
+    }
+
+    @Test
+    public void testProcedures() {
+        engine.evaluate(parser.parse("(define make-adder (lambda (n) (lambda (x) (+ x n))))"));
+        engine.evaluate(parser.parse("(define add5 (make-adder 5))"));
+        assertEquals(15, engine.evaluate(parser.parse("(add5 10)")));
+        assertEquals(7, engine.evaluate(parser.parse("((lambda (a b) (- a b)) 10 3)")));
+        assertEquals(1, engine.evaluate(parser.parse("((((lambda (a) (lambda (b) (lambda (c) (- a b c)))) 6) 3) 2)")));
+
+        engine.evaluate(parser.parse("(define fact (lambda (n) (if (< n 2) 1 (* n (fact (- n 1))))))"));
+        assertEquals(3628800, engine.evaluate(parser.parse("(fact 10)")));
+    }
+
+    @Test
+    public void testTailCallsRunInConstantStack() {
+        engine.evaluate(parser.parse("(define count (lambda (i acc) (if (= i 0) acc (count (- i 1) (+ acc 2)))))"));
+        assertEquals(2000000, engine.evaluate(parser.parse("(count 1000000 0)")));
+
+        engine.evaluate(parser.parse("(define even (lambda (n) (if (= n 0) (= 0 0) (odd (- n 1)))))"));
+        engine.evaluate(parser.parse("(define odd (lambda (n) (if (= n 0) (= 0 1) (even (- n 1)))))"));
+        assertEquals(false, engine.evaluate(parser.parse("(even 1000001)")));
+    }
+
+    @Test
+    public void testVectors() {
+        engine.evaluate(parser.parse("(define v (vector-range 0 1000))"));
+        assertEquals(499500, engine.evaluate(parser.parse("(vector-sum v)")));
+        assertEquals(1000, engine.evaluate(parser.parse("(vector-length (vector+ v v))")));
+        assertEquals(1998, engine.evaluate(parser.parse("(vector-ref (vector+ v v) 999)")));
+        assertEquals(Long.valueOf(4294967296L), engine.evaluate(parser.parse("(vector-sum (make-vector 4 1073741824))")));
+        assertEquals(-3, engine.evaluate(parser.parse("(vector-min (vector- (vector 1 2 3) (vector 4 5 6)))")));
+        engine.evaluate(parser.parse("(define scale (lambda (xs k) (vector* xs k)))"));
+        assertEquals(2997, engine.evaluate(parser.parse("(vector-max (scale v 3))")));
+        assertEquals("Integer overflow in 'vector*'",
+                errorOf(engine, "(vector* (vector 65536) 65536)"));
+    }
+
+    @Test
+    public void testSequences() {
+        assertEquals(Long.valueOf(249999500000L), engine.evaluate(parser.parse("(reduce + (filter even (range 0 1000000)))")));
+        engine.evaluate(parser.parse("(define squares (map (lambda (x) (* x x)) (range 1 11)))"));
+        assertEquals(385, engine.evaluate(parser.parse("(reduce + squares)")));
+        assertEquals(30, engine.evaluate(parser.parse("(reduce + 0 (take 4 squares))")));
+        assertEquals(100, engine.evaluate(parser.parse("(reduce (lambda (a b) (if (> a b) a b)) squares)")));
+        assertEquals(3, engine.evaluate(parser.parse("(reduce * (filter odd (vector 1 2 3 4)))")));
+        assertEquals("Sequence operation 'map' requires a procedure, got: Integer",
+                errorOf(engine, "(map 1 (range 5))"));
+    }
+
+    @Test
+    public void testErrorMessages() {
+        for (String expression : ERROR_EXPRESSIONS) {
+            assertEquals(engineName + ": " + expression,
+                    errorOf(reference, expression), errorOf(engine, expression));
+        }
+    }
+
+    private String errorOf(Engine target, String expression) {
+        try {
+            target.evaluate(parser.parse(expression));
+        } catch (LispException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
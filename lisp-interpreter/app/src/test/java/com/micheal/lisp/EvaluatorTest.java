@@ -1,5 +1,7 @@
 package com.micheal.lisp;
 
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.exception.LispException;
 import com.micheal.lisp.parser.LispParser;
 import com.micheal.lisp.visitor.EvaluationVisitor;
 import com.micheal.lisp.ast.Node;
@@ -7,6 +9,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public class EvaluatorTest {
     
@@ -81,4 +85,30 @@ public class EvaluatorTest {
         Object result = ast.accept(evaluator);
         assertEquals(200, result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRedefineVariable() {
+        parser.parse("(define counter 1)").accept(evaluator);
+        parser.parse("(define counter (+ counter 1))").accept(evaluator);
+
+        Object result = parser.parse("counter").accept(evaluator);
+        assertEquals(2, result);
+    }
+
+    @Test
+    public void testSymbolsAreInterned() {
+        SymbolNode first = (SymbolNode) parser.parse("shared-name");
+        SymbolNode second = (SymbolNode) parser.parse("shared-name");
+        assertSame(first.getSymbol(), second.getSymbol());
+    }
+
+    @Test
+    public void testUndefinedSymbol() {
+        try {
+            parser.parse("never-defined").accept(evaluator);
+            fail("Expected LispException");
+        } catch (LispException e) {
+            assertEquals("Undefined symbol: 'never-defined'", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.FlatAst;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.visitor.FlatEvaluator;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FlatAstTest {
+
+    private final LispParser parser = new LispParser();
+
+    @Test
+    public void testLayout() {
+        FlatAst ast = parser.parseFlat("(+ x (* 2 3) 100000000000)");
+
+        assertEquals(8, ast.getNodeCount());
+        assertEquals(FlatAst.LIST, ast.kind(0));
+        assertEquals(4, ast.childCount(0));
+        assertEquals(8, ast.size(0));
+        assertEquals("+", ast.symbol(1).getName());
+        assertEquals(FlatAst.LIST, ast.kind(3));
+        assertEquals(7, ast.next(3));
+        assertEquals(2, ast.intValue(4));
+        assertEquals(FlatAst.NUMBER, ast.kind(7));
+        assertEquals(100000000000L, ast.number(7));
+    }
+
+    @Test
+    public void testMatchesTreeParser() {
+        String[] sources = {
+                "42", "x", "(> 1 2)", "()", "(if(> x 5)()-1)", "(define f (lambda (a b) (+ a (* b 99999999999999999999))))",
+                "((lambda (x) x) 1) (+ 3 4)"
+        };
+        for (String source : sources) {
+            assertEquals(source, parser.parse(source), parser.parseFlat(source).toNode(0));
+            assertEquals(source, parser.parse(source), parser.parseFlat(new StringReader(source)).toNode(0));
+            assertEquals(source, parser.parse(source), FlatAst.of(parser.parse(source)).toNode(0));
+        }
+    }
+
+    @Test
+    public void testMalformedInput() {
+        String[] sources = {"(+ 1 (* 2 3)", ")", "   ", "(((("};
+        for (String source : sources) {
+            assertEquals(source, errorOf(() -> parser.parse(source)), errorOf(() -> parser.parseFlat(source)));
+        }
+    }
+
+    @Test
+    public void testEvaluatesLikeTreeWalker() {
+        assertEvaluatesLikeTreeWalker(FlatEvaluator.DEFAULT_MAX_NESTING);
+    }
+
+    @Test
+    public void testEvaluatesLikeTreeWalkerWithExplicitStack() {
+        // 0 evaluates every list with the explicit stack, 1 switches to it below the top level
+        assertEvaluatesLikeTreeWalker(0);
+        assertEvaluatesLikeTreeWalker(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeNestingLimit() {
+        new FlatEvaluator(new GlobalEnvironment(), -1);
+    }
+
+    @Test
+    public void testSharesEnvironmentWithProcedures() {
+        GlobalEnvironment environment = new GlobalEnvironment();
+        FlatEvaluator evaluator = new FlatEvaluator(environment);
+
+        evaluator.evaluate(parser.parseFlat("(define fact (lambda (n) (if (< n 2) 1 (* n (fact (- n 1))))))"));
+        evaluator.evaluate(parser.parseFlat("(define x (* 65536 65536))"));
+        assertEquals(4294967297L, evaluator.evaluate(parser.parseFlat("(+ x 1)")));
+        assertEquals(new BigInteger("51090942171709440000"), evaluator.evaluate(parser.parseFlat("(fact 21)")));
+        assertEquals(3628800, new EvaluationVisitor(environment).evaluate(parser.parse("(fact 10)")));
+    }
+
+    @Test
+    public void testDeepNesting() {
+        int depth = 200000;
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            source.append("(if (> ").append(i).append(" -1) ");
+        }
+        source.append("7");
+        for (int i = 0; i < depth; i++) {
+            source.append(" 0)");
+        }
+
+        FlatAst ast = parser.parseFlat(source);
+        assertEquals(depth * 7 + 1, ast.getNodeCount());
+        assertEquals(7, new FlatEvaluator().evaluate(ast));
+    }
+
+    @Test
+    public void testDeeplyNestedArithmetic() {
+        // every level is an operand of the one around it, so none of them is a tail call
+        int depth = 200000;
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            source.append(i % 2 == 0 ? "(+ 1 " : "(* 1 (- ");
+        }
+        source.append("2147483647");
+        for (int i = depth - 1; i >= 0; i--) {
+            source.append(i % 2 == 0 ? ")" : " 0))");
+        }
+
+        FlatAst ast = parser.parseFlat(source);
+        assertEquals(2147483647L + depth / 2, new FlatEvaluator().evaluate(ast));
+        assertEquals(false, new FlatEvaluator().evaluate(parser.parseFlat("(< " + source + " 0)")));
+    }
+
+    private void assertEvaluatesLikeTreeWalker(int maxNesting) {
+        FlatEvaluator evaluator = new FlatEvaluator(new GlobalEnvironment(), maxNesting);
+        for (Object[] row : EvaluatorParameterizedTest.testData()) {
+            String expression = (String) row[0];
+            assertEquals(expression, row[1], evaluator.evaluate(parser.parseFlat(expression)));
+        }
+
+        for (String expression : EngineConsistencyTest.ERROR_EXPRESSIONS) {
+            EvaluationVisitor reference = new EvaluationVisitor();
+            FlatEvaluator flat = new FlatEvaluator(new GlobalEnvironment(), maxNesting);
+            assertEquals(expression, errorOf(() -> reference.evaluate(parser.parse(expression))),
+                    errorOf(() -> flat.evaluate(parser.parseFlat(expression))));
+        }
+    }
+
+    private static String errorOf(Runnable action) {
+        try {
+            action.run();
+        } catch (LispException e) {
+            return e.getMessage();
+        }
+        fail("Expected LispException");
+        return null;
+    }
+}
@@ -0,0 +1,164 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.environment.DeferredBindings;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class GlobalEnvironmentTest {
+
+    private final LispParser parser = new LispParser();
+
+    @Test
+    public void testSessionsDoNotShareDefinitions() {
+        Engine first = new TreeWalkingEngine();
+        Engine second = new TreeWalkingEngine();
+
+        first.evaluate(parser.parse("(define session-value 1)"));
+        second.evaluate(parser.parse("(define session-value 2)"));
+
+        assertEquals(1, first.evaluate(parser.parse("session-value")));
+        assertEquals(2, second.evaluate(parser.parse("session-value")));
+    }
+
+    @Test
+    public void testBuiltinsAreSharedAndCanBeShadowed() {
+        Engine first = new TreeWalkingEngine();
+        Engine second = new TreeWalkingEngine();
+
+        assertEquals(100, first.evaluate(parser.parse("(if true 100 200)")));
+        first.evaluate(parser.parse("(define true 0)"));
+
+        assertEquals(0, first.evaluate(parser.parse("true")));
+        assertEquals(true, second.evaluate(parser.parse("true")));
+    }
+
+    @Test
+    public void testSymbolsNobodyUsesAreCollected() throws InterruptedException {
+        int before = Symbol.internedCount();
+        Engine session = new TreeWalkingEngine();
+        for (int i = 0; i < 10000; i++) {
+            session.evaluate(parser.parse("(define unique-name-" + i + " " + i + ")"));
+        }
+        assertEquals(true, Symbol.internedCount() >= before + 10000);
+        session = null;
+
+        for (int i = 0; i < 50 && Symbol.internedCount() >= before + 10000; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(true, Symbol.internedCount() < before + 10000);
+        // a name that was collected is simply interned again
+        assertEquals(Symbol.intern("unique-name-1"), Symbol.intern("unique-name-1"));
+    }
+
+    @Test
+    public void testUndefinedSymbolIsNotFoundInOtherSessions() {
+        new TreeWalkingEngine().evaluate(parser.parse("(define only-here 1)"));
+        try {
+            new TreeWalkingEngine().evaluate(parser.parse("only-here"));
+            fail("Expected LispException");
+        } catch (LispException e) {
+            assertEquals("Undefined symbol: 'only-here'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParallelSessions() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int session = 0; session < 32; session++) {
+                int id = session;
+                results.add(pool.submit(() -> {
+                    Engine engine = Engine.forName(id % 2 == 0 ? "tree" : "vm");
+                    LispParser sessionParser = new LispParser();
+                    engine.evaluate(sessionParser.parse("(define counter " + id + ")"));
+                    for (int i = 0; i < 1000; i++) {
+                        engine.evaluate(sessionParser.parse("(define counter (+ counter 1))"));
+                    }
+                    return (Integer) engine.evaluate(sessionParser.parse("counter"));
+                }));
+            }
+            for (int session = 0; session < results.size(); session++) {
+                assertEquals(session + 1000, (int) results.get(session).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReadsSeeDefinitionsFromAnotherThread() throws Exception {
+        GlobalEnvironment environment = new GlobalEnvironment();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                environment.define("shared-" + i, i);
+            }
+        });
+        writer.start();
+        writer.join();
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, environment.lookup("shared-" + i));
+        }
+    }
+
+    @Test
+    public void testDeferredBindingsLoadOnFirstLookup() {
+        GlobalEnvironment environment = new GlobalEnvironment();
+        environment.define("kept", 1);
+        environment.define("replaced", 2);
+        Symbol replaced = Symbol.intern("replaced");
+        long version = environment.getVersion(replaced);
+
+        List<Symbol> saved = List.of(replaced, Symbol.intern("added"));
+        List<String> loads = new ArrayList<>();
+        environment.restore(new DeferredBindings() {
+            @Override
+            public boolean contains(Symbol symbol) {
+                return saved.contains(symbol);
+            }
+
+            @Override
+            public Object load(Symbol symbol) {
+                loads.add(symbol.getName());
+                return saved.contains(symbol) ? symbol.getName().length() : null;
+            }
+
+            @Override
+            public Iterable<Symbol> symbols() {
+                return saved;
+            }
+        });
+
+        assertEquals(version + 1, environment.getVersion(replaced));
+        assertEquals(List.of(), loads);
+        assertEquals(1, environment.lookup("kept"));
+        assertEquals(8, environment.lookup("replaced"));
+        assertEquals(8, environment.lookup("replaced"));
+        // a builtin is looked for in the snapshot once
+        assertEquals(Boolean.TRUE, environment.lookup("true"));
+        assertEquals(Boolean.TRUE, environment.lookup("true"));
+        assertEquals(List.of("replaced", "true"), loads);
+
+        environment.define("added", 0);
+        assertEquals(0, environment.lookup("added"));
+        assertEquals(Map.of(Symbol.intern("kept"), 1, replaced, 8, Symbol.intern("added"), 0), environment.getBindings());
+        assertEquals(List.of("replaced", "true"), loads);
+    }
+}
@@ -0,0 +1,123 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.image.Image;
+import com.micheal.lisp.image.ImageWriter;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.script.ScriptRunner;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ImageTest {
+
+    private final LispParser parser = new LispParser();
+
+    @Test
+    public void testFormsRoundTrip() throws IOException {
+        String[] sources = {
+                "42", "-7", "x", "()", "(define f (lambda (a b) (+ a (* b -2147483648))))",
+                "(+ 4294967296 -9223372036854775808 123456789012345678901234567890 -99999999999999999999)",
+                "(if (> gr\u00f6\u00dfe 5) (- gr\u00f6\u00dfe) ((lambda (x) x) 1))"
+        };
+        ImageWriter writer = new ImageWriter();
+        for (String source : sources) {
+            writer.add(parser.parse(source));
+        }
+        writer.add(new NodeFactory().createBoolean(true));
+
+        Image image = new Image(ByteBuffer.wrap(bytesOf(writer)), new NodeFactory());
+        assertEquals(sources.length + 1, image.getFormCount());
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(sources[i], parser.parse(sources[i]), image.getForm(i));
+        }
+        assertEquals(new NodeFactory().createBoolean(true), image.getForm(sources.length));
+        // the symbol table holds each name once and it decodes to one shared node
+        assertEquals(12, image.getSymbolCount());
+        List<Node> elements = ((ListNode) image.getForm(6)).getElements();
+        assertSame(((ListNode) elements.get(1)).getElements().get(1), ((ListNode) elements.get(2)).getElements().get(1));
+        // a script's forms have no names
+        assertEquals(-1, image.find("x"));
+    }
+
+    @Test
+    public void testRunsCompiledScriptLikeTheSource() throws IOException {
+        Path script = Files.createTempFile("script", ".lisp");
+        Path compiled = Files.createTempFile("script", ".img");
+        try {
+            Files.writeString(script, "(define x (* 6 7))\n(+ x\n   (* 2 3))\n(/ 1 0)\n(if (> x 5) (- 10 (* 2 2)) 200)\n",
+                    StandardCharsets.UTF_8);
+            assertEquals(4, ImageWriter.compile(parser, script, compiled, true));
+
+            StringWriter out = new StringWriter();
+            StringWriter err = new StringWriter();
+            int failures = new ScriptRunner(new TreeWalkingEngine())
+                    .run(Image.open(compiled), new PrintWriter(out), new PrintWriter(err));
+
+            assertEquals(1, failures);
+            assertEquals(String.join(System.lineSeparator(), "42", "48", "6", ""), out.toString());
+            assertEquals("Error: Arithmetic error in division: Division by zero" + System.lineSeparator(), err.toString());
+        } finally {
+            Files.delete(script);
+            Files.delete(compiled);
+        }
+    }
+
+    @Test
+    public void testFormsAreDecodedOnDemand() throws IOException {
+        ImageWriter writer = new ImageWriter();
+        writer.add(parser.parse("(+ 1 2)"));
+        writer.add(parser.parse("(* 3 4)"));
+        byte[] bytes = bytesOf(writer);
+        // damage the tag of the last node of the second form
+        bytes[bytes.length - 1] = 7;
+
+        Image image = new Image(ByteBuffer.wrap(bytes), new NodeFactory());
+        assertEquals(parser.parse("(+ 1 2)"), image.getForm(0));
+        try {
+            image.getForm(1);
+            fail("Expected LispException");
+        } catch (LispException e) {
+            assertEquals("Corrupt image: unknown tag 7 at offset " + (bytes.length - 1), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() {
+        assertEquals("Not a lisp image", openError("(+ 1 2)".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Image is truncated", openError(new byte[] {'L', 'I', 'S', 'P', 0, 0, 0, 2, 0, 0, 0, 9}));
+        assertEquals("Image is truncated", openError(new byte[] {'L', 'I', 'S', 'P'}));
+        assertEquals("Unsupported image version: 1", openError(new byte[] {'L', 'I', 'S', 'P', 0, 0, 0, 1}));
+    }
+
+    private static byte[] bytesOf(ImageWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out);
+        return out.toByteArray();
+    }
+
+    private static String openError(byte[] bytes) {
+        try {
+            new Image(ByteBuffer.wrap(bytes), new NodeFactory());
+        } catch (IOException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,108 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.parser.IncrementalParser;
+import com.micheal.lisp.parser.LispParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalParserTest {
+
+    private final IncrementalParser input = new IncrementalParser();
+    private final List<String> forms = new ArrayList<>();
+
+    @Test
+    public void testFormIsHandedOutWhenItCloses() {
+        input.feed("(define f\n", forms::add);
+        assertTrue(input.isInsideForm());
+        assertEquals(1, input.getDepth());
+
+        input.feed("  (lambda (x)\n    (* x x)))", forms::add);
+        assertFalse(input.isInsideForm());
+        assertEquals(List.of("(define f\n  (lambda (x)\n    (* x x)))"), forms);
+    }
+
+    @Test
+    public void testSeveralFormsInOneChunk() {
+        input.feed("  (+ 1 2) x(- 3)  42 (* 4", forms::add);
+        assertEquals(List.of("(+ 1 2)", "x", "(- 3)", "42"), forms);
+
+        input.feed(" 5) ", forms::add);
+        assertEquals("(* 4 5)", forms.get(4));
+    }
+
+    @Test
+    public void testAtomWaitsForDelimiter() {
+        input.feed("12", forms::add);
+        input.feed("34", forms::add);
+        assertTrue(forms.isEmpty());
+
+        input.feed("\n", forms::add);
+        assertEquals(List.of("1234"), forms);
+    }
+
+    @Test
+    public void testSplitAtEveryCharacter() {
+        String source = "(define x 10)\n(if (> x 5)\n  (* x x)\n  0)\nx\n";
+        for (int i = 0; i < source.length(); i++) {
+            input.feed(source.substring(i, i + 1), forms::add);
+        }
+        assertEquals(List.of("(define x 10)", "(if (> x 5)\n  (* x x)\n  0)", "x"), forms);
+        assertEquals(0, input.getPendingLength());
+    }
+
+    @Test
+    public void testMalformedInputReachesTheParser() {
+        input.feed("(+ 1 2)) (* 3", forms::add);
+        input.finish(forms::add);
+        assertEquals(List.of("(+ 1 2)", ")", "(* 3"), forms);
+
+        LispParser parser = new LispParser();
+        assertEquals("Unexpected ')' at offset 0", errorOf(parser, forms.get(1)));
+        assertEquals("Unexpected end of input, missing ')'", errorOf(parser, forms.get(2)));
+        assertFalse(input.isInsideForm());
+    }
+
+    @Test
+    public void testExceptionFromConsumerKeepsTheRest() {
+        try {
+            input.feed("(+ 1 2) (+ 3 4)", form -> {
+                forms.add(form);
+                if (forms.size() == 1) {
+                    throw new IllegalStateException();
+                }
+            });
+        } catch (IllegalStateException expected) {
+            // the second form is still pending
+        }
+        input.feed("\n", forms::add);
+        assertEquals(List.of("(+ 1 2)", "(+ 3 4)"), forms);
+    }
+
+    @Test
+    public void testResetDropsTheUnfinishedForm() {
+        // what the REPL does for a blank line or :abort
+        input.feed("(+ 1 (* 2\n", forms::add);
+        assertEquals(2, input.getDepth());
+        input.reset();
+        assertFalse(input.isInsideForm());
+        assertEquals(0, input.getPendingLength());
+
+        input.feed("(+ 3 4)\n", forms::add);
+        assertEquals(List.of("(+ 3 4)"), forms);
+    }
+
+    private static String errorOf(LispParser parser, String source) {
+        try {
+            parser.parse(source);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.ast.NumberNode;
+import com.micheal.lisp.ast.SymbolNode;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.FormReader;
+import com.micheal.lisp.parser.LispParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class LispParserTest {
+
+    private LispParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+    }
+
+    @Test
+    public void testAtoms() {
+        assertEquals("42", render(parser.parse("42")));
+        assertEquals("-7", render(parser.parse("  -7  ")));
+        assertEquals("sym:-", render(parser.parse("-")));
+        assertEquals("sym:5a", render(parser.parse("5a")));
+        assertEquals("sym:a-1", render(parser.parse("a-1")));
+        assertEquals("sym:--5", render(parser.parse("--5")));
+        assertEquals("-2147483648", render(parser.parse("-2147483648")));
+        assertEquals("2147483647", render(parser.parse("2147483647")));
+    }
+
+    @Test
+    public void testLargeLiteralsUseTheSmallestType() {
+        assertEquals(Integer.valueOf(7), ((NumberNode) parser.parse("007")).getValue());
+        assertEquals(Long.valueOf(2147483648L), ((NumberNode) parser.parse("2147483648")).getValue());
+        assertEquals(Long.valueOf(Long.MIN_VALUE), ((NumberNode) parser.parse("-9223372036854775808")).getValue());
+        assertEquals(new BigInteger("9223372036854775808"), ((NumberNode) parser.parse("9223372036854775808")).getValue());
+        assertEquals(new BigInteger("-99999999999999999999"), ((NumberNode) parser.parse("-99999999999999999999")).getValue());
+        assertEquals(Integer.valueOf(5), ((NumberNode) parser.parse("000000000000000000000005")).getValue());
+
+        FormReader forms = parser.readForms(new StringReader("(+ 123456789012345678901234567890 1)"));
+        assertEquals("(sym:+ 123456789012345678901234567890 1)", render(forms.next()));
+    }
+
+    @Test
+    public void testLists() {
+        assertEquals("(sym:+ 1 (sym:* 2 3))", render(parser.parse("(+ 1 (* 2 3))")));
+        assertEquals("(sym:+ 1 2)", render(parser.parse("(+\t1\r\n2)")));
+        assertEquals("(sym:if (sym:> sym:x 5) () -1)", render(parser.parse("(if(> x 5)()-1)")));
+    }
+
+    @Test
+    public void testOnlyFirstExpressionIsParsed() {
+        assertEquals("(sym:+ 1 2)", render(parser.parse("(+ 1 2) (+ 3 4)")));
+    }
+
+    @Test
+    public void testMalformedInput() {
+        assertError("Unexpected end of input, missing ')'", "(+ 1 (* 2 3)");
+        assertError("Unexpected ')' at offset 0", ")");
+        assertError("Unexpected end of input", "   ");
+    }
+
+    @Test
+    public void testReadFormsFromCharSequence() {
+        FormReader forms = parser.readForms("(define x 1)\n(+ x\n  2)\n x ");
+        List<String> rendered = new ArrayList<>();
+        while (forms.hasNext()) {
+            rendered.add(render(forms.next()));
+        }
+        assertEquals(List.of("(sym:define sym:x 1)", "(sym:+ sym:x 2)", "sym:x"), rendered);
+    }
+
+    @Test
+    public void testReadFormsFromReaderAcrossBufferBoundaries() {
+        StringBuilder source = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            source.append("(+ symbol-").append(i).append(" -").append(i).append(")\n");
+            expected.append("(sym:+ sym:symbol-").append(i).append(" ").append(-i).append(")|");
+        }
+
+        FormReader forms = parser.readForms(new StringReader(source.toString()));
+        StringBuilder actual = new StringBuilder();
+        while (forms.hasNext()) {
+            actual.append(render(forms.next())).append('|');
+        }
+        assertEquals(expected.toString(), actual.toString());
+        assertFalse(forms.hasNext());
+    }
+
+    private void assertError(String message, String input) {
+        try {
+            parser.parse(input);
+            fail("Expected LispException for: " + input);
+        } catch (LispException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static String render(Node node) {
+        if (node instanceof NumberNode) {
+            return String.valueOf(((NumberNode) node).getValue());
+        }
+        if (node instanceof SymbolNode) {
+            return "sym:" + ((SymbolNode) node).getName();
+        }
+        StringBuilder builder = new StringBuilder("(");
+        for (Node element : ((ListNode) node).getElements()) {
+            if (builder.length() > 1) {
+                builder.append(' ');
+            }
+            builder.append(render(element));
+        }
+        return builder.append(')').toString();
+    }
+}
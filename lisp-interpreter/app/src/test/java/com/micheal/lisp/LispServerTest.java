@@ -0,0 +1,204 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.engine.OptimizingEngine;
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.server.LispServer;
+import com.micheal.lisp.server.LoadTestClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.math.BigInteger;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LispServerTest {
+
+    private LispServer server;
+    private int port;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LispServer(new InetSocketAddress("127.0.0.1", 0), "tree", 2);
+        server.start();
+        port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testEvaluatesOneExpressionPerLine() throws IOException {
+        try (Client client = new Client(port)) {
+            assertEquals("3", client.send("(+ 1 2)"));
+            assertEquals("10", client.send("(define x 10)"));
+            assertEquals("100", client.send("(if (> x 5) (* x x) 0)"));
+            assertEquals("Error: Arithmetic error in division: Division by zero", client.send("(/ x 0)"));
+        }
+    }
+
+    @Test
+    public void testEachConnectionHasItsOwnEnvironment() throws IOException {
+        try (Client first = new Client(port); Client second = new Client(port)) {
+            assertEquals("1", first.send("(define value 1)"));
+            assertEquals("2", second.send("(define value 2)"));
+            assertEquals("1", first.send("value"));
+            assertEquals("2", second.send("value"));
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAnswerInOrder() throws IOException {
+        try (Client client = new Client(port)) {
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                batch.append("(+ ").append(i).append(" 1)\n");
+            }
+            client.write(batch.toString());
+            for (int i = 0; i < 200; i++) {
+                assertEquals(String.valueOf(i + 1), client.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testFormsCanSpanLines() throws IOException {
+        try (Client client = new Client(port)) {
+            client.write("(define square\n  (lambda (n)\n");
+            client.write("    (* n n)))\n(square 12) (square\n 3) )\n");
+            assertEquals("#<procedure>", client.readLine());
+            assertEquals("144", client.readLine());
+            assertEquals("9", client.readLine());
+            assertEquals("Error: Unexpected ')' at offset 0", client.readLine());
+        }
+    }
+
+    @Test
+    public void testExitClosesTheConnection() throws IOException {
+        try (Client client = new Client(port)) {
+            assertEquals("Goodbye!", client.send("exit"));
+            assertNull(client.readLine());
+        }
+    }
+
+    @Test
+    public void testClientThatDoesNotReadIsNotReadFrom() throws Exception {
+        BigInteger factorial = BigInteger.ONE;
+        for (int i = 2; i <= 1000; i++) {
+            factorial = factorial.multiply(BigInteger.valueOf(i));
+        }
+        String big = factorial.toString();
+
+        try (Client client = new Client(port)) {
+            client.send("(define fact (lambda (n) (if (< n 2) 1 (* n (fact (- n 1))))))");
+            assertEquals(big, client.send("(define big (fact 1000))"));
+
+            // 20 MB of requests for 13 MB of responses, more than the socket buffers hold
+            int count = 5000;
+            String request = "big" + " ".repeat(4096) + "\n";
+            AtomicReference<IOException> failure = new AtomicReference<>();
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        client.write(request);
+                    }
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            });
+            writer.start();
+
+            // the server stops reading once enough responses are waiting, so the writes block
+            writer.join(2000);
+            assertTrue(writer.isAlive());
+            try (Client other = new Client(port)) {
+                assertEquals("3", other.send("(+ 1 2)"));
+            }
+
+            for (int i = 0; i < count; i++) {
+                assertEquals(big, client.readLine());
+            }
+            writer.join();
+            assertNull(failure.get());
+        }
+    }
+
+    @Test
+    public void testSessionsUseTheSuppliedEngines() throws IOException {
+        Metrics metrics = new Metrics();
+        LispServer optimizing = new LispServer(new InetSocketAddress("127.0.0.1", 0),
+                () -> new OptimizingEngine(new TreeWalkingEngine(new GlobalEnvironment(), null, metrics)), 2,
+                new LispParser(metrics), null);
+        optimizing.start();
+        try {
+            int optimizingPort = ((InetSocketAddress) optimizing.getLocalAddress()).getPort();
+            try (Client first = new Client(optimizingPort); Client second = new Client(optimizingPort)) {
+                assertEquals("1", first.send("(define x 1)"));
+                assertEquals("2", second.send("(define x 2)"));
+                assertEquals("7", first.send("(+ x (* 2 3))"));
+                assertEquals("8", second.send("(+ x (* 2 3))"));
+            }
+        } finally {
+            optimizing.close();
+        }
+
+        // (* 2 3) was folded before either session evaluated it
+        assertEquals(2, metrics.getOperatorCount("+"));
+        assertEquals(0, metrics.getOperatorCount("*"));
+        assertEquals(4, metrics.getParseTimes().getCount());
+    }
+
+    @Test
+    public void testLoadTestClientReportsLatencies() throws Exception {
+        LoadTestClient.Report report = LoadTestClient.run(server.getLocalAddress(), 4, 50, "(* 6 7)");
+        assertTrue(report.throughput() > 0);
+        assertTrue(report.percentileMicros(99) >= report.percentileMicros(50));
+    }
+
+    private static class Client implements AutoCloseable {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final BufferedReader in;
+
+        Client(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        String send(String line) throws IOException {
+            write(line + "\n");
+            return readLine();
+        }
+
+        void write(String text) throws IOException {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        String readLine() throws IOException {
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.visitor.MemoCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoCacheTest {
+
+    private LispParser parser;
+    private GlobalEnvironment environment;
+    private MemoCache cache;
+    private EvaluationVisitor evaluator;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        environment = new GlobalEnvironment();
+        cache = new MemoCache(4);
+        evaluator = new EvaluationVisitor(environment, cache);
+    }
+
+    @Test
+    public void testRepeatedEvaluationHitsTheCache() {
+        evaluate("(define x 6)");
+        Node node = parser.parse("(* x (+ x 1))");
+
+        assertEquals(42, node.accept(evaluator));
+        assertEquals(42, node.accept(evaluator));
+        assertEquals(42, node.accept(evaluator));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testRedefiningASymbolInvalidatesResultsThatReadIt() {
+        evaluate("(define x 6)");
+        evaluate("(define y 1)");
+        Node readsX = parser.parse("(if (> x 5) (* x 2) 0)");
+        Node readsY = parser.parse("(+ y 1)");
+        readsX.accept(evaluator);
+        readsY.accept(evaluator);
+
+        evaluate("(define x 2)");
+        assertEquals(0, readsX.accept(evaluator));
+        assertEquals(2, readsY.accept(evaluator));
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testOnlyPureSubtreesAreCached() {
+        assertTrue(cache.isCacheable((ListNode) parser.parse("(if (= a b) (- a) (% a 2))")));
+        assertFalse(cache.isCacheable((ListNode) parser.parse("(+ 1 (define x 2))")));
+        assertFalse(cache.isCacheable((ListNode) parser.parse("(+ 1 (f 2))")));
+        assertFalse(cache.isCacheable((ListNode) parser.parse("(lambda (a) a)")));
+    }
+
+    @Test
+    public void testImpureFormsDoNotEvictResults() {
+        Node pure = parser.parse("(* 6 7)");
+        pure.accept(evaluator);
+        for (int i = 0; i < 20; i++) {
+            evaluate("(define counter (lambda () " + i + "))");
+            evaluate("(counter)");
+            assertEquals(42, pure.accept(evaluator));
+        }
+
+        assertEquals(20, cache.getHits());
+        assertEquals(0, cache.getEvictions());
+        // only the pure form has an entry
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSubtreeOfADefineIsCached() {
+        Node node = parser.parse("(define z (* 2 21))");
+        node.accept(evaluator);
+        node.accept(evaluator);
+
+        assertEquals(42, environment.lookup("z"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testLocalsAreNeverCached() {
+        evaluate("(define f (lambda (n) (* n 2)))");
+        assertEquals(2, evaluate("(f 1)"));
+        assertEquals(4, evaluate("(f 2)"));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testHitReadsEachGlobalsVersionOnce() {
+        long[] versionReads = new long[1];
+        GlobalEnvironment counting = new GlobalEnvironment() {
+            @Override
+            public long getVersion(Symbol symbol) {
+                versionReads[0]++;
+                return super.getVersion(symbol);
+            }
+        };
+        EvaluationVisitor evaluator = new EvaluationVisitor(counting, cache);
+        counting.define("x", 2);
+        counting.define("y", 3);
+        Node node = parser.parse("(+ x x (* x y) (- y x) x)");
+
+        assertEquals(13, node.accept(evaluator));
+        versionReads[0] = 0;
+        assertEquals(13, node.accept(evaluator));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, versionReads[0]);
+    }
+
+    @Test
+    public void testFailedEvaluationIsNotCached() {
+        Node node = parser.parse("(+ missing 1)");
+        for (int i = 0; i < 2; i++) {
+            try {
+                node.accept(evaluator);
+            } catch (RuntimeException expected) {
+                // undefined symbol
+            }
+        }
+        evaluate("(define missing 1)");
+
+        assertEquals(2, node.accept(evaluator));
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        for (int i = 0; i < 10; i++) {
+            evaluate("(+ " + i + " 1)");
+        }
+        assertEquals(4, cache.size());
+        assertEquals(6, cache.getEvictions());
+    }
+
+    private Object evaluate(String source) {
+        return parser.parse(source).accept(evaluator);
+    }
+}
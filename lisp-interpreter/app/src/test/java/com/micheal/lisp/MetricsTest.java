@@ -0,0 +1,128 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.compiler.CompiledNode;
+import com.micheal.lisp.compiler.Compiler;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.metrics.LatencyHistogram;
+import com.micheal.lisp.metrics.Metrics;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    private Metrics metrics;
+    private LispParser parser;
+    private EvaluationVisitor evaluator;
+
+    @Before
+    public void setUp() {
+        metrics = new Metrics();
+        parser = new LispParser(metrics);
+        evaluator = new EvaluationVisitor(new GlobalEnvironment(), null, metrics);
+    }
+
+    @Test
+    public void testCountsOperatorsNodesAndLookups() {
+        assertEquals(7, evaluate("(+ 1 (* 2 3))"));
+        assertEquals(4, evaluate("(define x 4)"));
+        assertEquals(4, evaluate("(if (> x 3) x 0)"));
+
+        assertEquals(1, metrics.getOperatorCount("+"));
+        assertEquals(1, metrics.getOperatorCount("*"));
+        assertEquals(1, metrics.getOperatorCount("define"));
+        assertEquals(1, metrics.getOperatorCount("if"));
+        assertEquals(1, metrics.getOperatorCount(">"));
+        assertEquals(0, metrics.getOperatorCount("-"));
+        assertEquals(5 + 2 + 5, metrics.getNodesEvaluated());
+        assertEquals(2, metrics.getSymbolLookups());
+    }
+
+    @Test
+    public void testGlobalLookupsAreCachedUntilTheNextDefine() {
+        Compiler compiler = new Compiler(new GlobalEnvironment(), false, metrics);
+        compiler.compile(parser.parse("(define cached-global 2)")).execute();
+        CompiledNode sum = compiler.compile(parser.parse("(+ cached-global cached-global)"));
+        assertEquals(4, sum.execute());
+        assertEquals(2, metrics.getGlobalCacheMisses());
+        assertEquals(0, metrics.getGlobalCacheHits());
+        assertEquals(4, sum.execute());
+        assertEquals(2, metrics.getGlobalCacheHits());
+
+        // any define changes the environment's version
+        compiler.compile(parser.parse("(define other 1)")).execute();
+        assertEquals(4, sum.execute());
+        assertEquals(4, metrics.getGlobalCacheMisses());
+        assertEquals(2, metrics.getGlobalCacheHits());
+        assertTrue(metrics.toString().contains("global cache: hits=2 misses=4"));
+    }
+
+    @Test
+    public void testProcedureCallsAreCountedAsCalls() {
+        evaluate("(define square (lambda (n) (* n n)))");
+        assertEquals(81, evaluate("(square (square 3))"));
+
+        assertEquals(1, metrics.getOperatorCount("lambda"));
+        assertEquals(2, metrics.getOperatorCount("call"));
+        assertEquals(2, metrics.getOperatorCount("*"));
+        assertEquals(2, metrics.getOperatorCount("unknown-name"));
+    }
+
+    @Test
+    public void testRecordsParseAndEvaluationTimes() {
+        evaluate("(+ 1 2)");
+        evaluate("(- 5 2)");
+
+        assertEquals(2, metrics.getParseTimes().getCount());
+        assertEquals(2, metrics.getEvaluationTimes().getCount());
+        assertTrue(metrics.toString().contains("operators: +=1 -=1"));
+
+        parser.parseFlat("(* 2 3)");
+        assertEquals(3, metrics.getParseTimes().getCount());
+    }
+
+    @Test
+    public void testFailedEvaluationsAreTimedToo() {
+        try {
+            evaluate("(/ 1 0)");
+        } catch (RuntimeException expected) {
+            // the error itself is covered by the evaluator tests
+        }
+        assertEquals(1, metrics.getEvaluationTimes().getCount());
+        assertEquals(1, metrics.getOperatorCount("/"));
+    }
+
+    @Test
+    public void testResetClearsEverything() {
+        evaluate("(define y (+ 1 2))");
+        metrics.reset();
+
+        assertEquals(0, metrics.getOperatorCount("+"));
+        assertEquals(0, metrics.getNodesEvaluated());
+        assertEquals(0, metrics.getParseTimes().getCount());
+        assertEquals(0, metrics.getEvaluationTimes().percentileNanos(99));
+    }
+
+    @Test
+    public void testHistogramPercentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(99 * 100 + 5_000, histogram.getTotalNanos());
+        assertEquals(128, histogram.percentileNanos(50));
+        assertEquals(128, histogram.percentileNanos(99));
+        assertEquals(8192, histogram.percentileNanos(100));
+    }
+
+    private Object evaluate(String input) {
+        return evaluator.evaluate(parser.parse(input));
+    }
+}
@@ -0,0 +1,92 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.factory.NodeFactory;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.ConstantFoldingVisitor;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class NodeFactoryTest {
+
+    @Test
+    public void testAtomsAreCanonical() {
+        NodeFactory factory = new NodeFactory();
+        NodeFactory other = new NodeFactory();
+
+        assertSame(factory.createNumber(7), other.createNumber(7));
+        assertSame(factory.createNumber(100000), other.createNumber(100000));
+        assertSame(factory.createNumber(4294967296L), other.createNumber(4294967296L));
+        assertSame(factory.createNumber(new BigInteger("99999999999999999999")),
+                other.createNumber(new BigInteger("99999999999999999999")));
+        assertSame(factory.createSymbol("x"), other.createSymbol("x"));
+        assertSame(factory.createBoolean(true), other.createBoolean(true));
+        assertNotSame(factory.createSymbol("x"), factory.createSymbol("y"));
+    }
+
+    @Test
+    public void testParsedAtomsAreShared() {
+        ListNode list = (ListNode) new LispParser().parse("(+ x 1000000 (* x 1000000))");
+        ListNode inner = (ListNode) list.getElements().get(3);
+
+        assertSame(list.getElements().get(1), inner.getElements().get(1));
+        assertSame(list.getElements().get(2), inner.getElements().get(2));
+    }
+
+    @Test
+    public void testListsAreOnlySharedWhenAskedFor() {
+        String source = "(+ (* x 2) (* x 2))";
+
+        ListNode separate = (ListNode) new LispParser().parse(source);
+        assertNotSame(separate.getElements().get(1), separate.getElements().get(2));
+        assertEquals(separate.getElements().get(1), separate.getElements().get(2));
+
+        LispParser sharing = new LispParser(new NodeFactory(true), null);
+        ListNode shared = (ListNode) sharing.parse(source);
+        assertSame(shared.getElements().get(1), shared.getElements().get(2));
+        assertSame(shared, sharing.parse(source));
+    }
+
+    @Test
+    public void testFoldedListsAreSharedWithTheParsersFactory() {
+        LispParser sharing = new LispParser(new NodeFactory(true), null);
+        Node folded = new ConstantFoldingVisitor(sharing.getNodeFactory()).fold(sharing.parse("(+ x (* 2 3) 4)"));
+
+        assertSame(sharing.parse("(+ 10 x)"), folded);
+        assertNotSame(folded, new ConstantFoldingVisitor().fold(sharing.parse("(+ x (* 2 3) 4)")));
+    }
+
+    @Test
+    public void testEqualityIsStructural() {
+        LispParser parser = new LispParser();
+        Node a = parser.parse("(if (> x 1) (+ x 2) 3)");
+        Node b = parser.parse("(if (> x 1) (+ x 2) 3)");
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, parser.parse("(if (> x 1) (+ x 2) 4)"));
+        assertNotEquals(parser.parse("(1)"), parser.parse("((1))"));
+        assertEquals(new ConstantFoldingVisitor().fold(parser.parse("(> 2 1)")), new NodeFactory().createBoolean(true));
+    }
+
+    @Test
+    public void testUnusedNodesCanBeReclaimed() throws InterruptedException {
+        LispParser sharing = new LispParser(new NodeFactory(true), null);
+        WeakReference<Node> reference = new WeakReference<>(sharing.parse("(+ reclaimable-symbol 123456789)"));
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+    }
+}
@@ -0,0 +1,119 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.visitor.ParallelEvaluator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelEvaluatorTest {
+
+    private LispParser parser;
+    private ForkJoinPool pool;
+    private GlobalEnvironment environment;
+    private ParallelEvaluator evaluator;
+    private EvaluationVisitor reference;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        pool = new ForkJoinPool(4);
+        environment = new GlobalEnvironment();
+        // a threshold of 2 sends nearly every operand to its own task
+        evaluator = new ParallelEvaluator(environment, pool, 2);
+        reference = new EvaluationVisitor(new GlobalEnvironment());
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testMatchesSequentialResults() {
+        for (Object[] row : EvaluatorParameterizedTest.testData()) {
+            String expression = (String) row[0];
+            assertEquals(expression, row[1], evaluator.evaluate(parser.parse(expression)));
+        }
+    }
+
+    @Test
+    public void testLeftmostErrorWins() {
+        String[] expressions = {
+                "(+ (/ 1 0) undefined-symbol)", "(+ undefined-symbol (/ 1 0))", "(* (+ 1 2) (> 1 2) (% 1 0))",
+                "(/ 10 (- 2 2) undefined-symbol)", "(- (+ 1 (< 1 2)) (/ 1 0))", "(= undefined-symbol (/ 1 0))",
+                "(if (+ 1 2) (/ 1 0) 3)", "(% (+ 1 2) (- 2 2))", "(> (+ 1 2) (= 1 1))", "(% 1 2 (/ 1 0))",
+                "(/ (* 65536 65536) (- 1 1) (+ 1 2))", "(+ (* 65536 65536) (> 1 2) (/ 1 0))"
+        };
+        for (String expression : expressions) {
+            assertEquals(expression, errorOf(() -> parser.parse(expression).accept(reference)),
+                    errorOf(() -> evaluator.evaluate(parser.parse(expression))));
+        }
+    }
+
+    @Test
+    public void testPromotesOnOverflow() {
+        String[] expressions = {
+                "(+ (* 65536 65536) (- 2147483647 -1) 1)", "(* (+ 65536 0) (* 65536 2) (+ 1 2))", "(- (+ -2147483648 0) (* 1 1))",
+                "(/ (- -2147483648 0) (- 0 1))", "(% (* 65536 65536 65536) (+ 7 0))", "(> (* 65536 65536) (+ 2147483647 0))",
+                "(- (* 65536 65536))", "(+ (* 65536 65536) (- 0 (* 65536 65536)) (+ 1 2))"
+        };
+        for (String expression : expressions) {
+            assertEquals(expression, parser.parse(expression).accept(reference), evaluator.evaluate(parser.parse(expression)));
+        }
+        assertEquals(4294967296L, evaluator.evaluate(parser.parse("(+ (* 65536 65536) (- 2 2))")));
+    }
+
+    @Test
+    public void testWideExpression() {
+        StringBuilder source = new StringBuilder("(+");
+        int expected = 0;
+        for (int i = 0; i < 20000; i++) {
+            source.append(" (* ").append(i).append(" (- 3 1))");
+            expected += i * 2;
+        }
+        source.append(')');
+        assertEquals(expected, evaluator.evaluate(parser.parse(source.toString())));
+    }
+
+    @Test
+    public void testAtomsAtTheSmallestThreshold() {
+        ParallelEvaluator smallest = new ParallelEvaluator(environment, pool, 1);
+        assertEquals(5, smallest.evaluate(parser.parse("5")));
+        smallest.evaluate(parser.parse("(define x 7)"));
+        assertEquals(7, smallest.evaluate(parser.parse("x")));
+        assertEquals(13, smallest.evaluate(parser.parse("(+ x (* 2 3))")));
+        assertEquals(7, smallest.evaluate(parser.parse("(if (> x 1) x 0)")));
+    }
+
+    @Test
+    public void testDefineFallsBackToSequentialEvaluation() {
+        assertEquals(8, evaluator.evaluate(parser.parse("(+ (* 1 2) (define x (+ 2 4)))")));
+        assertEquals(6, environment.lookup("x"));
+        assertEquals("Arithmetic error in division: Division by zero",
+                errorOf(() -> evaluator.evaluate(parser.parse("(+ (/ 1 0) (define y 1))"))));
+        assertEquals("Undefined symbol: 'y'", errorOf(() -> environment.lookup("y")));
+    }
+
+    @Test
+    public void testProcedureCallsFallBackToSequentialEvaluation() {
+        evaluator.evaluate(parser.parse("(define double (lambda (n) (* n 2)))"));
+        assertEquals(14, evaluator.evaluate(parser.parse("(+ (double 3) (double (+ 2 2)))")));
+    }
+
+    private static String errorOf(Runnable action) {
+        try {
+            action.run();
+        } catch (LispException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,84 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.ast.ListNode;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.compiler.CompiledNode;
+import com.micheal.lisp.compiler.Compiler;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.parser.ParseCache;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class ParseCacheTest {
+
+    private final LispParser parser = new LispParser();
+
+    @Test
+    public void testReturnsSameTreeForSameSource() {
+        ParseCache<Node> cache = ParseCache.forParser(parser, 10);
+
+        Node first = cache.get("(+ 1 2)");
+        Node second = cache.get("(+ 1 2)");
+
+        assertSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ParseCache<Node> cache = ParseCache.forParser(parser, 2);
+
+        Node a = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c"); // evicts b, a was used more recently
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("a"));
+        long misses = cache.getMisses();
+        cache.get("b");
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    public void testParseErrorsAreNotCached() {
+        ParseCache<Node> cache = ParseCache.forParser(parser, 10);
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("(+ 1");
+                fail("Expected LispException");
+            } catch (LispException e) {
+                assertEquals("Unexpected end of input, missing ')'", e.getMessage());
+            }
+        }
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testCachedTreesAreImmutable() {
+        ListNode list = (ListNode) ParseCache.forParser(parser, 10).get("(+ 1 2)");
+        try {
+            list.getElements().clear();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(3, list.getElements().size());
+        }
+    }
+
+    @Test
+    public void testCachesCompiledForms() {
+        Compiler compiler = new Compiler();
+        ParseCache<CompiledNode> cache = new ParseCache<>(10, source -> compiler.compile(parser.parse(source)));
+
+        assertSame(cache.get("(* 6 7)"), cache.get("(* 6 7)"));
+        assertEquals(42, cache.get("(* 6 7)").execute());
+    }
+}
@@ -0,0 +1,71 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.repl.Repl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReplTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private InputStream savedIn;
+    private PrintStream savedOut;
+    private PrintStream savedErr;
+
+    @Before
+    public void setUp() {
+        savedIn = System.in;
+        savedOut = System.out;
+        savedErr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        System.setIn(savedIn);
+        System.setOut(savedOut);
+        System.setErr(savedErr);
+    }
+
+    @Test
+    public void testBlankLinesInsideAFormAreWhitespace() {
+        run("(define f\n\n  (lambda (x) (* x x)))\n\n(f 3)\nexit\n");
+        assertEquals("", errors());
+        assertTrue(output().contains("#<procedure>"));
+        assertTrue(output().contains("> 9"));
+        assertFalse(output().contains("form discarded"));
+    }
+
+    @Test
+    public void testAbortDropsTheUnfinishedForm() {
+        run("(+ 1 (* 2\n:abort\n(+ 3 4)\nexit\n");
+        assertEquals("", errors());
+        assertTrue(output().contains("form discarded"));
+        assertTrue(output().contains("> 7"));
+    }
+
+    private void run(String input) {
+        System.setIn(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        new Repl().start();
+    }
+
+    private String output() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String errors() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.engine.TreeWalkingEngine;
+import com.micheal.lisp.script.ScriptRunner;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScriptRunnerTest {
+
+    @Test
+    public void testRunsMultiLineFormsFromMappedFile() throws IOException {
+        Path script = Files.createTempFile("script", ".lisp");
+        try {
+            Files.writeString(script, "(define gr\u00f6\u00dfe 10)\n(+ gr\u00f6\u00dfe\n   (* 2 3))\n(/ 1 0)\n(if (> gr\u00f6\u00dfe 5) 100 200)\n",
+                    StandardCharsets.UTF_8);
+
+            StringWriter out = new StringWriter();
+            StringWriter err = new StringWriter();
+            int failures = new ScriptRunner(new TreeWalkingEngine())
+                    .run(script, new PrintWriter(out), new PrintWriter(err));
+
+            assertEquals(1, failures);
+            assertEquals(lines("10", "16", "100"), out.toString());
+            assertEquals(lines("Error: Arithmetic error in division: Division by zero"), err.toString());
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    @Test
+    public void testParseErrorStopsTheRun() throws IOException {
+        Path script = Files.createTempFile("script", ".lisp");
+        try {
+            Files.writeString(script, "(+ 1 2)\n(+ 3\n", StandardCharsets.UTF_8);
+
+            StringWriter out = new StringWriter();
+            StringWriter err = new StringWriter();
+            int failures = new ScriptRunner(new TreeWalkingEngine())
+                    .run(script, new PrintWriter(out), new PrintWriter(err));
+
+            assertEquals(1, failures);
+            assertEquals(lines("3"), out.toString());
+            assertEquals(lines("Parse error: Unexpected end of input, missing ')'"), err.toString());
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    @Test
+    public void testEmptyScript() throws IOException {
+        Path script = Files.createTempFile("script", ".lisp");
+        try {
+            StringWriter out = new StringWriter();
+            int failures = new ScriptRunner(new TreeWalkingEngine())
+                    .run(script, new PrintWriter(out), new PrintWriter(new StringWriter()));
+
+            assertEquals(0, failures);
+            assertEquals("", out.toString());
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    // the lexer reads 8192 characters at a time, so the end of the file can fall exactly on
+    // the end of its buffer
+    @Test
+    public void testScriptsAroundTheReadBufferSize() throws IOException {
+        for (int padding : new int[] {-1, 0, 1}) {
+            Path script = Files.createTempFile("script", ".lisp");
+            try {
+                StringBuilder source = new StringBuilder();
+                for (int i = 0; i < 1023; i++) {
+                    source.append("(+ 1 2)\n");
+                }
+                // the last line brings the file to 8192 + padding characters
+                source.append("(+ 1 2)").append(" ".repeat(padding + 1));
+                assertEquals(8192 + padding, source.length());
+                Files.writeString(script, source, StandardCharsets.UTF_8);
+
+                StringWriter out = new StringWriter();
+                StringWriter err = new StringWriter();
+                int failures = new ScriptRunner(new TreeWalkingEngine())
+                        .run(script, new PrintWriter(out), new PrintWriter(err));
+
+                assertEquals(0, failures);
+                assertEquals("", err.toString());
+                assertEquals(1024, out.toString().split(System.lineSeparator()).length);
+            } finally {
+                Files.delete(script);
+            }
+        }
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+}
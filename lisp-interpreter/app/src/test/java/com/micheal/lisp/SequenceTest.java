@@ -0,0 +1,113 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SequenceTest {
+
+    private LispParser parser;
+    private EvaluationVisitor evaluator;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        evaluator = new EvaluationVisitor(new GlobalEnvironment());
+    }
+
+    private Object eval(String expression) {
+        return evaluator.evaluate(parser.parse(expression));
+    }
+
+    private void assertError(String expression, String message) {
+        try {
+            eval(expression);
+            fail("expected an error from " + expression);
+        } catch (LispException e) {
+            assertEquals(expression, message, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPipelines() {
+        assertEquals(45, eval("(reduce + (range 10))"));
+        assertEquals(14, eval("(reduce + (range 2 6))"));
+        assertEquals(20, eval("(reduce + (filter even (range 0 10)))"));
+        assertEquals(25, eval("(reduce + (filter odd (range 0 10)))"));
+        assertEquals(285, eval("(reduce + (map (lambda (x) (* x x)) (range 0 10)))"));
+        assertEquals(9, eval("(reduce + (take 3 (filter odd (range 0 1000000000))))"));
+        assertEquals(Long.valueOf(4294967296L), eval("(reduce * (map (lambda (x) 65536) (range 2)))"));
+        assertEquals(new BigInteger("18446744073709551616"), eval("(reduce * 4294967296 (range 4294967296 4294967297))"));
+        // the range only ever holds its next element
+        assertEquals(Long.valueOf(49999995000000L), eval("(reduce + (range 10000000))"));
+    }
+
+    @Test
+    public void testSequencesCanBeReducedAgain() {
+        eval("(define evens (filter even (range 0 10)))");
+        assertEquals(20, eval("(reduce + evens)"));
+        assertEquals(20, eval("(reduce + evens)"));
+        assertEquals(0, eval("(reduce * evens)"));
+        assertEquals("#<sequence>", eval("evens").toString());
+    }
+
+    @Test
+    public void testReduceWithoutElements() {
+        assertEquals(0, eval("(reduce + (range 0))"));
+        assertEquals(1, eval("(reduce * (range 5 1))"));
+        assertEquals(7, eval("(reduce + 7 (take 0 (range 10)))"));
+        assertEquals(9, eval("(reduce - (range 9 10))"));
+        assertError("(reduce - (range 0))", "Operator '-' expects at least one argument");
+    }
+
+    @Test
+    public void testOperatorsAsValues() {
+        eval("(define apply2 (lambda (f a b) (f a b)))");
+        assertEquals(7, eval("(apply2 + 3 4)"));
+        assertEquals(-1, eval("(apply2 - 3 4)"));
+        assertEquals(2, eval("(apply2 / 9 4)"));
+        assertEquals(1, eval("(apply2 % 9 4)"));
+        assertEquals(true, eval("(apply2 < 3 4)"));
+        assertEquals(false, eval("(apply2 > 3 4)"));
+        assertEquals(true, eval("(apply2 = 4 4)"));
+        assertEquals(Long.valueOf(2147483648L), eval("(apply2 + 2147483647 1)"));
+        assertEquals(true, eval("(even 100000000000)"));
+        assertEquals(false, eval("(odd (* -3 4294967296 4294967296))"));
+        assertError("(apply2 / 1 0)", "Arithmetic error in division: Division by zero");
+        assertError("(apply2 + 1 (> 2 1))", "Arithmetic operation '+' requires numeric operands, got: Boolean");
+        // a definition still takes precedence over a builtin
+        eval("(define even (lambda (n) 42))");
+        assertEquals(42, eval("(even 1)"));
+    }
+
+    @Test
+    public void testVectorsAreSequences() {
+        assertEquals(6, eval("(reduce + (vector 1 2 3))"));
+        assertEquals(14, eval("(reduce + (map (lambda (x) (* x x)) (vector-range 1 4)))"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertError("(map 1 (range 5))", "Sequence operation 'map' requires a procedure, got: Integer");
+        assertError("(filter even 5)", "Sequence operation 'filter' requires a sequence or vector, got: Integer");
+        assertError("(reduce + (filter (lambda (x) x) (range 5)))",
+                "Sequence operation 'filter' requires a predicate that returns a boolean, got: Integer");
+        assertError("(take -1 (range 5))", "Sequence operation 'take' requires a non-negative int count, got: -1");
+        assertError("(range 0 100000000000000000000)",
+                "Sequence operation 'range' requires bounds that fit in a long, got: 100000000000000000000");
+        assertError("(range)", "Operator 'range' expects 1 or 2 arguments, but got 0");
+        assertError("(reduce +)", "Operator 'reduce' expects 2 or 3 arguments, but got 1");
+        assertError("(map (lambda (x) x))", "Operator 'map' expects 2 argument(s), but got 1");
+        // nothing runs until the reduce
+        eval("(define broken (map (lambda (x) (/ x 0)) (range 5)))");
+        assertError("(reduce + broken)", "Arithmetic error in division: Division by zero");
+    }
+}
@@ -0,0 +1,125 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.engine.Engine;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.image.Snapshot;
+import com.micheal.lisp.parser.LispParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SnapshotTest {
+
+    private static final String[] DEFINITIONS = {
+            "(define small 42)", "(define big (* 4294967296 4294967296))", "(define flag (> 2 1))",
+            "(define fact (lambda (n) (if (< n 2) 1 (* n (fact (- n 1))))))",
+            "(define make-adder (lambda (n) (lambda (x) (+ x n))))", "(define add5 (make-adder 5))",
+            "(define compose (lambda (f g) (lambda (x) (f (g x)))))", "(define add5-twice (compose add5 add5))",
+            "(define squares (vector* (vector-range 0 5) (vector-range 0 5)))"
+    };
+
+    private final LispParser parser = new LispParser();
+
+    @Test
+    public void testRoundTripOnEveryEngine() throws IOException {
+        for (String engineName : new String[] {"tree", "compiled", "specializing", "vm", "parallel"}) {
+            Path file = Files.createTempFile("snapshot", ".img");
+            try {
+                Engine before = Engine.forName(engineName);
+                for (String definition : DEFINITIONS) {
+                    before.evaluate(parser.parse(definition));
+                }
+                assertEquals(DEFINITIONS.length, Snapshot.save(before.getEnvironment(), file));
+
+                Engine after = Engine.forName(engineName);
+                assertEquals(DEFINITIONS.length, Snapshot.restore(file, after.getEnvironment()));
+                assertEquals(engineName, 42, after.evaluate(parser.parse("small")));
+                assertEquals(engineName, new BigInteger("18446744073709551616"), after.evaluate(parser.parse("big")));
+                assertEquals(engineName, true, after.evaluate(parser.parse("flag")));
+                assertEquals(engineName, 3628800, after.evaluate(parser.parse("(fact 10)")));
+                assertEquals(engineName, 15, after.evaluate(parser.parse("(add5 10)")));
+                assertEquals(engineName, 20, after.evaluate(parser.parse("(add5-twice 10)")));
+                assertEquals(engineName, 9, after.evaluate(parser.parse("((make-adder 4) 5)")));
+                assertEquals(engineName, "#(0 1 4 9 16)", after.evaluate(parser.parse("squares")).toString());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testVectorsDoNotDependOnTheSessionsBindings() throws IOException {
+        Path file = Files.createTempFile("snapshot", ".img");
+        try {
+            Engine before = Engine.forName("tree");
+            before.evaluate(parser.parse("(define v (vector 1 -2 2147483647))"));
+            before.evaluate(parser.parse("(define vector 5)"));
+            before.evaluate(parser.parse("(define empty (vector-range 0 0))"));
+            assertEquals(3, Snapshot.save(before.getEnvironment(), file));
+
+            Engine after = Engine.forName("tree");
+            Snapshot.restore(file, after.getEnvironment());
+            assertEquals("#(1 -2 2147483647)", after.evaluate(parser.parse("v")).toString());
+            assertEquals(5, after.evaluate(parser.parse("vector")));
+            assertEquals(0, after.evaluate(parser.parse("(vector-length empty)")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBindingsAreLoadedOnFirstLookup() throws IOException {
+        Path file = Files.createTempFile("snapshot", ".img");
+        try {
+            GlobalEnvironment saved = new GlobalEnvironment();
+            saved.define("first", 1);
+            saved.define("second", 2);
+            Snapshot.save(saved, file);
+
+            // damage the last byte, the value of second
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 1] = (byte) 0xFF;
+            Files.write(file, bytes);
+
+            GlobalEnvironment restored = new GlobalEnvironment();
+            assertEquals(2, Snapshot.restore(file, restored));
+            assertEquals(1, restored.lookup("first"));
+            try {
+                restored.lookup("second");
+                fail("Expected LispException");
+            } catch (LispException e) {
+                assertEquals("Corrupt image: form 1 is damaged", e.getMessage());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRestoreReplacesAndDefineOverrides() throws IOException {
+        Path file = Files.createTempFile("snapshot", ".img");
+        try {
+            Engine engine = Engine.forName("tree");
+            engine.evaluate(parser.parse("(define x 1)"));
+            engine.evaluate(parser.parse("(define y 2)"));
+            Snapshot.save(engine.getEnvironment(), file);
+
+            engine.evaluate(parser.parse("(define x 10)"));
+            engine.evaluate(parser.parse("(define z 30)"));
+            Snapshot.restore(file, engine.getEnvironment());
+            assertEquals(33, engine.evaluate(parser.parse("(+ x y z)")));
+
+            engine.evaluate(parser.parse("(define y 20)"));
+            assertEquals(51, engine.evaluate(parser.parse("(+ x y z)")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.micheal.lisp;
+
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.exception.LispException;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.runtime.IntVector;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class VectorTest {
+
+    private LispParser parser;
+    private EvaluationVisitor evaluator;
+
+    @Before
+    public void setUp() {
+        parser = new LispParser();
+        evaluator = new EvaluationVisitor(new GlobalEnvironment());
+    }
+
+    private Object eval(String expression) {
+        return evaluator.evaluate(parser.parse(expression));
+    }
+
+    private void assertError(String expression, String message) {
+        try {
+            eval(expression);
+            fail("expected an error from " + expression);
+        } catch (LispException e) {
+            assertEquals(expression, message, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConstruction() {
+        assertEquals("#(1 2 3)", eval("(vector 1 2 3)").toString());
+        assertEquals("#()", eval("(vector)").toString());
+        assertEquals("#(7 7 7)", eval("(make-vector 3 7)").toString());
+        assertEquals("#(-2 -1 0 1)", eval("(vector-range -2 2)").toString());
+        assertEquals(0, ((IntVector) eval("(vector-range 5 2)")).length());
+        assertEquals("#(0 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 ... 80 more)", eval("(vector-range 0 100)").toString());
+        assertEquals(eval("(vector 1 2 3)"), eval("(vector-range 1 4)"));
+    }
+
+    @Test
+    public void testElementwiseArithmetic() {
+        assertEquals("#(5 7 9)", eval("(vector+ (vector 1 2 3) (vector 4 5 6))").toString());
+        assertEquals("#(-3 -3 -3)", eval("(vector- (vector 1 2 3) (vector 4 5 6))").toString());
+        assertEquals("#(4 10 18)", eval("(vector* (vector 1 2 3) (vector 4 5 6))").toString());
+        // a single int is used for every element, on either side
+        assertEquals("#(11 12 13)", eval("(vector+ (vector 1 2 3) 10)").toString());
+        assertEquals("#(9 8 7)", eval("(vector- 10 (vector 1 2 3))").toString());
+        assertEquals("#(-2 -4 -6)", eval("(vector* -2 (vector 1 2 3))").toString());
+        assertEquals("#(-2147483648 2147483647)", eval("(vector+ (vector -2147483647 2147483646) (vector -1 1))").toString());
+        assertEquals("#(-2147483648)", eval("(vector* (vector 65536) -32768)").toString());
+    }
+
+    @Test
+    public void testReductions() {
+        assertEquals(6, eval("(vector-sum (vector 1 2 3))"));
+        assertEquals(0, eval("(vector-sum (vector))"));
+        assertEquals(Long.valueOf(4294967294L), eval("(vector-sum (make-vector 2 2147483647))"));
+        assertEquals(-5, eval("(vector-min (vector 3 -5 8))"));
+        assertEquals(8, eval("(vector-max (vector 3 -5 8))"));
+        assertEquals(-1, eval("(vector-ref (vector 3 -1) 1)"));
+        assertEquals(2, eval("(vector-length (vector 3 -1))"));
+    }
+
+    @Test
+    public void testErrors() {
+        assertError("(vector+ (vector 2147483647) 1)", "Integer overflow in 'vector+'");
+        assertError("(vector- (vector -2147483648 0) (vector 1 0))", "Integer overflow in 'vector-'");
+        assertError("(vector* (vector 1 65536) 32768)", "Integer overflow in 'vector*'");
+        assertError("(vector+ (vector 1 2) (vector 1))",
+                "Vector operation 'vector+' requires vectors of the same length, got: 2 and 1");
+        assertError("(vector+ 1 2)", "Vector operation 'vector+' requires vector operands, got: Integer");
+        assertError("(vector-sum 1)", "Vector operation 'vector-sum' requires vector operands, got: Integer");
+        assertError("(vector 1 10000000000)", "Vector operation 'vector' requires int operands, got: Long");
+        assertError("(vector 1 (> 2 1))", "Vector operation 'vector' requires int operands, got: Boolean");
+        assertError("(vector-ref (vector 1 2) 2)", "Vector index 2 out of range for length 2");
+        assertError("(vector-ref (vector 1 2) -1)", "Vector index -1 out of range for length 2");
+        assertError("(vector-min (vector))", "Vector operation 'vector-min' requires a non-empty vector");
+        assertError("(make-vector -1 0)", "Vector length must not be negative: -1");
+        assertError("(vector-range -2147483648 2147483647)", "Vector is too long: 4294967295 elements");
+        assertError("(vector-ref (vector 1))", "Operator 'vector-ref' expects 2 argument(s), but got 1");
+    }
+
+    @Test
+    public void testVectorsArePlainValues() {
+        eval("(define v (vector-range 0 10))");
+        eval("(define double (lambda (xs) (vector+ xs xs)))");
+        assertEquals(90, eval("(vector-sum (double v))"));
+        // the builtins can be passed around like closures
+        eval("(define apply2 (lambda (f a b) (f a b)))");
+        assertEquals("#(0 1 4 9)", eval("(apply2 vector* (vector-range 0 4) (vector-range 0 4))").toString());
+    }
+}
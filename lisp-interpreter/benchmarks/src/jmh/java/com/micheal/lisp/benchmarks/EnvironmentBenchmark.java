@@ -0,0 +1,54 @@
+package com.micheal.lisp.benchmarks;
+
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.environment.Symbol;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnvironmentBenchmark {
+
+    private GlobalEnvironment environment;
+    private Symbol defined;
+    private Symbol builtin;
+    private Integer value;
+
+    @Setup
+    public void setUp() {
+        environment = new GlobalEnvironment();
+        defined = Symbol.intern("counter");
+        builtin = Symbol.intern("true");
+        value = 42;
+        environment.define(defined, value);
+    }
+
+    @Benchmark
+    public void define() {
+        environment.define(defined, value);
+    }
+
+    @Benchmark
+    public Object lookupDefined() {
+        return environment.lookup(defined);
+    }
+
+    @Benchmark
+    public Object lookupBuiltin() {
+        return environment.lookup(builtin);
+    }
+
+    // includes interning the name, like callers that only have a String
+    @Benchmark
+    public Object lookupByName() {
+        return environment.lookup("counter");
+    }
+}
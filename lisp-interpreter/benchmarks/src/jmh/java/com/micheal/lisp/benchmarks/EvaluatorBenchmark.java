@@ -0,0 +1,86 @@
+package com.micheal.lisp.benchmarks;
+
+import com.micheal.lisp.ast.FlatAst;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.visitor.FlatEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// every expression is parsed once in setUp, only the evaluation is measured
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EvaluatorBenchmark {
+
+    private static final int SYMBOLS = 100;
+
+    private EvaluationVisitor evaluator;
+    private Node arithmetic;
+    private Node nested;
+    private Node lookups;
+    private Node conditionals;
+    // the same arithmetic and conditionals as arrays
+    private FlatEvaluator flatEvaluator;
+    private FlatAst flatArithmetic;
+    private FlatAst flatConditionals;
+
+    @Setup
+    public void setUp() {
+        LispParser parser = new LispParser();
+        GlobalEnvironment environment = new GlobalEnvironment();
+        for (int i = 0; i < SYMBOLS; i++) {
+            environment.define("v" + i, i % 10);
+        }
+        evaluator = new EvaluationVisitor(environment);
+
+        arithmetic = parser.parse(Expressions.wideArithmetic(1_000));
+        nested = parser.parse(Expressions.nestedArithmetic(500));
+        lookups = parser.parse(Expressions.lookups(1_000, SYMBOLS));
+        conditionals = parser.parse(Expressions.conditionals(1_000, SYMBOLS));
+
+        flatEvaluator = new FlatEvaluator(environment);
+        flatArithmetic = FlatAst.of(arithmetic);
+        flatConditionals = FlatAst.of(conditionals);
+    }
+
+    @Benchmark
+    public Object arithmeticHeavy() {
+        return arithmetic.accept(evaluator);
+    }
+
+    @Benchmark
+    public Object nestedArithmetic() {
+        return nested.accept(evaluator);
+    }
+
+    @Benchmark
+    public Object lookupHeavy() {
+        return lookups.accept(evaluator);
+    }
+
+    @Benchmark
+    public Object ifHeavy() {
+        return conditionals.accept(evaluator);
+    }
+
+    @Benchmark
+    public Object flatArithmeticHeavy() {
+        return flatEvaluator.evaluate(flatArithmetic);
+    }
+
+    @Benchmark
+    public Object flatIfHeavy() {
+        return flatEvaluator.evaluate(flatConditionals);
+    }
+}
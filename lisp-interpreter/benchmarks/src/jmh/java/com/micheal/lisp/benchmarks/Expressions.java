@@ -0,0 +1,67 @@
+package com.micheal.lisp.benchmarks;
+
+// source text of the expressions the benchmarks run, generated so their size is easy to change
+
+final class Expressions {
+
+    static final String SMALL = "(define result (if (> x 10) (+ x (* 2 y)) (- x 1)))";
+
+    private Expressions() {
+    }
+
+    // (+ (* 1 (- 2 1)) (* 2 (- 3 1)) ...) with the given number of operands
+    static String wideArithmetic(int operands) {
+        StringBuilder source = new StringBuilder("(+");
+        for (int i = 0; i < operands; i++) {
+            source.append(" (* ").append(i % 100).append(" (- ").append(i % 7 + 2).append(" 1))");
+        }
+        return source.append(')').toString();
+    }
+
+    // (+ 1 (* -1 (- 3 (+ 4 ...)))) nested depth levels deep. * only takes 1 and -1 so the
+    // value stays an int, growing products would measure the BigInteger path instead
+    static String nestedArithmetic(int depth) {
+        String[] operators = {"+", "*", "-"};
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            String operator = operators[i % operators.length];
+            int operand = "*".equals(operator) ? (i % 2 == 0 ? 1 : -1) : i % 5 + 1;
+            source.append('(').append(operator).append(' ').append(operand).append(' ');
+        }
+        source.append('1');
+        for (int i = 0; i < depth; i++) {
+            source.append(')');
+        }
+        return source.toString();
+    }
+
+    // (+ (* scale 0 (- 2 1)) (* scale 1 (- 3 1)) ...), scale picks the type of the numeric tower the sums need
+    static String scaledArithmetic(int operands, String scale) {
+        StringBuilder source = new StringBuilder("(+");
+        for (int i = 0; i < operands; i++) {
+            source.append(" (* ").append(scale).append(' ').append(i % 100).append(" (- ").append(i % 7 + 2).append(" 1))");
+        }
+        return source.append(')').toString();
+    }
+
+    // (+ v0 v1 ... ) reading the first symbols names over and over
+    static String lookups(int operands, int symbols) {
+        StringBuilder source = new StringBuilder("(+");
+        for (int i = 0; i < operands; i++) {
+            source.append(" v").append(i % symbols);
+        }
+        return source.append(')').toString();
+    }
+
+    // (+ (if (> v0 5) (if (< v1 3) 1 2) (if (= v2 v3) 3 4)) ...) with the given number of operands
+    static String conditionals(int operands, int symbols) {
+        StringBuilder source = new StringBuilder("(+");
+        for (int i = 0; i < operands; i++) {
+            String a = "v" + (i % symbols);
+            String b = "v" + ((i + 1) % symbols);
+            source.append(" (if (> ").append(a).append(" 5) (if (< ").append(b).append(" 3) 1 2) (if (= ")
+                    .append(a).append(' ').append(b).append(") 3 4))");
+        }
+        return source.append(')').toString();
+    }
+}
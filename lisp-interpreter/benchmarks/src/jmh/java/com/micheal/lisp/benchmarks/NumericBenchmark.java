@@ -0,0 +1,84 @@
+package com.micheal.lisp.benchmarks;
+
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.compiler.CompiledNode;
+import com.micheal.lisp.compiler.Compiler;
+import com.micheal.lisp.environment.GlobalEnvironment;
+import com.micheal.lisp.parser.LispParser;
+import com.micheal.lisp.visitor.EvaluationVisitor;
+import com.micheal.lisp.vm.BytecodeCompiler;
+import com.micheal.lisp.vm.Chunk;
+import com.micheal.lisp.vm.VirtualMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// the same arithmetic on each engine with values that fit an int, need a long or need a
+// BigInteger. the int rows are the ones to compare with results from before the numeric tower
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NumericBenchmark {
+
+    @Param({"int", "long", "big"})
+    public String magnitude;
+
+    private Node expression;
+    private EvaluationVisitor evaluator;
+    private CompiledNode compiled;
+    private CompiledNode specialized;
+    private VirtualMachine vm;
+    private Chunk chunk;
+
+    @Setup
+    public void setUp() {
+        String scale;
+        switch (magnitude) {
+            case "int":
+                scale = "1";
+                break;
+            case "long":
+                scale = "1000000000";
+                break;
+            default:
+                scale = "100000000000000000000";
+                break;
+        }
+        expression = new LispParser().parse(Expressions.scaledArithmetic(1_000, scale));
+
+        evaluator = new EvaluationVisitor(new GlobalEnvironment());
+        compiled = new Compiler(new GlobalEnvironment()).compile(expression);
+        specialized = new Compiler(new GlobalEnvironment(), true).compile(expression);
+        vm = new VirtualMachine(new GlobalEnvironment());
+        chunk = new BytecodeCompiler().compile(expression);
+    }
+
+    @Benchmark
+    public Object tree() {
+        return expression.accept(evaluator);
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiled.execute();
+    }
+
+    // after the first run the long and big rows no longer promote on every node
+    @Benchmark
+    public Object specializing() {
+        return specialized.execute();
+    }
+
+    @Benchmark
+    public Object vm() {
+        return vm.run(chunk);
+    }
+}
@@ -0,0 +1,57 @@
+package com.micheal.lisp.benchmarks;
+
+import com.micheal.lisp.ast.FlatAst;
+import com.micheal.lisp.ast.Node;
+import com.micheal.lisp.parser.LispParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark {
+
+    private LispParser parser;
+    // about 1.3 MB of source
+    private String wide;
+    private String nested;
+
+    @Setup
+    public void setUp() {
+        parser = new LispParser();
+        wide = Expressions.wideArithmetic(100_000);
+        nested = Expressions.nestedArithmetic(1_000);
+    }
+
+    @Benchmark
+    public Node parseSmall() {
+        return parser.parse(Expressions.SMALL);
+    }
+
+    @Benchmark
+    public Node parseLargeWide() {
+        return parser.parse(wide);
+    }
+
+    @Benchmark
+    public Node parseLargeNested() {
+        return parser.parse(nested);
+    }
+
+    @Benchmark
+    public FlatAst parseFlatLargeWide() {
+        return parser.parseFlat(wide);
+    }
+
+    @Benchmark
+    public FlatAst parseFlatLargeNested() {
+        return parser.parseFlat(nested);
+    }
+}